@@ -0,0 +1,180 @@
+package Export;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes an RGBA image to PNG a few rows at a time, writing compressed data
+ * to a channel as soon as it is produced. Only the rows being encoded and one
+ * buffer of compressed output are held in memory, however large the image.
+ */
+class PngStreamWriter implements Closeable {
+    private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+    private static final int IDAT_SIZE = 64 * 1024;
+    private static final byte FILTER_NONE = 0;
+
+    private final WritableByteChannel channel;
+    private final int width;
+    private final int height;
+    private final Deflater deflater;
+    private final CRC32 crc;
+    private final int[] pixels;
+    private final byte[] row;
+    private final byte[] compressed;
+    private int compressedLength;
+    private int rowsWritten;
+
+    /**
+     * Constructs a PngStreamWriter and writes the PNG signature and header.
+     *
+     * @param channel The channel the PNG is written to.
+     * @param width   The width of the image, in pixels.
+     * @param height  The height of the image, in pixels.
+     * @throws IOException If the header cannot be written.
+     */
+    PngStreamWriter(WritableByteChannel channel, int width, int height) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Image must not be empty: " + width + "x" + height);
+        }
+        this.channel = channel;
+        this.width = width;
+        this.height = height;
+        this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        this.crc = new CRC32();
+        this.pixels = new int[width];
+        this.row = new byte[1 + width * 4];
+        this.compressed = new byte[IDAT_SIZE];
+
+        writeFully(ByteBuffer.wrap(SIGNATURE));
+        ByteBuffer header = ByteBuffer.allocate(13);
+        header.putInt(width).putInt(height);
+        header.put((byte) 8); // bit depth
+        header.put((byte) 6); // colour type: RGB with alpha
+        header.put((byte) 0); // compression method: deflate
+        header.put((byte) 0); // filter method: adaptive
+        header.put((byte) 0); // interlace method: none
+        writeChunk("IHDR", header.array(), 13);
+    }
+
+    /**
+     * Encodes the top rows of an image as the next rows of the PNG.
+     *
+     * @param image A non-premultiplied ARGB image as wide as the PNG.
+     * @param rows  The number of rows of the image to encode.
+     * @throws IOException If compressed data cannot be written.
+     */
+    void writeRows(BufferedImage image, int rows) throws IOException {
+        if (image.getWidth() != width || rows > image.getHeight() || rowsWritten + rows > height) {
+            throw new IllegalArgumentException("Rows do not fit the image being written");
+        }
+        for (int y = 0; y < rows; y++) {
+            image.getRaster().getDataElements(0, y, width, 1, pixels);
+            row[0] = FILTER_NONE;
+            for (int x = 0, i = 1; x < width; x++) {
+                int argb = pixels[x];
+                row[i++] = (byte) (argb >>> 16);
+                row[i++] = (byte) (argb >>> 8);
+                row[i++] = (byte) argb;
+                row[i++] = (byte) (argb >>> 24);
+            }
+            deflater.setInput(row);
+            while (!deflater.needsInput()) {
+                deflate();
+            }
+        }
+        rowsWritten += rows;
+    }
+
+    /**
+     * Returns the number of rows encoded so far.
+     *
+     * @return The number of rows written.
+     */
+    int getRowsWritten() {
+        return rowsWritten;
+    }
+
+    /**
+     * Flushes the remaining compressed data and writes the end of the PNG.
+     * Every row of the image must have been written.
+     *
+     * @throws IOException If the data cannot be written.
+     */
+    void finish() throws IOException {
+        if (rowsWritten != height) {
+            throw new IllegalStateException("Only " + rowsWritten + " of " + height + " rows were written");
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            deflate();
+        }
+        if (compressedLength > 0) {
+            writeChunk("IDAT", compressed, compressedLength);
+            compressedLength = 0;
+        }
+        writeChunk("IEND", compressed, 0);
+    }
+
+    /**
+     * Releases the compressor. The channel is left open.
+     */
+    @Override
+    public void close() {
+        deflater.end();
+    }
+
+    /**
+     * Compresses more input into the output buffer, writing an IDAT chunk each
+     * time the buffer fills up.
+     *
+     * @throws IOException If a chunk cannot be written.
+     */
+    private void deflate() throws IOException {
+        compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        if (compressedLength == compressed.length) {
+            writeChunk("IDAT", compressed, compressedLength);
+            compressedLength = 0;
+        }
+    }
+
+    /**
+     * Writes a PNG chunk: its length, type, data and checksum.
+     *
+     * @param type   The four-letter chunk type.
+     * @param data   The buffer holding the chunk data.
+     * @param length The number of bytes of data.
+     * @throws IOException If the chunk cannot be written.
+     */
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        crc.reset();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+
+        ByteBuffer header = ByteBuffer.allocate(8);
+        header.putInt(length).put(typeBytes).flip();
+        writeFully(header);
+        writeFully(ByteBuffer.wrap(data, 0, length));
+        ByteBuffer checksum = ByteBuffer.allocate(4);
+        checksum.putInt((int) crc.getValue()).flip();
+        writeFully(checksum);
+    }
+
+    /**
+     * Writes every remaining byte of a buffer to the channel.
+     *
+     * @param buffer The buffer to write.
+     * @throws IOException If the channel cannot be written to.
+     */
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
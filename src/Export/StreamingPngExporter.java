@@ -0,0 +1,149 @@
+package Export;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
+import Shapes.ShapeSnapshot;
+
+/**
+ * Exports a drawing to a PNG file one horizontal strip at a time. Each strip
+ * is rendered with a TiledRasterizer and encoded straight into the file, so
+ * peak memory is bounded by the size of a strip rather than the whole image.
+ */
+public class StreamingPngExporter {
+    /**
+     * The height of a strip, in pixels, used by default.
+     */
+    public static final int DEFAULT_STRIP_HEIGHT = 256;
+
+    private final TiledRasterizer rasterizer;
+    private final int stripHeight;
+
+    /**
+     * Constructs a StreamingPngExporter with a default rasterizer and strip
+     * height.
+     */
+    public StreamingPngExporter() {
+        this(new TiledRasterizer(), DEFAULT_STRIP_HEIGHT);
+    }
+
+    /**
+     * Constructs a StreamingPngExporter.
+     *
+     * @param rasterizer  The rasterizer each strip is rendered with.
+     * @param stripHeight The height of a strip, in pixels.
+     */
+    public StreamingPngExporter(TiledRasterizer rasterizer, int stripHeight) {
+        if (stripHeight <= 0) {
+            throw new IllegalArgumentException("Strip height must be positive: " + stripHeight);
+        }
+        this.rasterizer = rasterizer;
+        this.stripHeight = stripHeight;
+    }
+
+    /**
+     * Renders an area of a drawing, scaled to a given image size, and writes it
+     * to a PNG file.
+     *
+     * @param shapes   The shapes to render, in the order they are painted.
+     * @param area     The area of the drawing to render.
+     * @param width    The width of the image, in pixels.
+     * @param height   The height of the image, in pixels.
+     * @param file     The file to write.
+     * @param progress Receives the fraction of the image written, from 0 to 1,
+     *                 after each strip.
+     * @throws IOException If the file cannot be written.
+     */
+    public void export(List<ShapeSnapshot> shapes, Rectangle2D area, int width, int height, Path file,
+            DoubleConsumer progress) throws IOException {
+        export(shapes, area, width, height, file, progress, () -> false);
+    }
+
+    /**
+     * Renders an area of a drawing, scaled to a given image size, and writes it
+     * to a PNG file, stopping early if the export is cancelled. Cancellation is
+     * checked before each strip, and the partly written file is deleted.
+     *
+     * @param shapes    The shapes to render, in the order they are painted.
+     * @param area      The area of the drawing to render.
+     * @param width     The width of the image, in pixels.
+     * @param height    The height of the image, in pixels.
+     * @param file      The file to write.
+     * @param progress  Receives the fraction of the image written, from 0 to 1,
+     *                  after each strip.
+     * @param cancelled Returns true once the export should stop.
+     * @return true if the whole image was written, false if it was cancelled.
+     * @throws IOException If the file cannot be written.
+     */
+    public boolean export(List<ShapeSnapshot> shapes, Rectangle2D area, int width, int height, Path file,
+            DoubleConsumer progress, BooleanSupplier cancelled) throws IOException {
+        AffineTransform toImage = TiledRasterizer.toImage(area, width, height);
+        List<List<ShapeSnapshot>> strips = binByStrip(shapes, toImage, height);
+        BufferedImage strip = new BufferedImage(width, Math.min(stripHeight, height), BufferedImage.TYPE_INT_ARGB);
+        int[] clearRow = new int[width];
+        boolean completed = true;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+                PngStreamWriter writer = new PngStreamWriter(channel, width, height)) {
+            for (int i = 0; i < strips.size(); i++) {
+                if (cancelled.getAsBoolean()) {
+                    completed = false;
+                    break;
+                }
+                int top = i * stripHeight;
+                int rows = Math.min(stripHeight, height - top);
+                for (int y = 0; y < rows; y++) {
+                    strip.getRaster().setDataElements(0, y, width, 1, clearRow);
+                }
+                AffineTransform toStrip = AffineTransform.getTranslateInstance(0, -top);
+                toStrip.concatenate(toImage);
+                rasterizer.render(strips.get(i), toStrip, strip.getSubimage(0, 0, width, rows));
+                writer.writeRows(strip, rows);
+                progress.accept((double) writer.getRowsWritten() / height);
+            }
+            if (completed) {
+                writer.finish();
+            }
+        }
+        if (!completed) {
+            Files.deleteIfExists(file);
+        }
+        return completed;
+    }
+
+    /**
+     * Sorts shapes into the strips their bounds cover, keeping painting order
+     * within each strip.
+     *
+     * @param shapes  The shapes to sort.
+     * @param toImage The transform from drawing coordinates to image pixels.
+     * @param height  The height of the image, in pixels.
+     * @return The shapes covering each strip, from top to bottom.
+     */
+    private List<List<ShapeSnapshot>> binByStrip(List<ShapeSnapshot> shapes, AffineTransform toImage, int height) {
+        int count = (height + stripHeight - 1) / stripHeight;
+        List<List<ShapeSnapshot>> strips = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            strips.add(new ArrayList<>());
+        }
+        for (ShapeSnapshot shape : shapes) {
+            Rectangle2D pixels = toImage.createTransformedShape(shape.getBounds()).getBounds2D();
+            int first = Math.max(0, (int) Math.floor(pixels.getMinY() / stripHeight));
+            int last = Math.min(count - 1, (int) Math.floor(pixels.getMaxY() / stripHeight));
+            for (int i = first; i <= last; i++) {
+                strips.get(i).add(shape);
+            }
+        }
+        return strips;
+    }
+}
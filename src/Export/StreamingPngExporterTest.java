@@ -0,0 +1,100 @@
+package Export;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import java.awt.Color;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import javax.imageio.ImageIO;
+import Shapes.Ellipses;
+import Shapes.Rectangle;
+import Shapes.Shape;
+import Shapes.ShapeSnapshot;
+import Shapes.Triangle;
+
+/**
+ * This class contains unit tests for the StreamingPngExporter class.
+ * It checks that the streamed PNG decodes to the same image the tiled
+ * rasterizer renders in one go, and that progress is reported.
+ */
+public class StreamingPngExporterTest {
+
+    /**
+     * Creates snapshots of a few shapes spanning several strips.
+     *
+     * @return The snapshots, in painting order.
+     */
+    private List<ShapeSnapshot> createSnapshots() {
+        List<Shape> shapes = new ArrayList<>();
+        shapes.add(new Rectangle(10, 10, 200, 150, Color.BLACK, 3, Color.RED));
+        shapes.add(new Ellipses(60, 90, 180, 120, Color.BLUE, 2, new Color(0, 255, 0, 128)));
+        shapes.add(new Triangle(150, 20, 100, 230, 240, 230, Color.MAGENTA, 4, null));
+        List<ShapeSnapshot> snapshots = new ArrayList<>();
+        for (Shape shape : shapes) {
+            snapshots.add(shape.snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * Tests that a streamed PNG decodes to the same pixels as a single render.
+     *
+     * @throws IOException If the temporary file cannot be written or read.
+     */
+    @Test
+    public void testStreamedPngMatchesRender() throws IOException {
+        List<ShapeSnapshot> snapshots = createSnapshots();
+        TiledRasterizer rasterizer = new TiledRasterizer(new ForkJoinPool(2), 64);
+        Rectangle2D area = new Rectangle2D.Double(0, 0, 250, 240);
+        File file = File.createTempFile("export", ".png");
+        file.deleteOnExit();
+        List<Double> progress = new ArrayList<>();
+
+        new StreamingPngExporter(rasterizer, 64).export(snapshots, area, 250, 240, file.toPath(), progress::add);
+
+        BufferedImage decoded = ImageIO.read(file);
+        assertNotNull("Streamed file should be a readable PNG", decoded);
+        BufferedImage expected = rasterizer.render(snapshots, area, 250, 240);
+        int differences = 0;
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                if (expected.getRGB(x, y) != decoded.getRGB(x, y)) {
+                    differences++;
+                }
+            }
+        }
+        assertEquals("Decoded image should match the rendered image", 0, differences);
+        assertEquals("Progress should be reported once per strip", 4, progress.size());
+        assertEquals("Progress should finish at one", 1.0, progress.get(progress.size() - 1), 0);
+    }
+
+    /**
+     * Tests that a cancelled export stops between strips and leaves no partly
+     * written file behind.
+     *
+     * @throws IOException If the temporary file cannot be written.
+     */
+    @Test
+    public void testCancelledExportDeletesFile() throws IOException {
+        TiledRasterizer rasterizer = new TiledRasterizer(new ForkJoinPool(2), 64);
+        Rectangle2D area = new Rectangle2D.Double(0, 0, 250, 240);
+        File file = File.createTempFile("export", ".png");
+        file.deleteOnExit();
+        List<Double> progress = new ArrayList<>();
+
+        boolean completed = new StreamingPngExporter(rasterizer, 64).export(createSnapshots(), area, 250, 240,
+                file.toPath(), progress::add, () -> progress.size() >= 2);
+
+        assertFalse("Cancelled export should not complete", completed);
+        assertEquals("No strip should be written after cancelling", 2, progress.size());
+        assertFalse("Partly written file should be deleted", file.exists());
+    }
+}
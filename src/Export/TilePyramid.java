@@ -0,0 +1,335 @@
+package Export;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import Shapes.BatchPainter;
+import Shapes.ShapeSnapshot;
+
+/**
+ * A multi-resolution raster of a whole drawing, kept as a pyramid of square
+ * tiles. The pyramid covers a square of the drawing, its world, which grows
+ * by doubling whenever the drawing reaches outside it. Level 0 is a single
+ * tile covering the world, and each level below has twice as many tiles
+ * across as the one above. Only tiles of the finest level are rendered from
+ * shapes; every coarser tile is the average of the four tiles beneath it, so
+ * changing a tile only touches one tile per level above it.
+ * Tiles are rendered from any thread, and a tile rendered for a world that
+ * has since grown is discarded. Tiles with nothing in them take no memory.
+ */
+public class TilePyramid {
+    private static final int MAX_GROWTH = 32;
+
+    /**
+     * A tile of the finest level, as it was laid out when it was handed out.
+     */
+    public static final class Tile {
+        private final long generation;
+        private final int column;
+        private final int row;
+        private final Rectangle2D bounds;
+
+        /**
+         * Constructs a Tile.
+         *
+         * @param generation The generation of the world the tile belongs to.
+         * @param column     The column of the tile in the finest level.
+         * @param row        The row of the tile in the finest level.
+         * @param bounds     The area of the drawing the tile covers.
+         */
+        private Tile(long generation, int column, int row, Rectangle2D bounds) {
+            this.generation = generation;
+            this.column = column;
+            this.row = row;
+            this.bounds = bounds;
+        }
+
+        /**
+         * Returns the area of the drawing the tile covers.
+         *
+         * @return The bounds of the tile, in drawing coordinates.
+         */
+        public Rectangle2D getBounds() {
+            return (Rectangle2D) bounds.clone();
+        }
+    }
+
+    private final int tileSize;
+    private final int levels;
+    private final double initialSize;
+    private final BufferedImage[][] tiles;
+    private double worldX;
+    private double worldY;
+    private double worldSize;
+    private long generation;
+
+    /**
+     * Constructs an empty TilePyramid whose world starts as a square at the
+     * origin of the drawing.
+     *
+     * @param tileSize    The width and height of a tile, in pixels.
+     * @param levels      The number of levels, including the single tile at
+     *                    the top.
+     * @param initialSize The width and height of the initial world, in drawing
+     *                    coordinates.
+     */
+    public TilePyramid(int tileSize, int levels, double initialSize) {
+        if (tileSize <= 0 || levels <= 0 || levels > 16 || initialSize <= 0) {
+            throw new IllegalArgumentException("Invalid pyramid: " + tileSize + "px tiles, " + levels + " levels");
+        }
+        this.tileSize = tileSize;
+        this.levels = levels;
+        this.initialSize = initialSize;
+        this.tiles = new BufferedImage[levels][];
+        for (int level = 0; level < levels; level++) {
+            tiles[level] = new BufferedImage[span(level) * span(level)];
+        }
+        this.worldSize = initialSize;
+    }
+
+    /**
+     * Returns the square of the drawing the pyramid covers.
+     *
+     * @return The world, in drawing coordinates.
+     */
+    public synchronized Rectangle2D getWorld() {
+        return new Rectangle2D.Double(worldX, worldY, worldSize, worldSize);
+    }
+
+    /**
+     * Grows the world until it encloses an area, doubling it towards the area
+     * each time. The current tiles move down a level into the matching
+     * quadrant of the grown world, so nothing has to be rendered again, and
+     * tiles handed out before growing become stale.
+     *
+     * @param area The area the world must enclose.
+     * @return true if the world grew, false if it already enclosed the area.
+     */
+    public synchronized boolean grow(Rectangle2D area) {
+        boolean grew = false;
+        int growth = 0;
+        while (!encloses(area) && growth++ < MAX_GROWTH) {
+            int quadrantX = area.getMinX() < worldX ? 1 : 0;
+            int quadrantY = area.getMinY() < worldY ? 1 : 0;
+            worldX -= quadrantX * worldSize;
+            worldY -= quadrantY * worldSize;
+            worldSize *= 2;
+            for (int level = levels - 1; level > 0; level--) {
+                int oldSpan = span(level - 1);
+                BufferedImage[] moved = new BufferedImage[span(level) * span(level)];
+                for (int row = 0; row < oldSpan; row++) {
+                    for (int column = 0; column < oldSpan; column++) {
+                        moved[index(level, quadrantX * oldSpan + column, quadrantY * oldSpan + row)] =
+                                tiles[level - 1][row * oldSpan + column];
+                    }
+                }
+                tiles[level] = moved;
+            }
+            if (levels > 1) {
+                tiles[0][0] = downsample(1, 0, 0);
+            }
+            grew = true;
+        }
+        if (grew) {
+            generation++;
+        }
+        return grew;
+    }
+
+    /**
+     * Empties the pyramid and returns its world to the initial square. Tiles
+     * handed out before become stale.
+     */
+    public synchronized void clear() {
+        for (BufferedImage[] level : tiles) {
+            Arrays.fill(level, null);
+        }
+        worldX = 0;
+        worldY = 0;
+        worldSize = initialSize;
+        generation++;
+    }
+
+    /**
+     * Returns the tiles of the finest level that intersect an area.
+     *
+     * @param area The area of the drawing.
+     * @return The intersecting tiles, row by row.
+     */
+    public synchronized List<Tile> tilesIn(Rectangle2D area) {
+        int span = span(levels - 1);
+        double tileWorld = worldSize / span;
+        int firstColumn = Math.max(0, (int) Math.floor((area.getMinX() - worldX) / tileWorld));
+        int firstRow = Math.max(0, (int) Math.floor((area.getMinY() - worldY) / tileWorld));
+        int lastColumn = Math.min(span - 1, (int) Math.floor((area.getMaxX() - worldX) / tileWorld));
+        int lastRow = Math.min(span - 1, (int) Math.floor((area.getMaxY() - worldY) / tileWorld));
+        List<Tile> found = new ArrayList<>();
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                found.add(new Tile(generation, column, row, new Rectangle2D.Double(worldX + column * tileWorld,
+                        worldY + row * tileWorld, tileWorld, tileWorld)));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Renders a tile of the finest level from shapes and rebuilds the tiles
+     * above it. The shapes are painted outside the pyramid's lock, so the
+     * pyramid can be drawn meanwhile.
+     *
+     * @param tile   The tile to render.
+     * @param shapes The shapes intersecting the tile, in painting order.
+     * @return true if the tile was stored, false if the world has grown or
+     *         been cleared since the tile was handed out.
+     */
+    public boolean render(Tile tile, List<ShapeSnapshot> shapes) {
+        BufferedImage image = null;
+        if (!shapes.isEmpty()) {
+            image = new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g2d = image.createGraphics();
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            double scale = tileSize / tile.bounds.getWidth();
+            g2d.scale(scale, scale);
+            g2d.translate(-tile.bounds.getX(), -tile.bounds.getY());
+            BatchPainter.paint(g2d, shapes);
+            g2d.dispose();
+        }
+        synchronized (this) {
+            if (tile.generation != generation) {
+                return false;
+            }
+            int column = tile.column;
+            int row = tile.row;
+            tiles[levels - 1][index(levels - 1, column, row)] = image;
+            for (int level = levels - 2; level >= 0; level--) {
+                column /= 2;
+                row /= 2;
+                tiles[level][index(level, column, row)] = downsample(level + 1, column * 2, row * 2);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Draws the part of the pyramid inside an area, from the coarsest level
+     * that still has at least one pixel per pixel drawn.
+     *
+     * @param g2d       The graphics context to draw on.
+     * @param transform The transform from drawing coordinates to the graphics
+     *                  context. It should only scale and translate.
+     * @param area      The area of the drawing to draw.
+     */
+    public synchronized void draw(Graphics2D g2d, AffineTransform transform, Rectangle2D area) {
+        int level = levelFor(Math.abs(transform.getScaleX()));
+        int span = span(level);
+        double tileWorld = worldSize / span;
+        int firstColumn = Math.max(0, (int) Math.floor((area.getMinX() - worldX) / tileWorld));
+        int firstRow = Math.max(0, (int) Math.floor((area.getMinY() - worldY) / tileWorld));
+        int lastColumn = Math.min(span - 1, (int) Math.floor((area.getMaxX() - worldX) / tileWorld));
+        int lastRow = Math.min(span - 1, (int) Math.floor((area.getMaxY() - worldY) / tileWorld));
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                BufferedImage image = tiles[level][index(level, column, row)];
+                if (image == null) {
+                    continue;
+                }
+                // neighbouring tiles share rounded edges, so they meet without gaps
+                int x0 = (int) Math.round(transform.getScaleX() * (worldX + column * tileWorld)
+                        + transform.getTranslateX());
+                int y0 = (int) Math.round(transform.getScaleY() * (worldY + row * tileWorld)
+                        + transform.getTranslateY());
+                int x1 = (int) Math.round(transform.getScaleX() * (worldX + (column + 1) * tileWorld)
+                        + transform.getTranslateX());
+                int y1 = (int) Math.round(transform.getScaleY() * (worldY + (row + 1) * tileWorld)
+                        + transform.getTranslateY());
+                g2d.drawImage(image, x0, y0, x1, y1, 0, 0, tileSize, tileSize, null);
+            }
+        }
+    }
+
+    /**
+     * Returns the coarsest level whose pixels are no larger than the pixels
+     * of a given scale.
+     *
+     * @param scale The pixels drawn per drawing unit.
+     * @return The level, or the finest level if none is fine enough.
+     */
+    private int levelFor(double scale) {
+        for (int level = 0; level < levels; level++) {
+            if (tileSize * span(level) / worldSize >= scale) {
+                return level;
+            }
+        }
+        return levels - 1;
+    }
+
+    /**
+     * Returns whether the world encloses an area.
+     *
+     * @param area The area to check.
+     * @return true if the area lies inside the world, false otherwise.
+     */
+    private boolean encloses(Rectangle2D area) {
+        return area.getMinX() >= worldX && area.getMinY() >= worldY && area.getMaxX() <= worldX + worldSize
+                && area.getMaxY() <= worldY + worldSize;
+    }
+
+    /**
+     * Averages a block of two by two tiles into a tile of half the resolution.
+     *
+     * @param level  The level of the tiles to average.
+     * @param column The column of the top-left tile of the block.
+     * @param row    The row of the top-left tile of the block.
+     * @return The averaged tile, or null if all four tiles are empty.
+     */
+    private BufferedImage downsample(int level, int column, int row) {
+        BufferedImage parent = null;
+        Graphics2D g2d = null;
+        int half = tileSize / 2;
+        for (int i = 0; i < 4; i++) {
+            BufferedImage child = tiles[level][index(level, column + i % 2, row + i / 2)];
+            if (child == null) {
+                continue;
+            }
+            if (parent == null) {
+                parent = new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_ARGB_PRE);
+                g2d = parent.createGraphics();
+                // halving with bilinear sampling averages each block of four pixels
+                g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            }
+            g2d.drawImage(child, (i % 2) * half, (i / 2) * half, half, half, null);
+        }
+        if (g2d != null) {
+            g2d.dispose();
+        }
+        return parent;
+    }
+
+    /**
+     * Returns the number of tiles across a level.
+     *
+     * @param level The level.
+     * @return The number of tiles in each row and column.
+     */
+    private static int span(int level) {
+        return 1 << level;
+    }
+
+    /**
+     * Returns the position of a tile in its level's array.
+     *
+     * @param level  The level of the tile.
+     * @param column The column of the tile.
+     * @param row    The row of the tile.
+     * @return The index of the tile.
+     */
+    private static int index(int level, int column, int row) {
+        return row * span(level) + column;
+    }
+}
@@ -0,0 +1,166 @@
+package Export;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import Shapes.Ellipses;
+import Shapes.Rectangle;
+import Shapes.Shape;
+import Shapes.ShapeSnapshot;
+
+/**
+ * This class contains unit tests for the TilePyramid class.
+ * It checks that the finest level matches painting the shapes directly, that
+ * coarser levels average it, and that growing the world keeps what has been
+ * rendered.
+ */
+public class TilePyramidTest {
+
+    /**
+     * Creates snapshots of a few overlapping shapes inside a 256 unit square.
+     *
+     * @return The snapshots, in painting order.
+     */
+    private List<ShapeSnapshot> createSnapshots() {
+        List<Shape> shapes = new ArrayList<>();
+        shapes.add(new Rectangle(10, 10, 150, 60, Color.BLACK, 3, Color.RED));
+        shapes.add(new Ellipses(50, 30, 100, 75, Color.BLUE, 2, Color.GREEN));
+        shapes.add(new Rectangle(120, 120, 100, 100, Color.BLACK, 1, Color.BLUE));
+        List<ShapeSnapshot> snapshots = new ArrayList<>();
+        for (Shape shape : shapes) {
+            snapshots.add(shape.snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * Renders every tile of the finest level from the snapshots that
+     * intersect it.
+     *
+     * @param pyramid   The pyramid to render.
+     * @param snapshots The snapshots, in painting order.
+     */
+    private void renderAll(TilePyramid pyramid, List<ShapeSnapshot> snapshots) {
+        for (TilePyramid.Tile tile : pyramid.tilesIn(pyramid.getWorld())) {
+            List<ShapeSnapshot> intersecting = new ArrayList<>();
+            for (ShapeSnapshot snapshot : snapshots) {
+                if (snapshot.getBounds().intersects(tile.getBounds())) {
+                    intersecting.add(snapshot);
+                }
+            }
+            assertTrue("Fresh tile should be stored", pyramid.render(tile, intersecting));
+        }
+    }
+
+    /**
+     * Draws the whole world of a pyramid into an image of a given size.
+     *
+     * @param pyramid The pyramid to draw.
+     * @param size    The width and height of the image.
+     * @return The drawn image.
+     */
+    private BufferedImage draw(TilePyramid pyramid, int size) {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = image.createGraphics();
+        Rectangle2D world = pyramid.getWorld();
+        AffineTransform transform = AffineTransform.getScaleInstance(size / world.getWidth(),
+                size / world.getHeight());
+        transform.translate(-world.getX(), -world.getY());
+        pyramid.draw(g2d, transform, world);
+        g2d.dispose();
+        return image;
+    }
+
+    /**
+     * Tests that drawing the finest level at its own scale matches painting
+     * the shapes directly.
+     */
+    @Test
+    public void testFinestLevelMatchesDirectPainting() {
+        List<ShapeSnapshot> snapshots = createSnapshots();
+        TilePyramid pyramid = new TilePyramid(64, 3, 256);
+        renderAll(pyramid, snapshots);
+        BufferedImage drawn = draw(pyramid, 256);
+
+        BufferedImage direct = new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = direct.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        for (ShapeSnapshot snapshot : snapshots) {
+            snapshot.paint(g2d);
+        }
+        g2d.dispose();
+        int differences = 0;
+        for (int y = 0; y < 256; y++) {
+            for (int x = 0; x < 256; x++) {
+                if (drawn.getRGB(x, y) != direct.getRGB(x, y)) {
+                    differences++;
+                }
+            }
+        }
+        assertTrue("Finest level should match direct painting", differences < 256 * 256 / 200);
+    }
+
+    /**
+     * Tests that a small drawing is taken from a coarser level whose pixels
+     * are averages of the finest level.
+     */
+    @Test
+    public void testCoarseLevelAverages() {
+        TilePyramid pyramid = new TilePyramid(64, 3, 256);
+        List<ShapeSnapshot> snapshots = new ArrayList<>();
+        // a square covering the left half of the world
+        snapshots.add(new Rectangle(0, 0, 128, 256, Color.RED, 0, Color.RED).snapshot());
+        renderAll(pyramid, snapshots);
+        BufferedImage drawn = draw(pyramid, 64);
+        assertEquals("Left half should be red", Color.RED.getRGB(), drawn.getRGB(10, 30));
+        assertEquals("Right half should be empty", 0, drawn.getRGB(50, 30));
+    }
+
+    /**
+     * Tests that growing the world keeps the rendered tiles, moved into the
+     * quadrant the old world occupies, and makes earlier tiles stale.
+     */
+    @Test
+    public void testGrowKeepsContent() {
+        TilePyramid pyramid = new TilePyramid(64, 3, 256);
+        List<ShapeSnapshot> snapshots = new ArrayList<>();
+        snapshots.add(new Rectangle(0, 0, 256, 256, Color.BLUE, 0, Color.BLUE).snapshot());
+        renderAll(pyramid, snapshots);
+        List<TilePyramid.Tile> stale = pyramid.tilesIn(new Rectangle2D.Double(0, 0, 10, 10));
+
+        assertTrue("World should grow", pyramid.grow(new Rectangle2D.Double(-100, -100, 10, 10)));
+        assertFalse("World should not grow twice", pyramid.grow(new Rectangle2D.Double(-100, -100, 10, 10)));
+        assertEquals("World should double towards the area", new Rectangle2D.Double(-256, -256, 512, 512),
+                pyramid.getWorld());
+        BufferedImage drawn = draw(pyramid, 128);
+        assertEquals("Old world should now be the bottom-right quadrant", Color.BLUE.getRGB(),
+                drawn.getRGB(100, 100));
+        assertEquals("New quadrants should be empty", 0, drawn.getRGB(20, 20));
+        assertFalse("Tile from before growing should be stale", pyramid.render(stale.get(0), snapshots));
+    }
+
+    /**
+     * Tests that only the finest tiles intersecting an area are returned.
+     */
+    @Test
+    public void testTilesIn() {
+        TilePyramid pyramid = new TilePyramid(64, 3, 256);
+        assertEquals("A point should touch one tile", 1,
+                pyramid.tilesIn(new Rectangle2D.Double(10, 10, 1, 1)).size());
+        assertEquals("An area across a corner should touch four tiles", 4,
+                pyramid.tilesIn(new Rectangle2D.Double(60, 60, 10, 10)).size());
+        assertEquals("The world should hold sixteen tiles", 16, pyramid.tilesIn(pyramid.getWorld()).size());
+        assertEquals("An area outside the world should touch no tiles", 0,
+                pyramid.tilesIn(new Rectangle2D.Double(300, 300, 10, 10)).size());
+    }
+}
@@ -0,0 +1,246 @@
+package Export;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+import Shapes.BatchPainter;
+import Shapes.ShapeSnapshot;
+
+/**
+ * A headless rasterizer that renders shape snapshots into an image by
+ * splitting it into square tiles and painting the tiles in parallel on a
+ * fork-join pool. Each tile only paints the shapes whose bounds intersect it,
+ * batched by a BatchPainter, and the finished tiles are copied into the
+ * target image.
+ */
+public class TiledRasterizer {
+    /**
+     * The width and height of a tile, in pixels, used by default.
+     */
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    private final ForkJoinPool pool;
+    private final int tileSize;
+
+    /**
+     * Constructs a TiledRasterizer that uses the common fork-join pool and the
+     * default tile size.
+     */
+    public TiledRasterizer() {
+        this(ForkJoinPool.commonPool(), DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Constructs a TiledRasterizer.
+     *
+     * @param pool     The pool the tiles are rendered on.
+     * @param tileSize The width and height of a tile, in pixels.
+     */
+    public TiledRasterizer(ForkJoinPool pool, int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("Tile size must be positive: " + tileSize);
+        }
+        this.pool = pool;
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Renders an area of a drawing into a new image of a given size, scaling
+     * the area to fill the image.
+     *
+     * @param shapes The shapes to render, in the order they are painted.
+     * @param area   The area of the drawing to render.
+     * @param width  The width of the image, in pixels.
+     * @param height The height of the image, in pixels.
+     * @return The rendered image.
+     */
+    public BufferedImage render(List<ShapeSnapshot> shapes, Rectangle2D area, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        render(shapes, toImage(area, width, height), image);
+        return image;
+    }
+
+    /**
+     * Renders shapes into an existing image, tile by tile. Tiles that no shape
+     * intersects are left untouched, so the image should start out clear.
+     *
+     * @param shapes    The shapes to render, in the order they are painted.
+     * @param transform The transform from drawing coordinates to pixels of the
+     *                  image.
+     * @param image     The image to render into.
+     */
+    public void render(List<ShapeSnapshot> shapes, AffineTransform transform, BufferedImage image) {
+        pool.invoke(renderTask(shapes, transform, image, null, () -> false));
+    }
+
+    /**
+     * Starts rendering shapes into an existing image on the pool and returns
+     * without waiting for the tiles to be finished. Tiles that have not been
+     * started yet are skipped once the render is cancelled. Tiles that no
+     * shape intersects are left untouched, so the image should start out
+     * clear.
+     *
+     * @param shapes    The shapes to render, in the order they are painted.
+     * @param transform The transform from drawing coordinates to pixels of the
+     *                  image.
+     * @param image     The image to render into.
+     * @param hints     The rendering hints for every tile, or null for the
+     *                  defaults.
+     * @param cancelled Returns true once the remaining tiles should be skipped.
+     * @return The task rendering the tiles.
+     */
+    public ForkJoinTask<Void> submit(List<ShapeSnapshot> shapes, AffineTransform transform, BufferedImage image,
+            RenderingHints hints, BooleanSupplier cancelled) {
+        return pool.submit(renderTask(shapes, transform, image, hints, cancelled));
+    }
+
+    /**
+     * Sorts shapes into the tiles their bounds cover and creates the task that
+     * renders the tiles.
+     *
+     * @param shapes    The shapes to render, in the order they are painted.
+     * @param transform The transform from drawing coordinates to pixels.
+     * @param image     The image to render into.
+     * @param hints     The rendering hints, or null for the defaults.
+     * @param cancelled Returns true once the remaining tiles should be skipped.
+     * @return The task rendering every tile of the image.
+     */
+    private RenderTiles renderTask(List<ShapeSnapshot> shapes, AffineTransform transform, BufferedImage image,
+            RenderingHints hints, BooleanSupplier cancelled) {
+        int columns = (image.getWidth() + tileSize - 1) / tileSize;
+        int rows = (image.getHeight() + tileSize - 1) / tileSize;
+        List<List<ShapeSnapshot>> bins = new ArrayList<>(columns * rows);
+        for (int i = 0; i < columns * rows; i++) {
+            bins.add(new ArrayList<>());
+        }
+        for (ShapeSnapshot shape : shapes) {
+            Rectangle2D pixels = transform.createTransformedShape(shape.getBounds()).getBounds2D();
+            int firstColumn = Math.max(0, (int) Math.floor(pixels.getMinX() / tileSize));
+            int lastColumn = Math.min(columns - 1, (int) Math.floor(pixels.getMaxX() / tileSize));
+            int firstRow = Math.max(0, (int) Math.floor(pixels.getMinY() / tileSize));
+            int lastRow = Math.min(rows - 1, (int) Math.floor(pixels.getMaxY() / tileSize));
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    bins.get(row * columns + column).add(shape);
+                }
+            }
+        }
+        return new RenderTiles(bins, columns, transform, image, hints, cancelled, 0, bins.size());
+    }
+
+    /**
+     * Builds the transform that maps an area of a drawing onto an image.
+     *
+     * @param area   The area of the drawing.
+     * @param width  The width of the image, in pixels.
+     * @param height The height of the image, in pixels.
+     * @return The transform from drawing coordinates to image pixels.
+     */
+    public static AffineTransform toImage(Rectangle2D area, int width, int height) {
+        AffineTransform transform = AffineTransform.getScaleInstance(width / area.getWidth(),
+                height / area.getHeight());
+        transform.translate(-area.getX(), -area.getY());
+        return transform;
+    }
+
+    /**
+     * Renders a single tile and copies it into the target image.
+     *
+     * @param shapes    The shapes intersecting the tile, in painting order.
+     * @param transform The transform from drawing coordinates to image pixels.
+     * @param image     The image the tile belongs to.
+     * @param hints     The rendering hints, or null for the defaults.
+     * @param tileX     The x-coordinate of the tile's top-left pixel.
+     * @param tileY     The y-coordinate of the tile's top-left pixel.
+     */
+    private void renderTile(List<ShapeSnapshot> shapes, AffineTransform transform, BufferedImage image,
+            RenderingHints hints, int tileX, int tileY) {
+        if (shapes.isEmpty()) {
+            return;
+        }
+        int width = Math.min(tileSize, image.getWidth() - tileX);
+        int height = Math.min(tileSize, image.getHeight() - tileY);
+        BufferedImage tile = new BufferedImage(image.getColorModel(),
+                image.getColorModel().createCompatibleWritableRaster(width, height),
+                image.isAlphaPremultiplied(), null);
+        Graphics2D g2d = tile.createGraphics();
+        if (hints != null) {
+            g2d.addRenderingHints(hints);
+        }
+        g2d.translate(-tileX, -tileY);
+        g2d.transform(transform);
+        BatchPainter.paint(g2d, shapes);
+        g2d.dispose();
+        image.getRaster().setDataElements(tileX, tileY, tile.getRaster());
+    }
+
+    /**
+     * A fork-join task that renders a range of tiles, splitting the range in
+     * half until each task renders a single tile.
+     */
+    private class RenderTiles extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<List<ShapeSnapshot>> bins;
+        private final int columns;
+        private final AffineTransform transform;
+        private final BufferedImage image;
+        private final RenderingHints hints;
+        private final BooleanSupplier cancelled;
+        private final int from;
+        private final int to;
+
+        /**
+         * Constructs a task for the tiles with indices from {@code from}
+         * inclusive to {@code to} exclusive.
+         *
+         * @param bins      The shapes intersecting each tile.
+         * @param columns   The number of tiles in each row.
+         * @param transform The transform from drawing coordinates to pixels.
+         * @param image     The image being rendered.
+         * @param hints     The rendering hints, or null for the defaults.
+         * @param cancelled Returns true once the remaining tiles should be
+         *                  skipped.
+         * @param from      The index of the first tile.
+         * @param to        The index after the last tile.
+         */
+        RenderTiles(List<List<ShapeSnapshot>> bins, int columns, AffineTransform transform, BufferedImage image,
+                RenderingHints hints, BooleanSupplier cancelled, int from, int to) {
+            this.bins = bins;
+            this.columns = columns;
+            this.transform = transform;
+            this.image = image;
+            this.hints = hints;
+            this.cancelled = cancelled;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Renders the tile if there is one, or splits the range in half. Does
+         * nothing once the render has been cancelled.
+         */
+        @Override
+        protected void compute() {
+            if (to == from || cancelled.getAsBoolean()) {
+                return;
+            }
+            if (to - from == 1) {
+                renderTile(bins.get(from), transform, image, hints, (from % columns) * tileSize,
+                        (from / columns) * tileSize);
+            } else {
+                int middle = (from + to) / 2;
+                invokeAll(new RenderTiles(bins, columns, transform, image, hints, cancelled, from, middle),
+                        new RenderTiles(bins, columns, transform, image, hints, cancelled, middle, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package Export;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import Shapes.Diamond;
+import Shapes.Ellipses;
+import Shapes.Line;
+import Shapes.Rectangle;
+import Shapes.Shape;
+import Shapes.ShapeSnapshot;
+import Shapes.Triangle;
+
+/**
+ * This class contains unit tests for the TiledRasterizer class.
+ * It checks that rendering in tiles gives the same image as painting every
+ * shape in one pass, including when the drawing is scaled.
+ */
+public class TiledRasterizerTest {
+
+    /**
+     * Creates snapshots of a set of overlapping, rotated shapes, some of which
+     * straddle tile boundaries.
+     *
+     * @return The snapshots, in painting order.
+     */
+    private List<ShapeSnapshot> createSnapshots() {
+        List<Shape> shapes = new ArrayList<>();
+        shapes.add(new Rectangle(10, 10, 300, 120, Color.BLACK, 3, Color.RED));
+        shapes.add(new Ellipses(100, 60, 200, 150, Color.BLUE, 2, Color.GREEN));
+        shapes.add(new Diamond(240, 180, 90, 90, Color.BLACK, 4, null));
+        shapes.add(new Triangle(60, 200, 20, 290, 140, 290, Color.MAGENTA, 2, Color.CYAN));
+        shapes.add(new Line(0, 0, 399, 299, Color.ORANGE, 5));
+        List<ShapeSnapshot> snapshots = new ArrayList<>();
+        for (Shape shape : shapes) {
+            shape.rotate(30);
+            snapshots.add(shape.snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * Paints snapshots into a single image without tiling.
+     *
+     * @param snapshots The snapshots to paint.
+     * @param width     The width of the image.
+     * @param height    The height of the image.
+     * @param scale     The scale factor to paint at.
+     * @return The painted image.
+     */
+    private BufferedImage renderSerially(List<ShapeSnapshot> snapshots, int width, int height, double scale) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.scale(scale, scale);
+        for (ShapeSnapshot snapshot : snapshots) {
+            snapshot.paint(g2d);
+        }
+        g2d.dispose();
+        return image;
+    }
+
+    /**
+     * Counts the pixels that differ between two images of the same size.
+     *
+     * @param expected The first image.
+     * @param actual   The second image.
+     * @return The number of differing pixels.
+     */
+    private int countDifferences(BufferedImage expected, BufferedImage actual) {
+        int differences = 0;
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                if (expected.getRGB(x, y) != actual.getRGB(x, y)) {
+                    differences++;
+                }
+            }
+        }
+        return differences;
+    }
+
+    /**
+     * Tests that tiled rendering matches painting the whole image at once.
+     */
+    @Test
+    public void testTiledMatchesSerial() {
+        List<ShapeSnapshot> snapshots = createSnapshots();
+        TiledRasterizer rasterizer = new TiledRasterizer(new ForkJoinPool(4), 64);
+        BufferedImage tiled = rasterizer.render(snapshots, new Rectangle2D.Double(0, 0, 400, 300), 400, 300);
+        BufferedImage serial = renderSerially(snapshots, 400, 300, 1);
+        // curves are flattened in float precision, so edges may differ slightly
+        // when a tile is translated
+        assertTrue("Tiled image should match serial rendering", countDifferences(serial, tiled) < 400 * 300 / 200);
+    }
+
+    /**
+     * Tests that a scaled export matches painting at the same scale.
+     */
+    @Test
+    public void testScaledExport() {
+        List<ShapeSnapshot> snapshots = createSnapshots();
+        TiledRasterizer rasterizer = new TiledRasterizer(new ForkJoinPool(4), 100);
+        BufferedImage tiled = rasterizer.render(snapshots, new Rectangle2D.Double(0, 0, 400, 300), 1000, 750);
+        BufferedImage serial = renderSerially(snapshots, 1000, 750, 2.5);
+        assertEquals("Image should have the requested width", 1000, tiled.getWidth());
+        assertTrue("Scaled image should closely match serial rendering",
+                countDifferences(serial, tiled) < 1000 * 750 / 200);
+    }
+
+    /**
+     * Tests that an empty drawing renders a fully transparent image.
+     */
+    @Test
+    public void testEmptyDrawing() {
+        BufferedImage image = new TiledRasterizer().render(new ArrayList<>(), new Rectangle2D.Double(0, 0, 50, 50),
+                50, 50);
+        assertEquals("Empty drawing should be transparent", 0, image.getRGB(25, 25));
+    }
+
+    /**
+     * Tests that a submitted render fills the image once its task completes.
+     */
+    @Test
+    public void testSubmit() {
+        List<ShapeSnapshot> snapshots = createSnapshots();
+        TiledRasterizer rasterizer = new TiledRasterizer(new ForkJoinPool(4), 64);
+        BufferedImage image = new BufferedImage(400, 300, BufferedImage.TYPE_INT_ARGB);
+        rasterizer.submit(snapshots, new AffineTransform(), image, null, () -> false).join();
+        BufferedImage serial = renderSerially(snapshots, 400, 300, 1);
+        assertTrue("Submitted render should match serial rendering", countDifferences(serial, image) < 400 * 300 / 200);
+    }
+
+    /**
+     * Tests that a cancelled render leaves the image untouched.
+     */
+    @Test
+    public void testSubmitCancelled() {
+        TiledRasterizer rasterizer = new TiledRasterizer(new ForkJoinPool(4), 64);
+        BufferedImage image = new BufferedImage(400, 300, BufferedImage.TYPE_INT_ARGB);
+        rasterizer.submit(createSnapshots(), new AffineTransform(), image, null, () -> true).join();
+        assertEquals("Cancelled render should not paint any tile", 0, countDifferences(image,
+                new BufferedImage(400, 300, BufferedImage.TYPE_INT_ARGB)));
+    }
+}
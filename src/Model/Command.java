@@ -0,0 +1,499 @@
+package Model;
+
+import java.awt.Color;
+import java.util.List;
+import Shapes.Shape;
+
+/**
+ * An edit recorded in the undo history of a Model. Each command keeps only
+ * what is needed to reverse and repeat its edit, such as the distance a move
+ * went, and makes the change again through the model so that observers are
+ * notified as usual.
+ */
+abstract class Command {
+
+    /**
+     * Reverses the edit.
+     *
+     * @param model The model the edit was made to.
+     */
+    abstract void undo(Model model);
+
+    /**
+     * Makes the edit again after it has been undone.
+     *
+     * @param model The model the edit was made to.
+     */
+    abstract void redo(Model model);
+
+    /**
+     * Returns whether the command changes more than one shape, so that undoing
+     * or redoing it should send a single notification for all of them.
+     *
+     * @return true if several shapes are changed, false otherwise.
+     */
+    boolean isCompound() {
+        return false;
+    }
+
+    /**
+     * Combines the command with the edit made straight after it, when the two
+     * can be undone as one step. The default implementation never combines.
+     *
+     * @param next The command for the following edit.
+     * @return The combined command, or null if the two must be kept apart.
+     */
+    Command mergeWith(Command next) {
+        return null;
+    }
+
+    /**
+     * Returns whether two lists hold the same shapes in the same order.
+     *
+     * @param first  The first list.
+     * @param second The second list.
+     * @return true if the lists hold identical shapes, false otherwise.
+     */
+    private static boolean sameShapes(List<Shape> first, List<Shape> second) {
+        if (first.size() != second.size()) {
+            return false;
+        }
+        for (int i = 0; i < first.size(); i++) {
+            if (first.get(i) != second.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The addition of a shape, whether drawn locally or retrieved from the
+     * server.
+     */
+    static final class AddShape extends Command {
+        private final Shape shape;
+        private final boolean fromServer;
+        private final long order;
+
+        /**
+         * Constructs an AddShape command.
+         *
+         * @param shape      The shape that was added.
+         * @param fromServer true if the shape was retrieved from the server.
+         * @param order      The z-order the shape was given.
+         */
+        AddShape(Shape shape, boolean fromServer, long order) {
+            this.shape = shape;
+            this.fromServer = fromServer;
+            this.order = order;
+        }
+
+        @Override
+        void undo(Model model) {
+            model.detachShape(shape, fromServer);
+        }
+
+        @Override
+        void redo(Model model) {
+            model.attachShape(shape, fromServer, order);
+        }
+    }
+
+    /**
+     * The removal of a local shape. Undoing it puts the shape back at the
+     * z-order it had.
+     */
+    static final class RemoveShape extends Command {
+        private final Shape shape;
+        private final long order;
+
+        /**
+         * Constructs a RemoveShape command.
+         *
+         * @param shape The shape that was removed.
+         * @param order The z-order the shape had.
+         */
+        RemoveShape(Shape shape, long order) {
+            this.shape = shape;
+            this.order = order;
+        }
+
+        @Override
+        void undo(Model model) {
+            model.attachShape(shape, false, order);
+        }
+
+        @Override
+        void redo(Model model) {
+            model.detachShape(shape, false);
+        }
+    }
+
+    /**
+     * The removal of every shape at once, or of every shape retrieved from
+     * the server. Undoing it puts each shape back at the z-order it had.
+     */
+    static final class Clear extends Command {
+        private final List<Shape> shapes;
+        private final long[] orders;
+        private final List<Shape> serverShapes;
+        private final long[] serverOrders;
+        private final boolean serverShapesOnly;
+
+        /**
+         * Constructs a Clear command.
+         *
+         * @param shapes           The local shapes that were removed.
+         * @param orders           The z-order each local shape had.
+         * @param serverShapes     The shapes from the server that were removed.
+         * @param serverOrders     The z-order each server shape had.
+         * @param serverShapesOnly true if only the shapes from the server were
+         *                         removed.
+         */
+        Clear(List<Shape> shapes, long[] orders, List<Shape> serverShapes, long[] serverOrders,
+                boolean serverShapesOnly) {
+            this.shapes = shapes;
+            this.orders = orders;
+            this.serverShapes = serverShapes;
+            this.serverOrders = serverOrders;
+            this.serverShapesOnly = serverShapesOnly;
+        }
+
+        /**
+         * Returns whether the clear removed no shapes, so there is nothing to
+         * undo.
+         *
+         * @return true if no shapes were removed, false otherwise.
+         */
+        boolean isEmpty() {
+            return shapes.isEmpty() && serverShapes.isEmpty();
+        }
+
+        @Override
+        void undo(Model model) {
+            for (int i = 0; i < shapes.size(); i++) {
+                model.attachShape(shapes.get(i), false, orders[i]);
+            }
+            for (int i = 0; i < serverShapes.size(); i++) {
+                model.attachShape(serverShapes.get(i), true, serverOrders[i]);
+            }
+        }
+
+        @Override
+        void redo(Model model) {
+            if (serverShapesOnly) {
+                model.clearServerShapes();
+            } else {
+                model.clearShapes();
+            }
+        }
+
+        @Override
+        boolean isCompound() {
+            return true;
+        }
+    }
+
+    /**
+     * A move of one or more shapes, stored as the distance moved. Consecutive
+     * moves of the same shapes, such as the steps of a drag, combine into one.
+     */
+    static final class Move extends Command {
+        private final List<Shape> shapes;
+        private final int deltaX;
+        private final int deltaY;
+
+        /**
+         * Constructs a Move command.
+         *
+         * @param shapes The shapes that were moved.
+         * @param deltaX The distance moved in the x-direction.
+         * @param deltaY The distance moved in the y-direction.
+         */
+        Move(List<Shape> shapes, int deltaX, int deltaY) {
+            this.shapes = shapes;
+            this.deltaX = deltaX;
+            this.deltaY = deltaY;
+        }
+
+        @Override
+        void undo(Model model) {
+            if (shapes.size() == 1) {
+                model.moveShape(shapes.get(0), -deltaX, -deltaY);
+            } else {
+                model.moveShapes(shapes, -deltaX, -deltaY);
+            }
+        }
+
+        @Override
+        void redo(Model model) {
+            if (shapes.size() == 1) {
+                model.moveShape(shapes.get(0), deltaX, deltaY);
+            } else {
+                model.moveShapes(shapes, deltaX, deltaY);
+            }
+        }
+
+        @Override
+        boolean isCompound() {
+            return shapes.size() > 1;
+        }
+
+        @Override
+        Command mergeWith(Command next) {
+            if (next instanceof Move && sameShapes(shapes, ((Move) next).shapes)) {
+                Move move = (Move) next;
+                return new Move(shapes, deltaX + move.deltaX, deltaY + move.deltaY);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A rotation of one or more shapes, stored as the angle turned.
+     */
+    static final class Rotate extends Command {
+        private final List<Shape> shapes;
+        private final int angle;
+
+        /**
+         * Constructs a Rotate command.
+         *
+         * @param shapes The shapes that were rotated.
+         * @param angle  The angle turned, in degrees.
+         */
+        Rotate(List<Shape> shapes, int angle) {
+            this.shapes = shapes;
+            this.angle = angle;
+        }
+
+        @Override
+        void undo(Model model) {
+            if (shapes.size() == 1) {
+                model.rotateShape(shapes.get(0), -angle);
+            } else {
+                model.rotateShapes(shapes, -angle);
+            }
+        }
+
+        @Override
+        void redo(Model model) {
+            if (shapes.size() == 1) {
+                model.rotateShape(shapes.get(0), angle);
+            } else {
+                model.rotateShapes(shapes, angle);
+            }
+        }
+
+        @Override
+        boolean isCompound() {
+            return shapes.size() > 1;
+        }
+    }
+
+    /**
+     * A resize of one or more shapes. Sizes are rounded when scaled, so the
+     * geometry each shape had before is kept to undo the resize exactly.
+     */
+    static final class Resize extends Command {
+        private final List<Shape> shapes;
+        private final double scaleFactor;
+        private final double[][] before;
+
+        /**
+         * Constructs a Resize command.
+         *
+         * @param shapes      The shapes that were resized.
+         * @param scaleFactor The factor they were scaled by.
+         * @param before      The geometry of each shape before the resize.
+         */
+        Resize(List<Shape> shapes, double scaleFactor, double[][] before) {
+            this.shapes = shapes;
+            this.scaleFactor = scaleFactor;
+            this.before = before;
+        }
+
+        @Override
+        void undo(Model model) {
+            model.restoreGeometry(shapes, before);
+        }
+
+        @Override
+        void redo(Model model) {
+            if (shapes.size() == 1) {
+                model.resizeShape(shapes.get(0), scaleFactor);
+            } else {
+                model.resizeShapes(shapes, scaleFactor);
+            }
+        }
+
+        @Override
+        boolean isCompound() {
+            return shapes.size() > 1;
+        }
+    }
+
+    /**
+     * A change to the border color of one or more shapes.
+     */
+    static final class BorderColor extends Command {
+        private final List<Shape> shapes;
+        private final Color[] oldColors;
+        private final Color newColor;
+
+        /**
+         * Constructs a BorderColor command.
+         *
+         * @param shapes    The shapes that were changed.
+         * @param oldColors The border color each shape had before.
+         * @param newColor  The border color they were given.
+         */
+        BorderColor(List<Shape> shapes, Color[] oldColors, Color newColor) {
+            this.shapes = shapes;
+            this.oldColors = oldColors;
+            this.newColor = newColor;
+        }
+
+        @Override
+        void undo(Model model) {
+            for (int i = 0; i < shapes.size(); i++) {
+                model.changeShapeBorderColor(shapes.get(i), oldColors[i]);
+            }
+        }
+
+        @Override
+        void redo(Model model) {
+            if (shapes.size() == 1) {
+                model.changeShapeBorderColor(shapes.get(0), newColor);
+            } else {
+                model.changeShapesBorderColor(shapes, newColor);
+            }
+        }
+
+        @Override
+        boolean isCompound() {
+            return shapes.size() > 1;
+        }
+    }
+
+    /**
+     * A change to the fill color of one or more shapes.
+     */
+    static final class FillColor extends Command {
+        private final List<Shape> shapes;
+        private final Color[] oldColors;
+        private final Color newColor;
+
+        /**
+         * Constructs a FillColor command.
+         *
+         * @param shapes    The shapes that were changed.
+         * @param oldColors The fill color each shape had before.
+         * @param newColor  The fill color they were given.
+         */
+        FillColor(List<Shape> shapes, Color[] oldColors, Color newColor) {
+            this.shapes = shapes;
+            this.oldColors = oldColors;
+            this.newColor = newColor;
+        }
+
+        @Override
+        void undo(Model model) {
+            for (int i = 0; i < shapes.size(); i++) {
+                model.changeShapeFillColor(shapes.get(i), oldColors[i]);
+            }
+        }
+
+        @Override
+        void redo(Model model) {
+            if (shapes.size() == 1) {
+                model.changeShapeFillColor(shapes.get(0), newColor);
+            } else {
+                model.changeShapesFillColor(shapes, newColor);
+            }
+        }
+
+        @Override
+        boolean isCompound() {
+            return shapes.size() > 1;
+        }
+    }
+
+    /**
+     * A change to the border width of one or more shapes.
+     */
+    static final class BorderWidth extends Command {
+        private final List<Shape> shapes;
+        private final int[] oldWidths;
+        private final int newWidth;
+
+        /**
+         * Constructs a BorderWidth command.
+         *
+         * @param shapes    The shapes that were changed.
+         * @param oldWidths The border width each shape had before.
+         * @param newWidth  The border width they were given.
+         */
+        BorderWidth(List<Shape> shapes, int[] oldWidths, int newWidth) {
+            this.shapes = shapes;
+            this.oldWidths = oldWidths;
+            this.newWidth = newWidth;
+        }
+
+        @Override
+        void undo(Model model) {
+            for (int i = 0; i < shapes.size(); i++) {
+                model.changeShapeBorderWidth(shapes.get(i), oldWidths[i]);
+            }
+        }
+
+        @Override
+        void redo(Model model) {
+            if (shapes.size() == 1) {
+                model.changeShapeBorderWidth(shapes.get(0), newWidth);
+            } else {
+                model.changeShapesBorderWidth(shapes, newWidth);
+            }
+        }
+
+        @Override
+        boolean isCompound() {
+            return shapes.size() > 1;
+        }
+    }
+
+    /**
+     * The edits made in one committed batch, undone and redone together.
+     */
+    static final class Batch extends Command {
+        private final List<Command> commands;
+
+        /**
+         * Constructs a Batch command.
+         *
+         * @param commands The edits, in the order they were made.
+         */
+        Batch(List<Command> commands) {
+            this.commands = commands;
+        }
+
+        @Override
+        void undo(Model model) {
+            for (int i = commands.size() - 1; i >= 0; i--) {
+                commands.get(i).undo(model);
+            }
+        }
+
+        @Override
+        void redo(Model model) {
+            for (Command command : commands) {
+                command.redo(model);
+            }
+        }
+
+        @Override
+        boolean isCompound() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package Model;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * The undo and redo history of a Model, holding the commands for the edits
+ * made to it. The history keeps at most a set number of steps, forgetting the
+ * oldest when it grows past them, so its memory stays flat however long the
+ * model is edited. Recording, undoing and redoing each take constant time.
+ */
+class CommandHistory {
+    private final Deque<Command> undoable = new ArrayDeque<>();
+    private final Deque<Command> redoable = new ArrayDeque<>();
+    private int limit;
+    private boolean sealed;
+
+    /**
+     * Constructs an empty CommandHistory.
+     *
+     * @param limit The greatest number of steps to keep for undoing.
+     */
+    CommandHistory(int limit) {
+        setLimit(limit);
+    }
+
+    /**
+     * Records an edit that has just been made, combining it with the last
+     * step if that step is still open and the two can be combined, and
+     * forgetting the steps that could have been redone.
+     *
+     * @param command The command for the edit.
+     */
+    void record(Command command) {
+        redoable.clear();
+        Command last = sealed ? null : undoable.peekFirst();
+        Command merged = last == null ? null : last.mergeWith(command);
+        if (merged != null) {
+            undoable.pollFirst();
+            undoable.push(merged);
+        } else {
+            undoable.push(command);
+            if (undoable.size() > limit) {
+                undoable.pollLast();
+            }
+        }
+        sealed = false;
+    }
+
+    /**
+     * Closes the last step, so that the next edit is recorded as a step of
+     * its own even if it could be combined with the last one.
+     */
+    void seal() {
+        sealed = true;
+    }
+
+    /**
+     * Takes the last step off the history, keeping it to be redone.
+     *
+     * @return The command to undo, or null if there is none.
+     */
+    Command undo() {
+        Command command = undoable.pollFirst();
+        if (command != null) {
+            redoable.push(command);
+            sealed = true;
+        }
+        return command;
+    }
+
+    /**
+     * Takes the last undone step off the history, keeping it to be undone
+     * again.
+     *
+     * @return The command to redo, or null if there is none.
+     */
+    Command redo() {
+        Command command = redoable.pollFirst();
+        if (command != null) {
+            undoable.push(command);
+            sealed = true;
+        }
+        return command;
+    }
+
+    /**
+     * Sets the greatest number of steps to keep for undoing, forgetting the
+     * oldest steps if there are already more.
+     *
+     * @param limit The number of steps, at least zero.
+     * @throws IllegalArgumentException If the limit is negative.
+     */
+    void setLimit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Undo limit must not be negative: " + limit);
+        }
+        this.limit = limit;
+        while (undoable.size() > limit) {
+            undoable.pollLast();
+        }
+    }
+
+    /**
+     * Returns the greatest number of steps kept for undoing.
+     *
+     * @return The number of steps.
+     */
+    int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns the number of steps that can be undone.
+     *
+     * @return The number of steps.
+     */
+    int undoSize() {
+        return undoable.size();
+    }
+
+    /**
+     * Returns the number of steps that can be redone.
+     *
+     * @return The number of steps.
+     */
+    int redoSize() {
+        return redoable.size();
+    }
+}
@@ -0,0 +1,86 @@
+package Model;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.Random;
+import Shapes.Ellipses;
+import Shapes.Rectangle;
+import Shapes.Shape;
+
+/**
+ * A micro-benchmark of finding the shape under the mouse. It fills a model
+ * with 100,000 rotated shapes, times getShapeAt at random points, and reports
+ * the per-lookup latency against Model.HOVER_LATENCY_BUDGET_NANOS. It is run
+ * by hand rather than with the unit tests, as its timings depend on the
+ * machine and how busy it is.
+ */
+public class HoverLatencyBenchmark {
+    private static final int SHAPES = 100_000;
+    private static final int LOOKUPS = 20_000;
+    private static final int CANVAS_SIZE = 20_000;
+
+    /**
+     * Runs the benchmark and prints the latency of each lookup as an average,
+     * a 99th percentile and a maximum.
+     *
+     * @param args Command line arguments (not used).
+     */
+    public static void main(String[] args) {
+        Model model = new Model();
+        Random random = new Random(42);
+        for (int i = 0; i < SHAPES; i++) {
+            Shape shape = i % 2 == 0
+                    ? new Rectangle(random.nextInt(CANVAS_SIZE), random.nextInt(CANVAS_SIZE),
+                            10 + random.nextInt(60), 10 + random.nextInt(60), Color.BLACK, 1, Color.WHITE)
+                    : new Ellipses(random.nextInt(CANVAS_SIZE), random.nextInt(CANVAS_SIZE),
+                            10 + random.nextInt(60), 10 + random.nextInt(60), Color.BLACK, 1, Color.WHITE);
+            shape.rotate(random.nextInt(360));
+            model.addShape(shape);
+        }
+
+        // warm up, so that the timed lookups run compiled code
+        int found = lookUp(model, random, new long[LOOKUPS]);
+        long[] latencies = new long[LOOKUPS];
+        found += lookUp(model, random, latencies);
+        Arrays.sort(latencies);
+
+        long total = 0;
+        for (long latency : latencies) {
+            total += latency;
+        }
+        long average = total / LOOKUPS;
+        long p99 = latencies[LOOKUPS * 99 / 100];
+        long max = latencies[LOOKUPS - 1];
+        long budget = Model.HOVER_LATENCY_BUDGET_NANOS;
+        System.out.println("getShapeAt with " + SHAPES + " shapes, " + LOOKUPS + " lookups, " + found
+                + " hits");
+        System.out.println("  budget   " + budget + " ns");
+        System.out.println("  average  " + average + " ns" + (average <= budget ? "" : "  OVER BUDGET"));
+        System.out.println("  p99      " + p99 + " ns" + (p99 <= budget ? "" : "  OVER BUDGET"));
+        System.out.println("  max      " + max + " ns");
+    }
+
+    /**
+     * Finds the shape at a random point once for each slot of an array,
+     * recording how long each lookup took.
+     *
+     * @param model     The model to look in.
+     * @param random    The source of the points.
+     * @param latencies Receives the time each lookup took, in nanoseconds.
+     * @return The number of lookups that found a shape.
+     */
+    private static int lookUp(Model model, Random random, long[] latencies) {
+        int found = 0;
+        for (int i = 0; i < latencies.length; i++) {
+            double x = random.nextDouble() * CANVAS_SIZE;
+            double y = random.nextDouble() * CANVAS_SIZE;
+            long start = System.nanoTime();
+            Shape shape = model.getShapeAt(x, y);
+            latencies[i] = System.nanoTime() - start;
+            if (shape != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
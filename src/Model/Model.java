@@ -1,40 +1,76 @@
 package Model;
 
+import java.awt.geom.Rectangle2D;
+import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Stack;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
 import Shapes.Shape;
-import myGUI.GUIDelegate;
 import Shapes.DrawType;
 import java.awt.Color;
 
 /**
  * Represents the model for a drawing application, handling shapes, undo/redo
  * functionality, and shape properties.
+ * Observers can listen for property changes, or register a ModelListener to
+ * receive a typed ModelEvent naming exactly the shapes each change touches.
+ * Every edit is recorded as a command holding just what it changed, so that
+ * it can be undone and redone.
  */
 public class Model {
 
+    /**
+     * The number of steps kept for undoing until setUndoLimit is called.
+     */
+    public static final int DEFAULT_UNDO_LIMIT = 1000;
+
+    /**
+     * The longest, in nanoseconds, getShapeAt should take in a drawing of
+     * 100,000 shapes, so that the shape under the mouse can be found on every
+     * mouse move. HoverLatencyBenchmark measures it against this budget.
+     */
+    public static final long HOVER_LATENCY_BUDGET_NANOS = 1_000_000;
+
     private boolean fill;
-    private List<Shape> shapes;
-    private List<Shape> shapesFromServer;
-    private Stack<Object> undoStack;
-    private Stack<Object> redoStack;
+    private volatile OrderedShapeList shapes;
+    private volatile OrderedShapeList shapesFromServer;
+    private CommandHistory history;
+    private boolean replaying;
     private Shape selectedShape;
     private PropertyChangeSupport notifier;
+    private final List<ModelListener> listeners = new CopyOnWriteArrayList<>();
     private java.awt.Color currentColor;
     private DrawType currentShapeType;
+    private QuadTree shapeIndex;
+    private QuadTree serverShapeIndex;
+    private QuadTree occluderIndex;
+    private QuadTree serverOccluderIndex;
+    private Map<String, Shape> shapesById;
+    private Map<String, Shape> serverShapesById;
+    private long nextOrder;
+    private int batchDepth;
+    private Batch batch;
 
     /**
      * Constructs a new Model instance.
      */
     public Model() {
         this.fill = false;
-        shapes = new ArrayList<>();
-        undoStack = new Stack<>();
-        redoStack = new Stack<>();
+        shapes = OrderedShapeList.EMPTY;
+        history = new CommandHistory(DEFAULT_UNDO_LIMIT);
         notifier = new PropertyChangeSupport(this);
-        shapesFromServer = new ArrayList<>();
+        shapesFromServer = OrderedShapeList.EMPTY;
+        shapeIndex = new QuadTree();
+        serverShapeIndex = new QuadTree();
+        occluderIndex = new QuadTree();
+        serverOccluderIndex = new QuadTree();
+        shapesById = new HashMap<>();
+        serverShapesById = new HashMap<>();
     }
 
     /**
@@ -52,14 +88,53 @@ public class Model {
      *
      * @param listener The listener to be notified of property changes.
      */
-    public void addObserver(GUIDelegate listener) {
+    public void addObserver(PropertyChangeListener listener) {
         notifier.addPropertyChangeListener(listener);
         List<Shape> updatedShapesList = getUpdatedShapesList();
         updateModel("shapes", updatedShapesList);
     }
 
     /**
-     * Returns the current list of shapes managed by the model.
+     * Adds a listener for the typed change events of the model.
+     *
+     * @param listener The listener to be told about each change.
+     */
+    public void addModelListener(ModelListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with addModelListener.
+     *
+     * @param listener The listener to remove.
+     */
+    public void removeModelListener(ModelListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Delivers a typed change event to every model listener. Inside a batch,
+     * the event is kept for the batch's BatchCommitted event instead.
+     *
+     * @param event The change that was made.
+     */
+    private void fireModelEvent(ModelEvent event) {
+        if (batch != null) {
+            if (event instanceof ModelEvent.BatchCommitted) {
+                batch.events.addAll(((ModelEvent.BatchCommitted) event).getEvents());
+            } else {
+                batch.events.add(event);
+            }
+            return;
+        }
+        for (ModelListener listener : listeners) {
+            listener.modelChanged(event);
+        }
+    }
+
+    /**
+     * Returns the current list of shapes managed by the model, as an
+     * immutable snapshot in the same way as getShapes.
      *
      * @return A list of shapes.
      */
@@ -68,22 +143,138 @@ public class Model {
     }
 
     /**
-     * Notifies observers about changes to the shape list.
+     * Notifies observers about changes to the shape list. Inside a batch, the
+     * notification is sent once the batch is committed.
      */
     public void notifyObservers() {
+        if (batch != null) {
+            batch.changedAll = true;
+            return;
+        }
         notifier.firePropertyChange("shapes", null, shapes);
     }
 
+    /**
+     * Notifies observers of the region of the canvas a change to some shapes
+     * needs repainted. Inside a batch, the region is added to the batch's
+     * region instead.
+     *
+     * @param changed The changed shape, or a list of the changed shapes.
+     * @param region  The region covering the shapes before and after.
+     */
+    private void notifyDirtyRegion(Object changed, Rectangle2D region) {
+        if (batch == null) {
+            notifier.firePropertyChange("dirtyRegion", changed, region);
+            return;
+        }
+        if (changed instanceof Shape) {
+            batch.shapes.add((Shape) changed);
+        } else {
+            for (Object shape : (List<?>) changed) {
+                batch.shapes.add((Shape) shape);
+            }
+        }
+        if (batch.region == null) {
+            batch.region = (Rectangle2D) region.clone();
+        } else {
+            batch.region.add(region);
+        }
+    }
+
+    /**
+     * Starts a batch of changes. Until the matching commit, changes to the
+     * model send no notifications, and shapes added are recorded together.
+     * Committing then sends a single notification for the whole batch and
+     * records it as one step to undo. Batches may be nested, in which case
+     * only the outermost commit takes effect.
+     */
+    public void beginBatch() {
+        if (batchDepth++ == 0) {
+            batch = new Batch();
+        }
+    }
+
+    /**
+     * Ends the batch started by the matching beginBatch. When the outermost
+     * batch is committed, the changes made in it become a single undo step,
+     * property observers receive one "dirtyRegion" event covering every
+     * changed shape, or one "shapes" event if the whole list changed, and
+     * model listeners receive one BatchCommitted event.
+     *
+     * @throws IllegalStateException If no batch has been started.
+     */
+    public void commit() {
+        if (batchDepth == 0) {
+            throw new IllegalStateException("No batch to commit");
+        }
+        if (--batchDepth > 0) {
+            return;
+        }
+        Batch committed = batch;
+        batch = null;
+        if (committed.commands.size() == 1) {
+            record(committed.commands.get(0));
+        } else if (!committed.commands.isEmpty()) {
+            record(new Command.Batch(committed.commands));
+        }
+        if (committed.changedAll) {
+            notifyObservers();
+        } else if (committed.region != null) {
+            notifier.firePropertyChange("dirtyRegion", committed.shapes, committed.region);
+        }
+        if (!committed.events.isEmpty()) {
+            fireModelEvent(new ModelEvent.BatchCommitted(this, committed.events));
+        }
+    }
+
+    /**
+     * Makes a group of changes as a single batch, committing it even if the
+     * changes throw.
+     *
+     * @param changes The changes to make.
+     */
+    public void runBatch(Runnable changes) {
+        beginBatch();
+        try {
+            changes.run();
+        } finally {
+            commit();
+        }
+    }
+
+    /**
+     * Records an edit so that it can be undone, as part of the current batch
+     * if there is one. Nothing is recorded while an edit is being undone or
+     * redone.
+     *
+     * @param command The command for the edit.
+     */
+    private void record(Command command) {
+        if (replaying) {
+            return;
+        }
+        if (batch == null) {
+            history.record(command);
+            return;
+        }
+        int last = batch.commands.size() - 1;
+        Command merged = last < 0 ? null : batch.commands.get(last).mergeWith(command);
+        if (merged != null) {
+            batch.commands.set(last, merged);
+        } else {
+            batch.commands.add(command);
+        }
+    }
+
     /**
      * Adds a shape to the model.
      *
      * @param shape The shape to be added.
      */
     public void addShape(Shape shape) {
-        shapes.add(shape);
-        undoStack.push(shape);
-        redoStack.clear();
-        notifier.firePropertyChange("shapes", null, shapes);
+        long order = nextOrder++;
+        attachShape(shape, false, order);
+        record(new Command.AddShape(shape, false, order));
     }
 
     /**
@@ -92,122 +283,221 @@ public class Model {
      * @param shape The shape received from the server.
      */
     public void addShapeFromServer(Shape shape) {
-        shapesFromServer.add(shape);
-        undoStack.push(shape);
-        redoStack.clear();
-        notifier.firePropertyChange("shapes", null, shapes);
+        long order = nextOrder++;
+        attachShape(shape, true, order);
+        record(new Command.AddShape(shape, true, order));
     }
 
     /**
-     * Undoes the last action (shape addition or modification).
+     * Undoes the last edit. Consecutive moves of the same shapes are undone
+     * together, as are the edits of a batch, with a single notification.
      */
     public void undo() {
-        if (!undoStack.isEmpty()) {
-            Object action = undoStack.pop();
-            if (action instanceof Shape) {
-                Shape shape = (Shape) action;
-                shapes.remove(shape);
-                redoStack.push(shape);
-            } else if (action instanceof RemovalMarker) {
-                Shape shape = ((RemovalMarker) action).getShape();
-                shapes.add(shape);
-                redoStack.push(new RemovalMarker(shape));
-            }
-            notifyObservers();
+        Command command = history.undo();
+        if (command != null) {
+            replay(() -> command.undo(this), command.isCompound());
         }
     }
-    
+
     /**
-     * Redoes the last undone action.
+     * Redoes the last undone edit, with a single notification if it changes
+     * several shapes.
      */
     public void redo() {
-        if (!redoStack.isEmpty()) {
-            Object action = redoStack.pop();
-            if (action instanceof Shape) {
-                Shape shape = (Shape) action;
-                shapes.add(shape);
-                undoStack.push(shape); // Add back to undoStack for possible future undo
-            } else if (action instanceof RemovalMarker) {
-                Shape shape = ((RemovalMarker) action).getShape();
-                shapes.remove(shape);
-                undoStack.push(new RemovalMarker(shape)); // Add removal marker back to undoStack for possible future undo
+        Command command = history.redo();
+        if (command != null) {
+            replay(() -> command.redo(this), command.isCompound());
+        }
+    }
+
+    /**
+     * Makes the changes for undoing or redoing an edit without recording
+     * them, as a batch if they touch several shapes.
+     *
+     * @param changes  The changes to make.
+     * @param compound true if the changes touch several shapes.
+     */
+    private void replay(Runnable changes, boolean compound) {
+        replaying = true;
+        try {
+            if (compound) {
+                runBatch(changes);
+            } else {
+                changes.run();
             }
-            notifyObservers();
+        } finally {
+            replaying = false;
         }
     }
 
     /**
-     * Removes a specified shape from the model.
+     * Ends the current undo step, so that the next edit becomes a step of its
+     * own. Moves of the same shapes made one after another are otherwise
+     * undone as one, so this should be called when a drag ends.
+     */
+    public void endUndoStep() {
+        history.seal();
+    }
+
+    /**
+     * Sets the greatest number of steps that can be undone. The oldest steps
+     * are forgotten once there are more, which keeps the memory used by the
+     * history flat in long editing sessions.
+     *
+     * @param limit The number of steps, at least zero.
+     * @throws IllegalArgumentException If the limit is negative.
+     */
+    public void setUndoLimit(int limit) {
+        history.setLimit(limit);
+    }
+
+    /**
+     * Returns the greatest number of steps that can be undone.
+     *
+     * @return The number of steps.
+     */
+    public int getUndoLimit() {
+        return history.getLimit();
+    }
+
+    /**
+     * Returns the number of steps that can currently be undone.
+     *
+     * @return The number of steps.
+     */
+    public int getUndoCount() {
+        return history.undoSize();
+    }
+
+    /**
+     * Returns the number of steps that can currently be redone.
+     *
+     * @return The number of steps.
+     */
+    public int getRedoCount() {
+        return history.redoSize();
+    }
+
+    /**
+     * Removes a specified shape from the model. The removal can be undone,
+     * which puts the shape back where it was in the painting order.
      *
      * @param shapeToRemove The shape to be removed.
      */
     public void removeShape(Shape shapeToRemove) {
-        if (shapes.remove(shapeToRemove)) {
-            undoStack.remove(shapeToRemove);
-            redoStack.remove(shapeToRemove);
-            notifyObservers();
+        if (shapeIndex.contains(shapeToRemove)) {
+            long order = shapeIndex.orderOf(shapeToRemove);
+            detachShape(shapeToRemove, false);
+            record(new Command.RemoveShape(shapeToRemove, order));
         }
     }
 
     /**
-     * Represents a removal marker for a shape that has been removed from the model.
-     * This marker is used to keep track of removals in the undo stack.
+     * Puts a shape into the model at a given z-order, without recording it.
+     * A shape that is already in the model is moved to the z-order.
+     *
+     * @param shape      The shape to put in.
+     * @param fromServer true to put it among the shapes from the server.
+     * @param order      The z-order of the shape.
      */
-    class RemovalMarker {
-        private Shape shape;
-
-        /**
-         * Constructs a new RemovalMarker for a given shape.
-         *
-         * @param shape The shape associated with this removal marker.
-         */
-        public RemovalMarker(Shape shape) {
-            this.shape = shape;
+    void attachShape(Shape shape, boolean fromServer, long order) {
+        if (fromServer) {
+            if (serverShapeIndex.contains(shape)) {
+                shapesFromServer = shapesFromServer.without(serverShapeIndex.orderOf(shape));
+            }
+            shapesFromServer = shapesFromServer.with(shape, order);
+            index(serverShapeIndex, serverOccluderIndex, serverShapesById, shape, order);
+        } else {
+            if (shapeIndex.contains(shape)) {
+                shapes = shapes.without(shapeIndex.orderOf(shape));
+            }
+            shapes = shapes.with(shape, order);
+            index(shapeIndex, occluderIndex, shapesById, shape, order);
         }
+        shapeAdded(shape, fromServer);
+    }
 
-        /**
-         * Gets the shape associated with this removal marker.
-         *
-         * @return The shape associated with this marker.
-         */
-        public Shape getShape() {
-            return shape;
+    /**
+     * Takes a shape out of the model, without recording it. Shapes that are
+     * not in the model are ignored.
+     *
+     * @param shape      The shape to take out.
+     * @param fromServer true if it is among the shapes from the server.
+     */
+    void detachShape(Shape shape, boolean fromServer) {
+        if (fromServer && serverShapeIndex.contains(shape)) {
+            shapesFromServer = shapesFromServer.without(serverShapeIndex.orderOf(shape));
+            unindex(serverShapeIndex, serverOccluderIndex, serverShapesById, shape);
+            shapeRemoved(shape);
+        } else if (!fromServer && shapeIndex.contains(shape)) {
+            shapes = shapes.without(shapeIndex.orderOf(shape));
+            unindex(shapeIndex, occluderIndex, shapesById, shape);
+            shapeRemoved(shape);
         }
     }
 
+    /**
+     * The changes gathered while a batch is open.
+     */
+    private static class Batch {
+        private final List<Command> commands = new ArrayList<>();
+        private final List<ModelEvent> events = new ArrayList<>();
+        private final List<Shape> shapes = new ArrayList<>();
+        private Rectangle2D region;
+        private boolean changedAll;
+    }
+
 
     /**
-     * Changes the border color of a specified shape.
+     * Changes the border color of a specified shape. Nothing is changed or
+     * recorded if the shape already has the color.
      *
      * @param shape    The shape whose border color is to be changed.
      * @param newColor The new border color.
      */
     public void changeShapeBorderColor(Shape shape, Color newColor) {
+        if (Objects.equals(shape.snapshot().getBorderColor(), newColor)) {
+            return;
+        }
+        record(new Command.BorderColor(Collections.singletonList(shape),
+                new Color[] { shape.snapshot().getBorderColor() }, newColor));
         shape.setBorderColor(newColor);
-        notifier.firePropertyChange("shapes", null, shapes);
+        shapeChanged(shape);
     }
 
     /**
-     * Changes the fill color of a specified shape.
+     * Changes the fill color of a specified shape. Nothing is changed or
+     * recorded if the shape already has the color.
      *
      * @param shape    The shape whose fill color is to be changed.
      * @param newColor The new fill color.
      */
 
     public void changeShapeFillColor(Shape shape, Color newColor) {
+        if (Objects.equals(shape.snapshot().getFillColor(), newColor)) {
+            return;
+        }
+        record(new Command.FillColor(Collections.singletonList(shape),
+                new Color[] { shape.snapshot().getFillColor() }, newColor));
         shape.setFillColor(newColor);
-        notifier.firePropertyChange("shapes", null, shapes);
+        shapeChanged(shape);
     }
 
     /**
-     * Changes the border width of a specified shape.
+     * Changes the border width of a specified shape. Nothing is changed or
+     * recorded if the shape already has the width.
      *
      * @param shape    The shape whose border width is to be changed.
      * @param newWidth The new border width.
      */
     public void changeShapeBorderWidth(Shape shape, int newWidth) {
+        if (paintedBorderWidth(shape) == newWidth) {
+            return;
+        }
+        record(new Command.BorderWidth(Collections.singletonList(shape),
+                new int[] { paintedBorderWidth(shape) }, newWidth));
         shape.setBorderWidth(newWidth);
-        notifier.firePropertyChange("shapes", null, shapes);
+        shapeChanged(shape);
     }
 
     /**
@@ -217,13 +507,430 @@ public class Model {
      * @param angle   The rotation angle in degrees.
      */
     public void rotateShape(String shapeId, int angle) {
+        Shape shape = getShapeById(shapeId);
+        if (shape != null) {
+            rotateShape(shape, angle);
+        }
+    }
+
+    /**
+     * Rotates a given shape by a specified angle. Nothing is changed or
+     * recorded for a whole number of turns.
+     *
+     * @param shape The shape to rotate.
+     * @param angle The rotation angle in degrees.
+     */
+    public void rotateShape(Shape shape, int angle) {
+        if (angle % 360 == 0) {
+            return;
+        }
+        record(new Command.Rotate(Collections.singletonList(shape), angle));
+        shape.rotate(angle);
+        shapeChanged(shape);
+    }
+
+    /**
+     * Moves a shape by a specified delta in the x and y directions. Nothing
+     * is changed or recorded for a zero delta.
+     *
+     * @param shape  The shape to move.
+     * @param deltaX The amount to move in the x-direction.
+     * @param deltaY The amount to move in the y-direction.
+     */
+    public void moveShape(Shape shape, int deltaX, int deltaY) {
+        if (deltaX == 0 && deltaY == 0) {
+            return;
+        }
+        record(new Command.Move(Collections.singletonList(shape), deltaX, deltaY));
+        shape.move(deltaX, deltaY);
+        shapeChanged(shape);
+    }
+
+    /**
+     * Resizes a shape by a specified scale factor. Nothing is changed or
+     * recorded for a factor of one.
+     *
+     * @param shape       The shape to resize.
+     * @param scaleFactor The factor by which to scale the shape.
+     */
+    public void resizeShape(Shape shape, double scaleFactor) {
+        if (scaleFactor == 1) {
+            return;
+        }
+        record(new Command.Resize(Collections.singletonList(shape), scaleFactor,
+                new double[][] { shape.getGeometry() }));
+        shape.resize(scaleFactor);
+        shapeChanged(shape);
+    }
+
+    /**
+     * Moves several shapes by the same delta, notifying observers once for
+     * all of them.
+     *
+     * @param shapes The shapes to move.
+     * @param deltaX The amount to move in the x-direction.
+     * @param deltaY The amount to move in the y-direction.
+     */
+    public void moveShapes(List<Shape> shapes, int deltaX, int deltaY) {
+        if (shapes.isEmpty() || deltaX == 0 && deltaY == 0) {
+            return;
+        }
+        record(new Command.Move(new ArrayList<>(shapes), deltaX, deltaY));
         for (Shape shape : shapes) {
-            if (shape.getId() == shapeId) {
-                shape.rotate(angle);
-                notifier.firePropertyChange("shapes", null, shapes);
-                break;
+            shape.move(deltaX, deltaY);
+        }
+        shapesChanged(shapes);
+    }
+
+    /**
+     * Resizes several shapes by the same scale factor, notifying observers
+     * once for all of them.
+     *
+     * @param shapes      The shapes to resize.
+     * @param scaleFactor The factor by which to scale the shapes.
+     */
+    public void resizeShapes(List<Shape> shapes, double scaleFactor) {
+        if (shapes.isEmpty() || scaleFactor == 1) {
+            return;
+        }
+        List<Shape> resized = new ArrayList<>(shapes);
+        double[][] before = new double[resized.size()][];
+        for (int i = 0; i < before.length; i++) {
+            before[i] = resized.get(i).getGeometry();
+        }
+        record(new Command.Resize(resized, scaleFactor, before));
+        for (Shape shape : shapes) {
+            shape.resize(scaleFactor);
+        }
+        shapesChanged(shapes);
+    }
+
+    /**
+     * Rotates several shapes by the same angle, each about its own centre,
+     * notifying observers once for all of them.
+     *
+     * @param shapes The shapes to rotate.
+     * @param angle  The rotation angle in degrees.
+     */
+    public void rotateShapes(List<Shape> shapes, int angle) {
+        if (shapes.isEmpty() || angle % 360 == 0) {
+            return;
+        }
+        record(new Command.Rotate(new ArrayList<>(shapes), angle));
+        for (Shape shape : shapes) {
+            shape.rotate(angle);
+        }
+        shapesChanged(shapes);
+    }
+
+    /**
+     * Changes the border color of several shapes, notifying observers once
+     * for all of them. Shapes that already have the color are left out, and
+     * nothing is recorded or sent if none is changed.
+     *
+     * @param shapes   The shapes whose border color is to be changed.
+     * @param newColor The new border color.
+     */
+    public void changeShapesBorderColor(List<Shape> shapes, Color newColor) {
+        List<Shape> changed = new ArrayList<>();
+        List<Color> oldColors = new ArrayList<>();
+        for (Shape shape : shapes) {
+            Color oldColor = shape.snapshot().getBorderColor();
+            if (!Objects.equals(oldColor, newColor)) {
+                changed.add(shape);
+                oldColors.add(oldColor);
+            }
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+        record(new Command.BorderColor(changed, oldColors.toArray(new Color[0]), newColor));
+        for (Shape shape : changed) {
+            shape.setBorderColor(newColor);
+        }
+        shapesChanged(changed);
+    }
+
+    /**
+     * Changes the fill color of several shapes, notifying observers once for
+     * all of them. Shapes that already have the color are left out, and
+     * nothing is recorded or sent if none is changed.
+     *
+     * @param shapes   The shapes whose fill color is to be changed.
+     * @param newColor The new fill color.
+     */
+    public void changeShapesFillColor(List<Shape> shapes, Color newColor) {
+        List<Shape> changed = new ArrayList<>();
+        List<Color> oldColors = new ArrayList<>();
+        for (Shape shape : shapes) {
+            Color oldColor = shape.snapshot().getFillColor();
+            if (!Objects.equals(oldColor, newColor)) {
+                changed.add(shape);
+                oldColors.add(oldColor);
+            }
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+        record(new Command.FillColor(changed, oldColors.toArray(new Color[0]), newColor));
+        for (Shape shape : changed) {
+            shape.setFillColor(newColor);
+        }
+        shapesChanged(changed);
+    }
+
+    /**
+     * Changes the border width of several shapes, notifying observers once
+     * for all of them. Shapes that already have the width are left out, and
+     * nothing is recorded or sent if none is changed.
+     *
+     * @param shapes   The shapes whose border width is to be changed.
+     * @param newWidth The new border width.
+     */
+    public void changeShapesBorderWidth(List<Shape> shapes, int newWidth) {
+        List<Shape> changed = new ArrayList<>();
+        for (Shape shape : shapes) {
+            if (paintedBorderWidth(shape) != newWidth) {
+                changed.add(shape);
             }
         }
+        if (changed.isEmpty()) {
+            return;
+        }
+        int[] oldWidths = new int[changed.size()];
+        for (int i = 0; i < oldWidths.length; i++) {
+            oldWidths[i] = paintedBorderWidth(changed.get(i));
+        }
+        record(new Command.BorderWidth(changed, oldWidths, newWidth));
+        for (Shape shape : changed) {
+            shape.setBorderWidth(newWidth);
+        }
+        shapesChanged(changed);
+    }
+
+    /**
+     * Returns the width of the border a shape is painted with, which is what
+     * a change to its border width is undone to.
+     *
+     * @param shape The shape.
+     * @return The painted border width.
+     */
+    private static int paintedBorderWidth(Shape shape) {
+        return (int) shape.getStroke().getLineWidth();
+    }
+
+    /**
+     * Puts back the geometry several shapes had before an edit, without
+     * recording it, notifying observers once for all of them.
+     *
+     * @param shapes     The shapes to restore.
+     * @param geometries The geometry of each shape, from Shape.getGeometry.
+     */
+    void restoreGeometry(List<Shape> shapes, double[][] geometries) {
+        for (int i = 0; i < shapes.size(); i++) {
+            shapes.get(i).setGeometry(geometries[i]);
+        }
+        if (shapes.size() == 1) {
+            shapeChanged(shapes.get(0));
+        } else {
+            shapesChanged(shapes);
+        }
+    }
+
+    /**
+     * Looks up a shape by its ID in constant time. IDs are compared by value,
+     * so an ID parsed from the server finds the shape it names. Local shapes
+     * are found before shapes retrieved from the server with the same ID.
+     *
+     * @param shapeId The ID of the shape.
+     * @return The shape with the ID, or null if there is none.
+     */
+    public Shape getShapeById(String shapeId) {
+        if (shapeId == null) {
+            return null;
+        }
+        Shape shape = shapesById.get(shapeId);
+        return shape != null ? shape : serverShapesById.get(shapeId);
+    }
+
+    /**
+     * Gives a shape a new ID, keeping the lookup by ID up to date. The ID of
+     * a shape in the model should only be changed through this method.
+     *
+     * @param shape   The shape to give the ID to.
+     * @param shapeId The new ID, or null to remove it.
+     */
+    public void setShapeId(Shape shape, String shapeId) {
+        Map<String, Shape> ids = shapeIndex.contains(shape) ? shapesById
+                : serverShapeIndex.contains(shape) ? serverShapesById : null;
+        if (ids != null && shape.getId() != null) {
+            ids.remove(shape.getId(), shape);
+        }
+        shape.setId(shapeId);
+        if (ids != null && shapeId != null) {
+            ids.put(shapeId, shape);
+        }
+    }
+
+    /**
+     * Finds the topmost shape at a given point on the canvas, within the
+     * HOVER_LATENCY_BUDGET_NANOS budget.
+     *
+     * @param x The x-coordinate of the point.
+     * @param y The y-coordinate of the point.
+     * @return The topmost shape containing the point, or null if there is none.
+     */
+    public Shape getShapeAt(double x, double y) {
+        return shapeIndex.findTopmostAt(x, y);
+    }
+
+    /**
+     * Finds every shape whose painted bounds intersect an area of the canvas.
+     *
+     * @param area The area to search.
+     * @return The shapes intersecting the area, in the order they are painted.
+     */
+    public List<Shape> getShapesIntersecting(Rectangle2D area) {
+        return shapeIndex.query(area);
+    }
+
+    /**
+     * Finds every shape whose outline, with rotation applied, touches an area
+     * of the canvas, such as a selection marquee. Candidates are found through
+     * the spatial index and then checked against their outline, so shapes
+     * whose bounds merely overlap a corner of the area are left out.
+     *
+     * @param area The area to search.
+     * @return The shapes touching the area, in the order they are painted.
+     */
+    public List<Shape> getShapesTouching(Rectangle2D area) {
+        List<Shape> touching = new ArrayList<>();
+        for (Shape shape : shapeIndex.query(area)) {
+            if (shape.getPath().intersects(area)) {
+                touching.add(shape);
+            }
+        }
+        return touching;
+    }
+
+    /**
+     * Finds every shape retrieved from the server whose painted bounds
+     * intersect an area of the canvas.
+     *
+     * @param area The area to search.
+     * @return The server shapes intersecting the area, in the order they are
+     *         painted.
+     */
+    public List<Shape> getServerShapesIntersecting(Rectangle2D area) {
+        return serverShapeIndex.query(area);
+    }
+
+    /**
+     * Returns the extent of the local shapes: the smallest region of the
+     * drawing covering the painted bounds of every one of them. It is
+     * worked out afresh from the spatial index, so it shrinks again when
+     * shapes at the edge of the drawing are removed or moved inwards.
+     *
+     * @return A new rectangle, or null if there are no local shapes.
+     */
+    public Rectangle2D getShapesBounds() {
+        return shapeIndex.bounds();
+    }
+
+    /**
+     * Returns the extent of the shapes retrieved from the server, in the same
+     * way as getShapesBounds.
+     *
+     * @return A new rectangle, or null if there are no server shapes.
+     */
+    public Rectangle2D getServerShapesBounds() {
+        return serverShapeIndex.bounds();
+    }
+
+    /**
+     * Returns whether a shape is completely hidden by an opaque shape painted
+     * after it, so that painting it can be skipped. Server shapes are painted
+     * after every local shape.
+     *
+     * @param shape               The shape to check.
+     * @param includeServerShapes true if the server shapes are being painted.
+     * @param ignored             A shape that is not being painted with the
+     *                            others and so hides nothing, or null.
+     * @return true if the shape is hidden, false otherwise.
+     */
+    public boolean isOccluded(Shape shape, boolean includeServerShapes, Shape ignored) {
+        // a pixel of margin keeps antialiased edges above from letting it show
+        Rectangle2D shapeBounds = shape.getBounds();
+        Rectangle2D bounds = new Rectangle2D.Double(shapeBounds.getX() - 1, shapeBounds.getY() - 1,
+                shapeBounds.getWidth() + 2, shapeBounds.getHeight() + 2);
+        if (shapeIndex.contains(shape)) {
+            if (occluderIndex.findCovering(bounds, shapeIndex.orderOf(shape), ignored) != null) {
+                return true;
+            }
+            return includeServerShapes && serverOccluderIndex.findCovering(bounds, Long.MIN_VALUE, ignored) != null;
+        }
+        if (serverShapeIndex.contains(shape)) {
+            return serverOccluderIndex.findCovering(bounds, serverShapeIndex.orderOf(shape), ignored) != null;
+        }
+        return false;
+    }
+
+    /**
+     * Adds a shape to a shape index with a given z-order, to the matching
+     * occluder index if it is opaque, and to the matching id index if it has
+     * an id.
+     *
+     * @param index     The index of the shapes.
+     * @param occluders The index of the opaque shapes among them.
+     * @param ids       The index of the shapes by id.
+     * @param shape     The shape to add.
+     * @param order     The z-order of the shape.
+     */
+    private void index(QuadTree index, QuadTree occluders, Map<String, Shape> ids, Shape shape, long order) {
+        if (shape.getId() != null) {
+            ids.put(shape.getId(), shape);
+        }
+        index.insert(shape, order);
+        if (shape.isOpaque()) {
+            occluders.insert(shape, order);
+        }
+    }
+
+    /**
+     * Removes a shape from a shape index, its occluder index and its id
+     * index. The id is only removed if it still leads to this shape.
+     *
+     * @param index     The index of the shapes.
+     * @param occluders The index of the opaque shapes among them.
+     * @param ids       The index of the shapes by id.
+     * @param shape     The shape to remove.
+     */
+    private void unindex(QuadTree index, QuadTree occluders, Map<String, Shape> ids, Shape shape) {
+        if (shape.getId() != null) {
+            ids.remove(shape.getId(), shape);
+        }
+        index.remove(shape);
+        occluders.remove(shape);
+    }
+
+    /**
+     * Brings a shape's entry in an occluder index up to date after the shape
+     * has changed, adding or removing it if its fill has become opaque or
+     * stopped being opaque. Shapes not in the shape index are ignored.
+     *
+     * @param index     The index of the shapes.
+     * @param occluders The index of the opaque shapes among them.
+     * @param shape     The shape that has changed.
+     */
+    private void updateOccluder(QuadTree index, QuadTree occluders, Shape shape) {
+        if (!index.contains(shape)) {
+            return;
+        }
+        if (!shape.isOpaque()) {
+            occluders.remove(shape);
+        } else if (occluders.update(shape) == null) {
+            occluders.insert(shape, index.orderOf(shape));
+        }
     }
 
     /**
@@ -232,10 +939,7 @@ public class Model {
      * @param shapeId The ID of the shape to select.
      */
     public void selectShape(String shapeId) {
-        selectedShape = shapes.stream()
-                .filter(s -> s.getId() == shapeId)
-                .findFirst()
-                .orElse(null);
+        selectedShape = getShapeById(shapeId);
 
         notifier.firePropertyChange("selectedShape", null, selectedShape);
     }
@@ -276,7 +980,117 @@ public class Model {
      * @param shape The shape that has changed.
      */
     public void notifyShapeChanged(Shape shape) {
-        notifier.firePropertyChange("shapes", null, shapes);
+        shapeChanged(shape);
+    }
+
+    /**
+     * Re-indexes a shape that has changed and notifies observers of the region
+     * of the canvas that needs repainting, covering both where the shape was
+     * and where it is now. The event carries the changed shape as its old value
+     * and the region as its new value, or a list of the changed shapes for a
+     * change made to several at once. Shapes that are in neither index cause
+     * a notification about the whole shape list instead.
+     *
+     * @param shape The shape that has changed.
+     */
+    private void shapeChanged(Shape shape) {
+        ModelEvent event = changeEvent(shape);
+        Rectangle2D dirtyRegion = shapeIndex.update(shape);
+        Rectangle2D serverRegion = serverShapeIndex.update(shape);
+        updateOccluder(shapeIndex, occluderIndex, shape);
+        updateOccluder(serverShapeIndex, serverOccluderIndex, shape);
+        if (dirtyRegion == null) {
+            dirtyRegion = serverRegion;
+        }
+        if (dirtyRegion != null) {
+            notifyDirtyRegion(shape, dirtyRegion);
+        } else {
+            notifyObservers();
+        }
+        if (event != null) {
+            fireModelEvent(event);
+        }
+    }
+
+    /**
+     * Creates the typed event for a change to a shape, before the shape is
+     * re-indexed and while its index entry still holds its old bounds.
+     *
+     * @param shape The shape that has changed.
+     * @return The event, or null if the shape is in neither index.
+     */
+    private ModelEvent changeEvent(Shape shape) {
+        Rectangle2D oldBounds = shapeIndex.boundsOf(shape);
+        if (oldBounds == null) {
+            oldBounds = serverShapeIndex.boundsOf(shape);
+        }
+        return oldBounds == null ? null : new ModelEvent.ShapeChanged(this, shape, oldBounds, shape.getBounds());
+    }
+
+    /**
+     * Re-indexes several shapes that have changed together and sends a single
+     * notification, in the same way as a change to one shape, whose region is
+     * the union of everything the shapes covered before and after the change.
+     * Model listeners receive one BatchCommitted event holding a ShapeChanged
+     * event for each shape.
+     *
+     * @param changed The shapes that have changed.
+     */
+    private void shapesChanged(List<Shape> changed) {
+        Rectangle2D dirtyRegion = null;
+        boolean unindexed = false;
+        List<ModelEvent> events = new ArrayList<>();
+        for (Shape shape : changed) {
+            ModelEvent event = changeEvent(shape);
+            if (event != null) {
+                events.add(event);
+            }
+            Rectangle2D region = shapeIndex.update(shape);
+            Rectangle2D serverRegion = serverShapeIndex.update(shape);
+            updateOccluder(shapeIndex, occluderIndex, shape);
+            updateOccluder(serverShapeIndex, serverOccluderIndex, shape);
+            if (region == null) {
+                region = serverRegion;
+            }
+            if (region == null) {
+                unindexed = true;
+            } else if (dirtyRegion == null) {
+                dirtyRegion = region;
+            } else {
+                dirtyRegion.add(region);
+            }
+        }
+        if (unindexed) {
+            notifyObservers();
+        } else if (dirtyRegion != null) {
+            notifyDirtyRegion(new ArrayList<>(changed), dirtyRegion);
+        }
+        if (!events.isEmpty()) {
+            fireModelEvent(new ModelEvent.BatchCommitted(this, events));
+        }
+    }
+
+    /**
+     * Notifies observers of the region of the canvas a shape that has just
+     * been added covers, in the same way as a change to the shape.
+     *
+     * @param shape      The shape that was added.
+     * @param fromServer true if the shape was retrieved from the server.
+     */
+    private void shapeAdded(Shape shape, boolean fromServer) {
+        notifyDirtyRegion(shape, (Rectangle2D) shape.getBounds().clone());
+        fireModelEvent(new ModelEvent.ShapeAdded(this, shape, fromServer));
+    }
+
+    /**
+     * Notifies observers of the region of the canvas a shape that has just
+     * been removed covered, in the same way as a change to the shape.
+     *
+     * @param shape The shape that was removed.
+     */
+    private void shapeRemoved(Shape shape) {
+        notifyDirtyRegion(shape, (Rectangle2D) shape.getBounds().clone());
+        fireModelEvent(new ModelEvent.ShapeRemoved(this, shape));
     }
 
     /**
@@ -285,7 +1099,13 @@ public class Model {
      * @param currentDrawingShape The shape that has been updated.
      */
     public void shapeUpdated(Shape currentDrawingShape) {
-        notifier.firePropertyChange("shapes", null, shapes);
+        ModelEvent event = changeEvent(currentDrawingShape);
+        shapeIndex.update(currentDrawingShape);
+        updateOccluder(shapeIndex, occluderIndex, currentDrawingShape);
+        notifyObservers();
+        if (event != null) {
+            fireModelEvent(event);
+        }
     }
 
     /**
@@ -316,7 +1136,13 @@ public class Model {
     }
 
     /**
-     * Returns the list of shapes managed by the model.
+     * Returns the shapes managed by the model, in the order they are painted.
+     * The list is an immutable snapshot that later changes to the model leave
+     * as it is. Each change makes a new version that shares most of its
+     * structure with the last, so taking a snapshot copies nothing, and it
+     * can be read from any thread without locking. The shapes in it are the
+     * model's own, which may go on being edited; take ShapeSnapshots of them
+     * to paint them from another thread.
      *
      * @return A list of shapes.
      */
@@ -334,7 +1160,8 @@ public class Model {
     }
 
     /**
-     * Returns the list of shapes retrieved from the server.
+     * Returns the shapes retrieved from the server, in the order they are
+     * painted, as an immutable snapshot in the same way as getShapes.
      *
      * @return A list of shapes from the server.
      */
@@ -343,20 +1170,59 @@ public class Model {
     }
 
     /**
-     * Clears all shapes (both local and from server) from the model.
+     * Clears all shapes (both local and from server) from the model. The
+     * clear can be undone, which puts every shape back where it was in the
+     * painting order.
      */
-
     public void clearShapes() {
-        shapes.clear();
-        shapesFromServer.clear();
+        Command.Clear cleared = new Command.Clear(shapes, ordersOf(shapes, shapeIndex),
+                shapesFromServer, ordersOf(shapesFromServer, serverShapeIndex), false);
+        shapes = OrderedShapeList.EMPTY;
+        shapeIndex.clear();
+        occluderIndex.clear();
+        shapesById.clear();
+        shapesFromServer = OrderedShapeList.EMPTY;
+        serverShapeIndex.clear();
+        serverOccluderIndex.clear();
+        serverShapesById.clear();
         notifyObservers();
+        fireModelEvent(new ModelEvent.Cleared(this, false));
+        if (!cleared.isEmpty()) {
+            record(cleared);
+        }
     }
 
     /**
-     * Clears only the shapes retrieved from the server from the model.
+     * Clears only the shapes retrieved from the server from the model. The
+     * clear can be undone in the same way as clearShapes.
      */
     public void clearServerShapes() {
-        shapesFromServer.clear();
+        Command.Clear cleared = new Command.Clear(OrderedShapeList.EMPTY, new long[0],
+                shapesFromServer, ordersOf(shapesFromServer, serverShapeIndex), true);
+        shapesFromServer = OrderedShapeList.EMPTY;
+        serverShapeIndex.clear();
+        serverOccluderIndex.clear();
+        serverShapesById.clear();
         notifyObservers();
+        fireModelEvent(new ModelEvent.Cleared(this, true));
+        if (!cleared.isEmpty()) {
+            record(cleared);
+        }
+    }
+
+    /**
+     * Returns the z-order of each shape in a list, as stored in an index.
+     *
+     * @param list  The shapes, all of them in the index.
+     * @param index The index holding the shapes.
+     * @return The z-order of each shape, in the order of the list.
+     */
+    private static long[] ordersOf(List<Shape> list, QuadTree index) {
+        long[] orders = new long[list.size()];
+        int i = 0;
+        for (Shape shape : list) {
+            orders[i++] = index.orderOf(shape);
+        }
+        return orders;
     }
 }
\ No newline at end of file
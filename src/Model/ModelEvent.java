@@ -0,0 +1,286 @@
+package Model;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import Shapes.Shape;
+
+/**
+ * A change made to a Model, delivered to its ModelListeners. Each kind of
+ * change is a subclass carrying the shapes involved and the region of the
+ * drawing they cover, so listeners can react to just that part of the drawing.
+ * Events are immutable once fired.
+ */
+public abstract class ModelEvent {
+    private final Model source;
+
+    /**
+     * Constructs a ModelEvent fired by a model.
+     *
+     * @param source The model that changed.
+     */
+    ModelEvent(Model source) {
+        this.source = source;
+    }
+
+    /**
+     * Returns the model that changed.
+     *
+     * @return The model.
+     */
+    public Model getSource() {
+        return source;
+    }
+
+    /**
+     * Returns the region of the drawing whose appearance the change affects.
+     *
+     * @return The affected region, or null if the whole drawing is affected.
+     */
+    public abstract Rectangle2D getDirtyRegion();
+
+    /**
+     * Fired when a shape is added to the model, including when its removal is
+     * undone.
+     */
+    public static final class ShapeAdded extends ModelEvent {
+        private final Shape shape;
+        private final Rectangle2D bounds;
+        private final boolean fromServer;
+
+        /**
+         * Constructs a ShapeAdded event.
+         *
+         * @param source     The model that changed.
+         * @param shape      The shape that was added.
+         * @param fromServer true if the shape was retrieved from the server.
+         */
+        ShapeAdded(Model source, Shape shape, boolean fromServer) {
+            super(source);
+            this.shape = shape;
+            this.bounds = (Rectangle2D) shape.getBounds().clone();
+            this.fromServer = fromServer;
+        }
+
+        /**
+         * Returns the shape that was added.
+         *
+         * @return The shape.
+         */
+        public Shape getShape() {
+            return shape;
+        }
+
+        /**
+         * Returns whether the shape was retrieved from the server.
+         *
+         * @return true for a server shape, false for a local one.
+         */
+        public boolean isFromServer() {
+            return fromServer;
+        }
+
+        /**
+         * Returns the painted bounds of the shape when it was added.
+         *
+         * @return The bounds of the shape.
+         */
+        @Override
+        public Rectangle2D getDirtyRegion() {
+            return (Rectangle2D) bounds.clone();
+        }
+    }
+
+    /**
+     * Fired when a shape is taken out of the model, including when its
+     * addition is undone.
+     */
+    public static final class ShapeRemoved extends ModelEvent {
+        private final Shape shape;
+        private final Rectangle2D bounds;
+
+        /**
+         * Constructs a ShapeRemoved event.
+         *
+         * @param source The model that changed.
+         * @param shape  The shape that was removed.
+         */
+        ShapeRemoved(Model source, Shape shape) {
+            super(source);
+            this.shape = shape;
+            this.bounds = (Rectangle2D) shape.getBounds().clone();
+        }
+
+        /**
+         * Returns the shape that was removed.
+         *
+         * @return The shape.
+         */
+        public Shape getShape() {
+            return shape;
+        }
+
+        /**
+         * Returns the painted bounds the shape had when it was removed.
+         *
+         * @return The bounds of the shape.
+         */
+        @Override
+        public Rectangle2D getDirtyRegion() {
+            return (Rectangle2D) bounds.clone();
+        }
+    }
+
+    /**
+     * Fired when a shape in the model is moved, resized, rotated or restyled.
+     */
+    public static final class ShapeChanged extends ModelEvent {
+        private final Shape shape;
+        private final Rectangle2D oldBounds;
+        private final Rectangle2D newBounds;
+
+        /**
+         * Constructs a ShapeChanged event.
+         *
+         * @param source    The model that changed.
+         * @param shape     The shape that changed.
+         * @param oldBounds The painted bounds of the shape before the change.
+         * @param newBounds The painted bounds of the shape after the change.
+         */
+        ShapeChanged(Model source, Shape shape, Rectangle2D oldBounds, Rectangle2D newBounds) {
+            super(source);
+            this.shape = shape;
+            this.oldBounds = (Rectangle2D) oldBounds.clone();
+            this.newBounds = (Rectangle2D) newBounds.clone();
+        }
+
+        /**
+         * Returns the shape that changed.
+         *
+         * @return The shape.
+         */
+        public Shape getShape() {
+            return shape;
+        }
+
+        /**
+         * Returns the painted bounds of the shape before the change.
+         *
+         * @return The old bounds.
+         */
+        public Rectangle2D getOldBounds() {
+            return (Rectangle2D) oldBounds.clone();
+        }
+
+        /**
+         * Returns the painted bounds of the shape after the change.
+         *
+         * @return The new bounds.
+         */
+        public Rectangle2D getNewBounds() {
+            return (Rectangle2D) newBounds.clone();
+        }
+
+        /**
+         * Returns the region covering the shape before and after the change.
+         *
+         * @return The union of the old and new bounds.
+         */
+        @Override
+        public Rectangle2D getDirtyRegion() {
+            return oldBounds.createUnion(newBounds);
+        }
+    }
+
+    /**
+     * Fired when the model's shapes are removed all at once.
+     */
+    public static final class Cleared extends ModelEvent {
+        private final boolean serverShapesOnly;
+
+        /**
+         * Constructs a Cleared event.
+         *
+         * @param source           The model that changed.
+         * @param serverShapesOnly true if only the shapes retrieved from the
+         *                         server were removed.
+         */
+        Cleared(Model source, boolean serverShapesOnly) {
+            super(source);
+            this.serverShapesOnly = serverShapesOnly;
+        }
+
+        /**
+         * Returns whether only the shapes retrieved from the server were
+         * removed.
+         *
+         * @return true if local shapes were kept, false if every shape was
+         *         removed.
+         */
+        public boolean isServerShapesOnly() {
+            return serverShapesOnly;
+        }
+
+        /**
+         * Returns null, as clearing affects the whole drawing.
+         *
+         * @return null.
+         */
+        @Override
+        public Rectangle2D getDirtyRegion() {
+            return null;
+        }
+    }
+
+    /**
+     * Fired once for a group of changes made together, in place of an event
+     * for each of them.
+     */
+    public static final class BatchCommitted extends ModelEvent {
+        private final List<ModelEvent> events;
+
+        /**
+         * Constructs a BatchCommitted event.
+         *
+         * @param source The model that changed.
+         * @param events The changes in the batch, in the order they were made.
+         */
+        BatchCommitted(Model source, List<ModelEvent> events) {
+            super(source);
+            this.events = Collections.unmodifiableList(new ArrayList<>(events));
+        }
+
+        /**
+         * Returns the changes in the batch.
+         *
+         * @return The changes, in the order they were made.
+         */
+        public List<ModelEvent> getEvents() {
+            return events;
+        }
+
+        /**
+         * Returns the union of the regions the changes in the batch affect.
+         *
+         * @return The affected region, which is empty for an empty batch, or
+         *         null if any change affects the whole drawing.
+         */
+        @Override
+        public Rectangle2D getDirtyRegion() {
+            Rectangle2D region = null;
+            for (ModelEvent event : events) {
+                Rectangle2D eventRegion = event.getDirtyRegion();
+                if (eventRegion == null) {
+                    return null;
+                }
+                if (region == null) {
+                    region = eventRegion;
+                } else {
+                    region.add(eventRegion);
+                }
+            }
+            return region == null ? new Rectangle2D.Double() : region;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package Model;
+
+/**
+ * A listener for the typed change events of a Model. Unlike a property change
+ * listener on the whole shape list, a ModelListener is told exactly which
+ * shapes changed and where, so it can bring its own state up to date in time
+ * proportional to the change.
+ */
+public interface ModelListener {
+
+    /**
+     * Called after the model has changed.
+     *
+     * @param event The change that was made.
+     */
+    void modelChanged(ModelEvent event);
+}
@@ -6,8 +6,17 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 import Shapes.Shape;
 import Shapes.Triangle;
 import Shapes.DrawType;
@@ -346,6 +355,50 @@ public class ModelTest {
         assertEquals("Selected shape should be shape1 again", shape1, model.getSelectedShape());
     }
 
+    /**
+     * Tests that shapes are found by an ID equal in value to theirs, as IDs
+     * parsed from the server are distinct string objects.
+     */
+    @Test
+    public void testGetShapeById_MatchesByValue() {
+        Shape shape = new Rectangle(0, 0, 100, 100, Color.BLACK, 1, Color.WHITE);
+        shape.setId("42");
+        model.addShape(shape);
+        String parsedId = new String("42");
+        assertEquals("Shape should be found by an equal ID", shape, model.getShapeById(parsedId));
+        model.rotateShape(parsedId, 30);
+        assertEquals("Shape should be rotated through an equal ID", 30, shape.getRotation());
+        model.selectShape(parsedId);
+        assertEquals("Shape should be selected through an equal ID", shape, model.getSelectedShape());
+    }
+
+    /**
+     * Tests that the lookup by ID follows removal, undo, redo, server shapes
+     * and changes of ID.
+     */
+    @Test
+    public void testGetShapeById_FollowsChanges() {
+        Shape shape = new Rectangle(0, 0, 100, 100, Color.BLACK, 1, Color.WHITE);
+        shape.setId("a");
+        model.addShape(shape);
+        model.undo();
+        assertNull("Undone shape should not be found", model.getShapeById("a"));
+        model.redo();
+        assertEquals("Redone shape should be found", shape, model.getShapeById("a"));
+        model.setShapeId(shape, "b");
+        assertNull("Old ID should no longer find the shape", model.getShapeById("a"));
+        assertEquals("New ID should find the shape", shape, model.getShapeById("b"));
+        model.removeShape(shape);
+        assertNull("Removed shape should not be found", model.getShapeById("b"));
+
+        Shape serverShape = new Rectangle(0, 0, 100, 100, Color.BLACK, 1, Color.WHITE);
+        serverShape.setId("s");
+        model.addShapeFromServer(serverShape);
+        assertEquals("Server shape should be found", serverShape, model.getShapeById("s"));
+        model.clearServerShapes();
+        assertNull("Cleared server shape should not be found", model.getShapeById("s"));
+    }
+
     /**
      * Tests selecting a shape with an invalid ID.
      */
@@ -552,4 +605,681 @@ public class ModelTest {
     public void testGetShapesFromServer_Empty() {
         assertTrue("List of shapes from server should be empty initially", model.getShapesFromServer().isEmpty());
     }
+
+    /**
+     * Tests finding the topmost shape at a point.
+     */
+    @Test
+    public void testGetShapeAt() {
+        Shape bottom = new Rectangle(0, 0, 100, 100, Color.BLACK, 1, Color.WHITE);
+        Shape top = new Rectangle(50, 50, 100, 100, Color.BLACK, 1, Color.WHITE);
+        model.addShape(bottom);
+        model.addShape(top);
+        assertEquals("Topmost shape should be found where shapes overlap", top, model.getShapeAt(75, 75));
+        assertEquals("Bottom shape should be found where it is uncovered", bottom, model.getShapeAt(10, 10));
+        assertNull("No shape should be found in empty space", model.getShapeAt(300, 300));
+    }
+
+    /**
+     * Tests that the shape found at a point follows undo and redo.
+     */
+    @Test
+    public void testGetShapeAt_UndoRedo() {
+        Shape shape = new Rectangle(0, 0, 100, 100, Color.BLACK, 1, Color.WHITE);
+        model.addShape(shape);
+        model.undo();
+        assertNull("Undone shape should not be found", model.getShapeAt(50, 50));
+        model.redo();
+        assertEquals("Redone shape should be found", shape, model.getShapeAt(50, 50));
+    }
+
+    /**
+     * Tests that the shape found at a point follows moves and removal.
+     */
+    @Test
+    public void testGetShapeAt_MoveAndRemove() {
+        Shape shape = new Rectangle(0, 0, 100, 100, Color.BLACK, 1, Color.WHITE);
+        model.addShape(shape);
+        model.moveShape(shape, 200, 0);
+        assertNull("Shape should not be found at its old position", model.getShapeAt(50, 50));
+        assertEquals("Shape should be found at its new position", shape, model.getShapeAt(250, 50));
+        model.removeShape(shape);
+        assertNull("Removed shape should not be found", model.getShapeAt(250, 50));
+    }
+
+    /**
+     * Tests that moving a shape reports the region it covered before and after
+     * the move.
+     */
+    @Test
+    public void testMoveShapeReportsDirtyRegion() {
+        Shape shape = new Rectangle(0, 0, 100, 100, Color.BLACK, 1, Color.WHITE);
+        model.addShape(shape);
+        Rectangle2D before = shape.getBounds();
+        List<PropertyChangeEvent> events = new ArrayList<>();
+        model.addObserver(events::add);
+        events.clear();
+        model.moveShape(shape, 50, 0);
+        assertEquals("One event should be fired", 1, events.size());
+        assertEquals("Event should be a dirty region", "dirtyRegion", events.get(0).getPropertyName());
+        Rectangle2D dirtyRegion = (Rectangle2D) events.get(0).getNewValue();
+        assertTrue("Dirty region should cover the old bounds", dirtyRegion.contains(before));
+        assertTrue("Dirty region should cover the new bounds", dirtyRegion.contains(shape.getBounds()));
+    }
+
+    /**
+     * Tests that a change to a shape from the server reports its region.
+     */
+    @Test
+    public void testServerShapeChangeReportsDirtyRegion() {
+        Shape shape = new Rectangle(0, 0, 100, 100, Color.BLACK, 1, Color.WHITE);
+        model.addShapeFromServer(shape);
+        List<PropertyChangeEvent> events = new ArrayList<>();
+        model.addObserver(events::add);
+        events.clear();
+        model.changeShapeFillColor(shape, Color.RED);
+        assertEquals("Event should be a dirty region", "dirtyRegion", events.get(0).getPropertyName());
+    }
+
+    /**
+     * Tests that adding, undoing and removing a shape report the region it
+     * covers rather than a change to the whole drawing.
+     */
+    @Test
+    public void testAddAndRemoveReportDirtyRegion() {
+        Shape shape = new Rectangle(0, 0, 100, 100, Color.BLACK, 1, Color.WHITE);
+        List<PropertyChangeEvent> events = new ArrayList<>();
+        model.addObserver(events::add);
+        events.clear();
+        model.addShape(shape);
+        model.undo();
+        model.redo();
+        model.removeShape(shape);
+        assertEquals("Four events should be fired", 4, events.size());
+        for (PropertyChangeEvent event : events) {
+            assertEquals("Event should be a dirty region", "dirtyRegion", event.getPropertyName());
+            assertEquals("Event should carry the shape", shape, event.getOldValue());
+            assertEquals("Region should be the shape's bounds", shape.getBounds(), event.getNewValue());
+        }
+    }
+
+    /**
+     * Tests that moving several shapes at once fires a single event whose
+     * region covers every shape before and after the move.
+     */
+    @Test
+    public void testMoveShapesFiresOneEvent() {
+        Shape left = new Rectangle(0, 0, 100, 100, Color.BLACK, 1, Color.WHITE);
+        Shape right = new Rectangle(1000, 0, 100, 100, Color.BLACK, 1, Color.WHITE);
+        model.addShape(left);
+        model.addShape(right);
+        Rectangle2D before = left.getBounds().createUnion(right.getBounds());
+        List<PropertyChangeEvent> events = new ArrayList<>();
+        model.addObserver(events::add);
+        events.clear();
+        List<Shape> selection = new ArrayList<>();
+        selection.add(left);
+        selection.add(right);
+        model.moveShapes(selection, 0, 500);
+        assertEquals("One event should be fired", 1, events.size());
+        assertEquals("Event should be a dirty region", "dirtyRegion", events.get(0).getPropertyName());
+        assertEquals("Event should carry the moved shapes", selection, events.get(0).getOldValue());
+        Rectangle2D region = (Rectangle2D) events.get(0).getNewValue();
+        assertTrue("Region should cover the shapes before the move", region.contains(before));
+        assertTrue("Region should cover the shapes after the move",
+                region.contains(left.getBounds().createUnion(right.getBounds())));
+        assertEquals("Moved shape should be found at its new position", left, model.getShapeAt(50, 550));
+    }
+
+    /**
+     * Tests that the bulk operations change every shape given.
+     */
+    @Test
+    public void testBulkChanges() {
+        Shape first = new Rectangle(0, 0, 100, 100, Color.BLACK, 1, Color.WHITE);
+        Shape second = new Ellipses(200, 0, 100, 50, Color.BLACK, 1, Color.WHITE);
+        model.addShape(first);
+        model.addShape(second);
+        List<Shape> selection = new ArrayList<>();
+        selection.add(first);
+        selection.add(second);
+        model.rotateShapes(selection, 30);
+        model.changeShapesBorderWidth(selection, 4);
+        model.changeShapesFillColor(selection, Color.RED);
+        model.changeShapesBorderColor(selection, Color.BLUE);
+        for (Shape shape : selection) {
+            assertEquals("Shape should be rotated", 30, shape.getRotation());
+            assertEquals("Painted border width should change", 4, shape.getStroke().getLineWidth(), 0);
+            BufferedImage image = new BufferedImage(400, 200, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2d = image.createGraphics();
+            shape.snapshot().paint(g2d);
+            g2d.dispose();
+            Rectangle2D bounds = shape.getBounds();
+            assertEquals("Fill colour should change", Color.RED.getRGB(),
+                    image.getRGB((int) bounds.getCenterX(), (int) bounds.getCenterY()));
+            boolean blue = false;
+            for (int x = 0; x < image.getWidth() && !blue; x++) {
+                for (int y = 0; y < image.getHeight() && !blue; y++) {
+                    blue = image.getRGB(x, y) == Color.BLUE.getRGB();
+                }
+            }
+            assertTrue("Border colour should change", blue);
+        }
+        double width = first.getBounds().getWidth();
+        model.resizeShapes(selection, 2);
+        assertTrue("Shape should be resized", first.getBounds().getWidth() > width);
+    }
+
+    /**
+     * Tests that a marquee only selects shapes whose rotated outline it
+     * touches, not those whose bounds merely overlap it.
+     */
+    @Test
+    public void testGetShapesTouching() {
+        Shape diamond = new Rectangle(0, 0, 100, 100, Color.BLACK, 1, Color.WHITE);
+        diamond.rotate(45);
+        Shape other = new Rectangle(300, 300, 50, 50, Color.BLACK, 1, Color.WHITE);
+        model.addShape(diamond);
+        model.addShape(other);
+        List<Shape> corner = model.getShapesTouching(new Rectangle2D.Double(-15, -15, 10, 10));
+        assertTrue("Corner of the rotated bounds should select nothing", corner.isEmpty());
+        List<Shape> both = model.getShapesTouching(new Rectangle2D.Double(40, 40, 280, 280));
+        assertEquals("Marquee across both shapes should select both", 2, both.size());
+    }
+
+    /**
+     * Tests that model listeners receive a typed event for each change,
+     * naming the shape and the bounds it had before and after.
+     */
+    @Test
+    public void testModelListenerReceivesTypedEvents() {
+        Shape shape = new Rectangle(0, 0, 100, 100, Color.BLACK, 1, Color.WHITE);
+        List<ModelEvent> events = new ArrayList<>();
+        model.addModelListener(events::add);
+        model.addShape(shape);
+        Rectangle2D before = (Rectangle2D) shape.getBounds().clone();
+        model.moveShape(shape, 200, 0);
+        model.removeShape(shape);
+        model.clearShapes();
+        assertEquals("Four events should be received", 4, events.size());
+
+        assertTrue("First event should be an addition", events.get(0) instanceof ModelEvent.ShapeAdded);
+        assertEquals("Addition should name the shape", shape, ((ModelEvent.ShapeAdded) events.get(0)).getShape());
+        assertFalse("Shape should not come from the server", ((ModelEvent.ShapeAdded) events.get(0)).isFromServer());
+
+        assertTrue("Second event should be a change", events.get(1) instanceof ModelEvent.ShapeChanged);
+        ModelEvent.ShapeChanged changed = (ModelEvent.ShapeChanged) events.get(1);
+        assertEquals("Change should carry the old bounds", before, changed.getOldBounds());
+        assertEquals("Change should carry the new bounds", shape.getBounds(), changed.getNewBounds());
+
+        assertTrue("Third event should be a removal", events.get(2) instanceof ModelEvent.ShapeRemoved);
+        assertEquals("Removal should cover the shape", shape.getBounds(), events.get(2).getDirtyRegion());
+
+        assertTrue("Last event should be a clear", events.get(3) instanceof ModelEvent.Cleared);
+        assertNull("Clearing should affect the whole drawing", events.get(3).getDirtyRegion());
+    }
+
+    /**
+     * Tests that a bulk operation delivers one batch event holding a change
+     * for each shape, and that removed listeners hear nothing more.
+     */
+    @Test
+    public void testModelListenerReceivesBatch() {
+        Shape first = new Rectangle(0, 0, 100, 100, Color.BLACK, 1, Color.WHITE);
+        Shape second = new Rectangle(500, 0, 100, 100, Color.BLACK, 1, Color.WHITE);
+        model.addShape(first);
+        model.addShape(second);
+        List<ModelEvent> events = new ArrayList<>();
+        ModelListener listener = events::add;
+        model.addModelListener(listener);
+        List<Shape> selection = new ArrayList<>();
+        selection.add(first);
+        selection.add(second);
+        model.rotateShapes(selection, 45);
+        assertEquals("One event should be received", 1, events.size());
+        ModelEvent.BatchCommitted batch = (ModelEvent.BatchCommitted) events.get(0);
+        assertEquals("Batch should hold a change per shape", 2, batch.getEvents().size());
+        assertTrue("Batch region should cover both shapes",
+                batch.getDirtyRegion().contains(first.getBounds().createUnion(second.getBounds())));
+
+        model.removeModelListener(listener);
+        model.moveShape(first, 10, 10);
+        assertEquals("Removed listener should not be told about changes", 1, events.size());
+    }
+
+    /**
+     * Tests that a batch of additions sends one notification of each kind and
+     * is undone and redone as a single step.
+     */
+    @Test
+    public void testRunBatch() {
+        List<PropertyChangeEvent> propertyEvents = new ArrayList<>();
+        List<ModelEvent> modelEvents = new ArrayList<>();
+        model.addObserver(propertyEvents::add);
+        model.addModelListener(modelEvents::add);
+        propertyEvents.clear();
+        model.runBatch(() -> {
+            for (int i = 0; i < 3; i++) {
+                model.addShapeFromServer(new Rectangle(i * 100, 0, 50, 50, Color.BLACK, 1, Color.WHITE));
+            }
+        });
+        assertEquals("One property event should be fired", 1, propertyEvents.size());
+        assertEquals("Property event should be a dirty region", "dirtyRegion",
+                propertyEvents.get(0).getPropertyName());
+        assertTrue("Region should cover every added shape",
+                ((Rectangle2D) propertyEvents.get(0).getNewValue()).contains(new Rectangle2D.Double(0, 0, 250, 50)));
+        assertEquals("One model event should be received", 1, modelEvents.size());
+        assertEquals("Batch should hold every addition", 3,
+                ((ModelEvent.BatchCommitted) modelEvents.get(0)).getEvents().size());
+
+        model.undo();
+        assertTrue("Undo should remove the whole batch", model.getShapesFromServer().isEmpty());
+        assertTrue("Undone shapes should not be found",
+                model.getServerShapesIntersecting(new Rectangle2D.Double(0, 0, 300, 50)).isEmpty());
+        assertEquals("Undo should send one model event", 2, modelEvents.size());
+        model.redo();
+        assertEquals("Redo should restore the whole batch", 3, model.getShapesFromServer().size());
+        assertEquals("Redo should send one model event", 3, modelEvents.size());
+    }
+
+    /**
+     * Tests that only the outermost commit of nested batches notifies, and
+     * that committing without a batch is an error.
+     */
+    @Test
+    public void testNestedBatch() {
+        List<ModelEvent> events = new ArrayList<>();
+        model.addModelListener(events::add);
+        model.beginBatch();
+        model.addShape(new Rectangle(0, 0, 50, 50, Color.BLACK, 1, Color.WHITE));
+        model.runBatch(() -> model.addShape(new Rectangle(100, 0, 50, 50, Color.BLACK, 1, Color.WHITE)));
+        assertTrue("Inner commit should not notify", events.isEmpty());
+        model.commit();
+        assertEquals("Outer commit should notify once", 1, events.size());
+        model.undo();
+        assertTrue("Both shapes should be undone together", model.getShapes().isEmpty());
+        try {
+            model.commit();
+            fail("Committing without a batch should throw");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Tests that deleting every shape of a drawing of 100,000 shapes, in an
+     * order unrelated to the order they were drawn, takes well under the time
+     * a scan of the shape list for each removal would, keeps the remaining
+     * shapes in painting order and can be undone.
+     */
+    @Test
+    public void testRemoveShape_ManyShapesFast() {
+        final long budgetMillis = 2_000;
+        Random random = new Random(42);
+        List<Shape> drawn = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            Shape shape = new Rectangle(random.nextInt(20_000), random.nextInt(20_000), 10 + random.nextInt(60),
+                    10 + random.nextInt(60), Color.BLACK, 1, Color.WHITE);
+            drawn.add(shape);
+            model.addShape(shape);
+        }
+        List<Shape> deleted = new ArrayList<>(drawn);
+        Collections.shuffle(deleted, random);
+        List<Shape> kept = deleted.subList(deleted.size() - 3, deleted.size());
+        List<Shape> removed = deleted.subList(0, deleted.size() - 3);
+
+        long start = System.nanoTime();
+        model.runBatch(() -> {
+            for (Shape shape : removed) {
+                model.removeShape(shape);
+            }
+        });
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue("Deleting 100,000 shapes took " + elapsedMillis + "ms", elapsedMillis < budgetMillis);
+
+        List<Shape> expected = new ArrayList<>(drawn);
+        expected.retainAll(kept);
+        assertEquals("Remaining shapes should keep their painting order", expected,
+                new ArrayList<>(model.getShapes()));
+        model.undo();
+        assertEquals("Undo should restore every shape in order", drawn, new ArrayList<>(model.getShapes()));
+    }
+
+    /**
+     * Tests that the shape list returned by the model is a snapshot that later
+     * changes leave alone, and that another thread can read snapshots while
+     * the model is being changed.
+     */
+    @Test
+    public void testGetShapes_Snapshot() throws InterruptedException {
+        Shape first = new Rectangle(0, 0, 50, 50, Color.BLACK, 1, Color.WHITE);
+        Shape second = new Rectangle(10, 10, 50, 50, Color.BLACK, 1, Color.WHITE);
+        model.addShape(first);
+        List<Shape> before = model.getShapes();
+        model.addShape(second);
+        model.removeShape(first);
+        assertEquals("Snapshot should keep the shapes it was taken with", 1, before.size());
+        assertEquals("Snapshot should keep the removed shape", first, before.get(0));
+        assertEquals("New snapshot should follow the changes", second, model.getShapes().get(0));
+
+        List<String> problems = new ArrayList<>();
+        Thread reader = new Thread(() -> {
+            for (int i = 0; i < 2_000; i++) {
+                List<Shape> snapshot = model.getShapes();
+                int size = snapshot.size();
+                int counted = 0;
+                for (Shape shape : snapshot) {
+                    counted++;
+                }
+                if (counted != size) {
+                    problems.add("Snapshot of " + size + " shapes iterated " + counted);
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 2_000; i++) {
+            Shape shape = new Rectangle(i, i, 5, 5, Color.BLACK, 1, Color.WHITE);
+            model.addShape(shape);
+            if (i % 3 == 0) {
+                model.removeShape(shape);
+            }
+        }
+        reader.join();
+        assertTrue("Snapshots should be consistent: " + problems, problems.isEmpty());
+    }
+
+    /**
+     * Tests that the moves of a drag are undone and redone as one step, and
+     * that ending the step keeps the next drag apart.
+     */
+    @Test
+    public void testUndoMove_MergesDrag() {
+        Shape shape = new Rectangle(10, 10, 50, 50, Color.BLACK, 1, Color.WHITE);
+        model.addShape(shape);
+        for (int i = 0; i < 5; i++) {
+            model.moveShape(shape, 1, 2);
+        }
+        assertEquals("Drag should be recorded as one step", 2, model.getUndoCount());
+        model.undo();
+        assertEquals("Undo should move the shape back in x", 10.0, shape.getX(), 0.0);
+        assertEquals("Undo should move the shape back in y", 10.0, shape.getY(), 0.0);
+        assertEquals("Undoing the drag should keep the shape", 1, model.getShapes().size());
+        model.redo();
+        assertEquals("Redo should repeat the whole drag", 15.0, shape.getX(), 0.0);
+        model.endUndoStep();
+        model.moveShape(shape, 3, 0);
+        assertEquals("Next drag should be a step of its own", 3, model.getUndoCount());
+        model.undo();
+        assertEquals("Undo should only reverse the last drag", 15.0, shape.getX(), 0.0);
+    }
+
+    /**
+     * Tests that resizing is undone exactly, although scaled sizes are rounded.
+     */
+    @Test
+    public void testUndoResize_Exact() {
+        Rectangle rectangle = new Rectangle(0, 0, 7, 7, Color.BLACK, 1, Color.WHITE);
+        Shape triangle = new Triangle(0, 0, 10, 0, 5, 9, Color.BLACK, 1, null);
+        model.addShape(rectangle);
+        model.addShape(triangle);
+        double[] triangleBefore = triangle.getGeometry();
+        model.resizeShape(rectangle, 0.5);
+        model.resizeShapes(new ArrayList<>(model.getShapes()), 0.3);
+        model.undo();
+        model.undo();
+        assertEquals("Width should be restored exactly", 7, rectangle.getWidth());
+        assertEquals("Height should be restored exactly", 7, rectangle.getHeight());
+        for (int i = 0; i < triangleBefore.length; i++) {
+            assertEquals("Triangle vertex should be restored", triangleBefore[i], triangle.getGeometry()[i], 0.0);
+        }
+        model.redo();
+        assertEquals("Redo should resize again", 3, rectangle.getWidth());
+    }
+
+    /**
+     * Tests that rotation, color and border width changes are undone and
+     * redone.
+     */
+    @Test
+    public void testUndoRotateAndStyle() {
+        Shape first = new Rectangle(0, 0, 50, 50, Color.BLACK, 2, Color.WHITE);
+        Shape second = new Ellipses(100, 0, 50, 50, Color.BLUE, 3, Color.GREEN);
+        model.addShape(first);
+        model.addShape(second);
+        List<Shape> both = new ArrayList<>(model.getShapes());
+        model.rotateShape(first, 30);
+        model.changeShapesFillColor(both, Color.RED);
+        model.changeShapeBorderColor(second, Color.ORANGE);
+        model.changeShapesBorderWidth(both, 6);
+
+        model.undo();
+        assertEquals("First border width should be restored", 2f, first.getStroke().getLineWidth(), 0f);
+        assertEquals("Second border width should be restored", 3f, second.getStroke().getLineWidth(), 0f);
+        model.undo();
+        assertEquals("Border color should be restored", Color.BLUE, second.snapshot().getBorderColor());
+        model.undo();
+        assertEquals("First fill should be restored", Color.WHITE, first.snapshot().getFillColor());
+        assertEquals("Second fill should be restored", Color.GREEN, second.snapshot().getFillColor());
+        model.undo();
+        assertEquals("Rotation should be restored", 0, first.getRotation());
+
+        model.redo();
+        model.redo();
+        assertEquals("Rotation should be redone", 30, first.getRotation());
+        assertEquals("Fill should be redone", Color.RED, second.snapshot().getFillColor());
+    }
+
+    /**
+     * Tests that undoing a removal puts the shape back where it was in the
+     * painting order.
+     */
+    @Test
+    public void testUndoRemove_RestoresOrder() {
+        Shape first = new Rectangle(0, 0, 50, 50, Color.BLACK, 1, Color.WHITE);
+        Shape second = new Rectangle(10, 10, 50, 50, Color.BLACK, 1, Color.WHITE);
+        Shape third = new Rectangle(20, 20, 50, 50, Color.BLACK, 1, Color.WHITE);
+        model.addShape(first);
+        model.addShape(second);
+        model.addShape(third);
+        model.removeShape(second);
+        model.undo();
+        assertEquals("Shape should be back between the others", second, model.getShapes().get(1));
+        assertEquals("Shape should be above the shape below it again", second, model.getShapeAt(15, 15));
+        model.redo();
+        assertFalse("Redo should remove the shape again", model.getShapes().contains(second));
+    }
+
+    /**
+     * Tests that clearing the drawing can be undone, putting back every shape
+     * in its place in the painting order and in the indexes, and redone.
+     */
+    @Test
+    public void testUndoClear() {
+        Shape first = new Rectangle(0, 0, 50, 50, Color.BLACK, 1, Color.WHITE);
+        Shape second = new Rectangle(10, 10, 50, 50, Color.BLACK, 1, Color.WHITE);
+        Shape server = new Rectangle(200, 200, 50, 50, Color.BLACK, 1, Color.WHITE);
+        model.addShape(first);
+        model.addShape(second);
+        model.addShapeFromServer(server);
+        model.setShapeId(server, "s");
+        model.clearShapes();
+        assertTrue("Clear should remove the shapes", model.getShapes().isEmpty());
+
+        model.undo();
+        assertEquals("Shapes should be back in order", first, model.getShapes().get(0));
+        assertEquals("Shapes should be back in order", second, model.getShapes().get(1));
+        assertEquals("Top shape should be found again", second, model.getShapeAt(15, 15));
+        assertEquals("Server shape should be back", server, model.getShapesFromServer().get(0));
+        assertEquals("Server shape should be found by ID again", server, model.getShapeById("s"));
+
+        model.redo();
+        assertTrue("Redo should clear the shapes again", model.getShapes().isEmpty());
+        assertTrue("Redo should clear the server shapes again", model.getShapesFromServer().isEmpty());
+        assertNull("Cleared shape should not be found", model.getShapeAt(15, 15));
+
+        model.undo();
+        model.clearServerShapes();
+        model.undo();
+        assertEquals("Undoing a server clear should restore the server shape", server, model.getShapeById("s"));
+        assertEquals("Local shapes should be kept", 2, model.getShapes().size());
+        model.undo();
+        assertEquals("Earlier steps should still be undoable", 2, model.getShapes().size());
+        assertTrue("Undoing the server shape's addition should remove it", model.getShapesFromServer().isEmpty());
+    }
+
+    /**
+     * Tests that edits which change nothing are not recorded as undo steps,
+     * and that a bulk edit which changes no shape sends no batch event.
+     */
+    @Test
+    public void testNoOpEdits_NotRecorded() {
+        Shape first = new Rectangle(0, 0, 50, 50, Color.BLACK, 2, Color.WHITE);
+        Shape second = new Rectangle(100, 0, 50, 50, Color.BLUE, 3, Color.WHITE);
+        model.addShape(first);
+        model.addShape(second);
+        List<Shape> both = new ArrayList<>(model.getShapes());
+        int steps = model.getUndoCount();
+        List<ModelEvent> events = new ArrayList<>();
+        model.addModelListener(events::add);
+
+        model.changeShapeBorderColor(first, Color.BLACK);
+        model.changeShapeFillColor(first, Color.WHITE);
+        model.changeShapeBorderWidth(first, 2);
+        model.rotateShape(first, 360);
+        model.resizeShape(first, 1);
+        model.moveShape(first, 0, 0);
+        model.changeShapesFillColor(both, Color.WHITE);
+        model.rotateShapes(both, 0);
+        model.resizeShapes(both, 1);
+        model.moveShapes(both, 0, 0);
+        assertEquals("Edits that change nothing should not be recorded", steps, model.getUndoCount());
+        assertTrue("Edits that change nothing should send no events", events.isEmpty());
+
+        model.changeShapesBorderColor(both, Color.BLUE);
+        assertEquals("A bulk edit should be recorded as one step", steps + 1, model.getUndoCount());
+        assertEquals("Only the shape that changed should be in the batch", 1,
+                ((ModelEvent.BatchCommitted) events.get(0)).getEvents().size());
+        model.changeShapesBorderWidth(both, 3);
+        model.undo();
+        assertEquals("Undo should restore the changed width", 2f, first.getStroke().getLineWidth(), 0f);
+        assertEquals("Unchanged shape should keep its width", 3f, second.getStroke().getLineWidth(), 0f);
+    }
+
+    /**
+     * Tests that the extent of the shapes shrinks again when a shape at its
+     * edge is removed, and that server shapes have an extent of their own.
+     */
+    @Test
+    public void testGetShapesBounds_Shrinks() {
+        assertNull("An empty drawing should have no extent", model.getShapesBounds());
+        Shape near = new Rectangle(0, 0, 50, 50, Color.BLACK, 1, Color.WHITE);
+        Shape far = new Rectangle(1000, 800, 50, 50, Color.BLACK, 1, Color.WHITE);
+        model.addShape(near);
+        model.addShape(far);
+        Rectangle2D both = model.getShapesBounds();
+        assertTrue("Extent should cover both shapes",
+                both.contains(near.getBounds()) && both.contains(far.getBounds()));
+        model.removeShape(far);
+        assertEquals("Extent should shrink to the remaining shape", near.getBounds(), model.getShapesBounds());
+        model.addShapeFromServer(far);
+        assertEquals("Server shapes should not widen the local extent", near.getBounds(), model.getShapesBounds());
+        assertEquals("Server extent should cover the server shape", far.getBounds(), model.getServerShapesBounds());
+    }
+
+    /**
+     * Tests that the undo history keeps only the newest steps up to its limit.
+     */
+    @Test
+    public void testUndoLimit() {
+        assertEquals("Default limit should apply", Model.DEFAULT_UNDO_LIMIT, model.getUndoLimit());
+        model.setUndoLimit(3);
+        for (int i = 0; i < 5; i++) {
+            model.addShape(new Rectangle(i * 10, 0, 5, 5, Color.BLACK, 1, Color.WHITE));
+        }
+        assertEquals("Only the newest steps should be kept", 3, model.getUndoCount());
+        for (int i = 0; i < 5; i++) {
+            model.undo();
+        }
+        assertEquals("Forgotten steps should not be undone", 2, model.getShapes().size());
+        assertEquals("Undone steps should be redoable", 3, model.getRedoCount());
+
+        Shape shape = model.getShapes().get(0);
+        for (int i = 0; i < 10000; i++) {
+            model.rotateShape(shape, 1);
+        }
+        assertEquals("Long sessions should stay within the limit", 3, model.getUndoCount());
+        assertEquals("New edits should discard the redo steps", 0, model.getRedoCount());
+        model.setUndoLimit(1);
+        assertEquals("Lowering the limit should forget old steps", 1, model.getUndoCount());
+    }
+
+    /**
+     * Tests finding server shapes that intersect an area.
+     */
+    @Test
+    public void testGetServerShapesIntersecting() {
+        Shape inside = new Rectangle(0, 0, 100, 100, Color.BLACK, 1, Color.WHITE);
+        Shape outside = new Rectangle(5000, 5000, 100, 100, Color.BLACK, 1, Color.WHITE);
+        model.addShapeFromServer(inside);
+        model.addShapeFromServer(outside);
+        List<Shape> found = model.getServerShapesIntersecting(new Rectangle2D.Double(0, 0, 800, 600));
+        assertEquals("Only the shape inside the area should be found", 1, found.size());
+        assertEquals("Only the shape inside the area should be found", inside, found.get(0));
+        model.clearServerShapes();
+        assertTrue("No server shapes should be found after clearing",
+                model.getServerShapesIntersecting(new Rectangle2D.Double(0, 0, 800, 600)).isEmpty());
+    }
+
+    /**
+     * Tests that a shape under an opaque filled shape is reported as hidden,
+     * and stops being hidden when the shape above it changes.
+     */
+    @Test
+    public void testIsOccluded() {
+        Shape below = new Rectangle(40, 40, 20, 20, Color.BLACK, 1, Color.WHITE);
+        Shape above = new Rectangle(0, 0, 100, 100, Color.BLACK, 1, Color.RED);
+        model.addShape(below);
+        model.addShape(above);
+        assertTrue("Shape under an opaque shape should be hidden", model.isOccluded(below, false, null));
+        assertFalse("Topmost shape should not be hidden", model.isOccluded(above, false, null));
+        assertFalse("Ignored shape should hide nothing", model.isOccluded(below, false, above));
+
+        model.changeShapeFillColor(above, new Color(255, 0, 0, 128));
+        assertFalse("Translucent fill should hide nothing", model.isOccluded(below, false, null));
+        model.changeShapeFillColor(above, Color.RED);
+        model.moveShape(above, 200, 0);
+        assertFalse("Moved shape should no longer hide the shape", model.isOccluded(below, false, null));
+    }
+
+    /**
+     * Tests that occlusion follows the rotated outline of the shape above.
+     */
+    @Test
+    public void testIsOccluded_Rotated() {
+        Shape corner = new Rectangle(2, 2, 10, 10, Color.BLACK, 1, Color.WHITE);
+        Shape centre = new Rectangle(45, 45, 10, 10, Color.BLACK, 1, Color.WHITE);
+        Shape above = new Rectangle(0, 0, 100, 100, Color.BLACK, 1, Color.RED);
+        model.addShape(corner);
+        model.addShape(centre);
+        model.addShape(above);
+        model.rotateShape(above, 45);
+        assertTrue("Centre should stay hidden by the rotated shape", model.isOccluded(centre, false, null));
+        assertFalse("Corner should be exposed by the rotation", model.isOccluded(corner, false, null));
+    }
+
+    /**
+     * Tests that server shapes, which are painted last, hide local shapes only
+     * when they are being painted.
+     */
+    @Test
+    public void testIsOccluded_ServerShapes() {
+        Shape local = new Rectangle(40, 40, 20, 20, Color.BLACK, 1, Color.WHITE);
+        Shape server = new Rectangle(0, 0, 100, 100, Color.BLACK, 1, Color.RED);
+        model.addShapeFromServer(server);
+        model.addShape(local);
+        assertTrue("Server shape should hide the local shape", model.isOccluded(local, true, null));
+        assertFalse("Server shapes that are not painted should hide nothing",
+                model.isOccluded(local, false, null));
+        assertFalse("Local shape should not hide the server shape", model.isOccluded(server, true, null));
+    }
 }
@@ -0,0 +1,273 @@
+package Model;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import Shapes.Shape;
+
+/**
+ * An immutable list of the shapes of a drawing in the order they are painted,
+ * kept by z-order. Adding or removing a shape makes a new version of the list
+ * in O(log n) time, which shares all but a few of its nodes with the version
+ * it was made from, so a version can be kept as a snapshot for free and read
+ * from any thread without locking. The list holds the shapes themselves, not
+ * copies, so only which shapes are in it, and their order, is fixed.
+ * <p>
+ * The shapes are held in a treap: a binary search tree by z-order, balanced
+ * by a priority derived from each z-order, in which a change copies only the
+ * path from the root to the node it affects.
+ */
+final class OrderedShapeList extends AbstractList<Shape> {
+
+    /**
+     * The list with no shapes.
+     */
+    static final OrderedShapeList EMPTY = new OrderedShapeList(null);
+
+    private final Node root;
+
+    /**
+     * Constructs a version of the list.
+     *
+     * @param root The root of the tree holding the shapes, or null if empty.
+     */
+    private OrderedShapeList(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Returns a version of the list with a shape added at a given z-order,
+     * replacing any shape that already has it.
+     *
+     * @param shape The shape to add.
+     * @param order The z-order of the shape; higher values are painted later.
+     * @return The new version of the list.
+     */
+    OrderedShapeList with(Shape shape, long order) {
+        return new OrderedShapeList(insert(root, shape, order, priorityOf(order)));
+    }
+
+    /**
+     * Returns a version of the list without the shape at a given z-order.
+     *
+     * @param order The z-order of the shape to remove.
+     * @return The new version of the list, or this list if no shape has the
+     *         z-order.
+     */
+    OrderedShapeList without(long order) {
+        Node removed = delete(root, order);
+        return removed == root ? this : new OrderedShapeList(removed);
+    }
+
+    /**
+     * Returns the number of shapes in the list.
+     *
+     * @return The number of shapes.
+     */
+    @Override
+    public int size() {
+        return sizeOf(root);
+    }
+
+    /**
+     * Returns the shape at a position in the painting order, in O(log n) time.
+     *
+     * @param index The position, from zero for the shape painted first.
+     * @return The shape at the position.
+     * @throws IndexOutOfBoundsException If there is no such position.
+     */
+    @Override
+    public Shape get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        Node node = root;
+        while (true) {
+            int leftSize = sizeOf(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node.shape;
+            }
+        }
+    }
+
+    /**
+     * Returns an iterator over the shapes in the order they are painted.
+     *
+     * @return The iterator.
+     */
+    @Override
+    public Iterator<Shape> iterator() {
+        return new Iterator<Shape>() {
+            private final Deque<Node> path = new ArrayDeque<>();
+
+            {
+                descendLeft(root);
+            }
+
+            /**
+             * Pushes a node and its chain of left children onto the path.
+             *
+             * @param node The node to start from, or null.
+             */
+            private void descendLeft(Node node) {
+                for (; node != null; node = node.left) {
+                    path.push(node);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            public Shape next() {
+                if (path.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node node = path.pop();
+                descendLeft(node.right);
+                return node.shape;
+            }
+        };
+    }
+
+    /**
+     * Derives the priority of a z-order by mixing its bits, so that priorities
+     * look random and keep the tree balanced whatever order shapes are added
+     * in, while the same z-order always gets the same priority.
+     *
+     * @param order The z-order.
+     * @return The priority.
+     */
+    private static long priorityOf(long order) {
+        long z = order + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns the number of shapes in a subtree.
+     *
+     * @param node The root of the subtree, or null.
+     * @return The number of shapes.
+     */
+    private static int sizeOf(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * Adds a shape to a subtree, copying the nodes on the way to it.
+     *
+     * @param node     The root of the subtree, or null.
+     * @param shape    The shape to add.
+     * @param order    The z-order of the shape.
+     * @param priority The priority of the z-order.
+     * @return The root of the new subtree.
+     */
+    private static Node insert(Node node, Shape shape, long order, long priority) {
+        if (node == null) {
+            return new Node(shape, order, priority, null, null);
+        }
+        if (order < node.order) {
+            Node left = insert(node.left, shape, order, priority);
+            if (left.priority > node.priority) {
+                return new Node(left.shape, left.order, left.priority, left.left,
+                        new Node(node.shape, node.order, node.priority, left.right, node.right));
+            }
+            return new Node(node.shape, node.order, node.priority, left, node.right);
+        }
+        if (order > node.order) {
+            Node right = insert(node.right, shape, order, priority);
+            if (right.priority > node.priority) {
+                return new Node(right.shape, right.order, right.priority,
+                        new Node(node.shape, node.order, node.priority, node.left, right.left), right.right);
+            }
+            return new Node(node.shape, node.order, node.priority, node.left, right);
+        }
+        return new Node(shape, order, priority, node.left, node.right);
+    }
+
+    /**
+     * Removes the shape with a z-order from a subtree, copying the nodes on
+     * the way to it.
+     *
+     * @param node  The root of the subtree, or null.
+     * @param order The z-order of the shape to remove.
+     * @return The root of the new subtree, which is the same node if no shape
+     *         has the z-order.
+     */
+    private static Node delete(Node node, long order) {
+        if (node == null) {
+            return null;
+        }
+        if (order < node.order) {
+            Node left = delete(node.left, order);
+            return left == node.left ? node : new Node(node.shape, node.order, node.priority, left, node.right);
+        }
+        if (order > node.order) {
+            Node right = delete(node.right, order);
+            return right == node.right ? node : new Node(node.shape, node.order, node.priority, node.left, right);
+        }
+        return merge(node.left, node.right);
+    }
+
+    /**
+     * Joins two subtrees, every z-order in the first being below every
+     * z-order in the second.
+     *
+     * @param lower The subtree with the lower z-orders, or null.
+     * @param upper The subtree with the higher z-orders, or null.
+     * @return The root of the joined subtree.
+     */
+    private static Node merge(Node lower, Node upper) {
+        if (lower == null) {
+            return upper;
+        }
+        if (upper == null) {
+            return lower;
+        }
+        if (lower.priority > upper.priority) {
+            return new Node(lower.shape, lower.order, lower.priority, lower.left, merge(lower.right, upper));
+        }
+        return new Node(upper.shape, upper.order, upper.priority, merge(lower, upper.left), upper.right);
+    }
+
+    /**
+     * A node of the tree, which is never changed once made.
+     */
+    private static final class Node {
+        private final Shape shape;
+        private final long order;
+        private final long priority;
+        private final Node left;
+        private final Node right;
+        private final int size;
+
+        /**
+         * Constructs a Node.
+         *
+         * @param shape    The shape held by the node.
+         * @param order    The z-order of the shape.
+         * @param priority The priority of the z-order.
+         * @param left     The subtree of lower z-orders, or null.
+         * @param right    The subtree of higher z-orders, or null.
+         */
+        private Node(Shape shape, long order, long priority, Node left, Node right) {
+            this.shape = shape;
+            this.order = order;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + sizeOf(left) + sizeOf(right);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package Model;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import Shapes.Shape;
+import Shapes.Rectangle;
+
+/**
+ * This class contains unit tests for the OrderedShapeList class.
+ * It tests that versions keep shapes in z-order, that older versions are left
+ * as they were, and that the list cannot be changed in place.
+ */
+public class OrderedShapeListTest {
+
+    /**
+     * Creates a shape for a test.
+     *
+     * @param i A number to place the shape by.
+     * @return The shape.
+     */
+    private static Shape shape(int i) {
+        return new Rectangle(i, i, 10, 10, Color.BLACK, 1, Color.WHITE);
+    }
+
+    /**
+     * Tests that shapes added in any order are read back in z-order, both in
+     * turn and by position.
+     */
+    @Test
+    public void testWith_KeepsZOrder() {
+        List<Shape> expected = new ArrayList<>();
+        List<Integer> orders = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            expected.add(shape(i));
+            orders.add(i);
+        }
+        Collections.shuffle(orders, new Random(42));
+        OrderedShapeList list = OrderedShapeList.EMPTY;
+        for (int order : orders) {
+            list = list.with(expected.get(order), order);
+        }
+        assertEquals("Size should count every shape", 1000, list.size());
+        assertEquals("Shapes should be in z-order", expected, new ArrayList<>(list));
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame("Shape at each position should be found", expected.get(i), list.get(i));
+        }
+    }
+
+    /**
+     * Tests that making new versions leaves earlier versions unchanged.
+     */
+    @Test
+    public void testVersions_AreIndependent() {
+        Shape first = shape(0);
+        Shape second = shape(1);
+        Shape third = shape(2);
+        OrderedShapeList one = OrderedShapeList.EMPTY.with(first, 0).with(third, 2);
+        OrderedShapeList two = one.with(second, 1);
+        OrderedShapeList three = two.without(0);
+        assertEquals("Older version should keep its shapes", 2, one.size());
+        assertSame("Older version should be unchanged", third, one.get(1));
+        assertEquals("Inserted shape should be in the middle", second, two.get(1));
+        assertEquals("Removal should only affect the new version", 3, two.size());
+        assertSame("Removal should drop the lowest shape", second, three.get(0));
+        assertTrue("Empty list should stay empty", OrderedShapeList.EMPTY.isEmpty());
+    }
+
+    /**
+     * Tests that removing a z-order no shape has returns the same list, and
+     * that a shape added at a z-order in use replaces the shape there.
+     */
+    @Test
+    public void testWithout_Missing() {
+        OrderedShapeList list = OrderedShapeList.EMPTY.with(shape(0), 5);
+        assertSame("Removing a missing z-order should change nothing", list, list.without(7));
+        Shape replacement = shape(1);
+        OrderedShapeList replaced = list.with(replacement, 5);
+        assertEquals("Replacing should keep the size", 1, replaced.size());
+        assertSame("Replacing should hold the new shape", replacement, replaced.get(0));
+    }
+
+    /**
+     * Tests that the list cannot be changed through the List methods.
+     */
+    @Test
+    public void testImmutable() {
+        OrderedShapeList list = OrderedShapeList.EMPTY.with(shape(0), 0);
+        try {
+            list.add(shape(1));
+            fail("Adding through the List methods should throw");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            list.iterator().remove();
+            fail("Removing through the iterator should throw");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertEquals("List should be unchanged", 1, list.size());
+    }
+
+    /**
+     * Tests that shapes added in rising z-order, as they are drawn, still give
+     * a shallow enough tree to handle a large drawing.
+     */
+    @Test
+    public void testWith_LargeDrawing() {
+        OrderedShapeList list = OrderedShapeList.EMPTY;
+        Shape shape = shape(0);
+        for (int i = 0; i < 200_000; i++) {
+            list = list.with(shape, i);
+        }
+        for (int i = 0; i < 200_000; i += 2) {
+            list = list.without(i);
+        }
+        assertEquals("Half the shapes should remain", 100_000, list.size());
+        int count = 0;
+        for (Shape remaining : list) {
+            assertSame("Each remaining shape should be read", shape, remaining);
+            count++;
+        }
+        assertEquals("Iteration should visit every shape", 100_000, count);
+    }
+}
@@ -0,0 +1,537 @@
+package Model;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import Shapes.Shape;
+
+/**
+ * A quadtree over the bounds of the shapes in a drawing, used to answer hit
+ * tests and area queries without visiting every shape.
+ * Each shape is stored with its z-order so that queries can return shapes in
+ * the order they are painted.
+ */
+class QuadTree {
+
+    private static final int NODE_CAPACITY = 8;
+    private static final int MAX_DEPTH = 12;
+    private static final double INITIAL_SIZE = 1024;
+    private static final int MAX_GROWTH = 32;
+
+    private Node root;
+    private final Map<Shape, Entry> entries;
+
+    /**
+     * Constructs an empty QuadTree.
+     */
+    QuadTree() {
+        entries = new IdentityHashMap<>();
+        root = new Node(0, 0, INITIAL_SIZE, 0);
+    }
+
+    /**
+     * Adds a shape to the tree.
+     *
+     * @param shape The shape to add.
+     * @param order The z-order of the shape; higher values are painted later.
+     */
+    void insert(Shape shape, long order) {
+        remove(shape);
+        Entry entry = new Entry(shape, shape.getBounds(), order);
+        entries.put(shape, entry);
+        place(entry);
+    }
+
+    /**
+     * Removes a shape from the tree. Shapes not in the tree are ignored.
+     *
+     * @param shape The shape to remove.
+     */
+    void remove(Shape shape) {
+        Entry entry = entries.remove(shape);
+        if (entry != null) {
+            Node node = entry.node;
+            node.detach(entry);
+            prune(node);
+        }
+    }
+
+    /**
+     * Re-reads the bounds of a shape after it has been moved, resized or
+     * rotated. Shapes not in the tree are ignored.
+     *
+     * @param shape The shape that has changed.
+     * @return The area covered by the shape before and after the change, or
+     *         null if the shape is not in the tree.
+     */
+    Rectangle2D update(Shape shape) {
+        Entry entry = entries.get(shape);
+        if (entry == null) {
+            return null;
+        }
+        Node node = entry.node;
+        node.detach(entry);
+        prune(node);
+        Rectangle2D oldBounds = entry.bounds;
+        entry.bounds = shape.getBounds();
+        place(entry);
+        return oldBounds.createUnion(entry.bounds);
+    }
+
+    /**
+     * Removes every shape from the tree.
+     */
+    void clear() {
+        entries.clear();
+        root = new Node(0, 0, INITIAL_SIZE, 0);
+    }
+
+    /**
+     * Returns whether a shape is in the tree.
+     *
+     * @param shape The shape to look for.
+     * @return true if the shape is in the tree, false otherwise.
+     */
+    boolean contains(Shape shape) {
+        return entries.containsKey(shape);
+    }
+
+    /**
+     * Returns the bounds a shape was last stored or updated with.
+     *
+     * @param shape The shape to look up.
+     * @return The stored bounds, or null if the shape is not in the tree.
+     */
+    Rectangle2D boundsOf(Shape shape) {
+        Entry entry = entries.get(shape);
+        return entry == null ? null : entry.bounds;
+    }
+
+    /**
+     * Returns the smallest rectangle covering the stored bounds of every
+     * shape in the tree, in time proportional to the number of shapes.
+     *
+     * @return A new rectangle, or null if the tree is empty.
+     */
+    Rectangle2D bounds() {
+        Rectangle2D union = null;
+        for (Entry entry : entries.values()) {
+            if (union == null) {
+                union = (Rectangle2D) entry.bounds.clone();
+            } else {
+                union.add(entry.bounds);
+            }
+        }
+        return union;
+    }
+
+    /**
+     * Returns the z-order a shape was stored with.
+     *
+     * @param shape The shape to look up.
+     * @return The z-order of the shape.
+     * @throws IllegalArgumentException If the shape is not in the tree.
+     */
+    long orderOf(Shape shape) {
+        Entry entry = entries.get(shape);
+        if (entry == null) {
+            throw new IllegalArgumentException("Shape is not in the tree");
+        }
+        return entry.order;
+    }
+
+    /**
+     * Returns the number of shapes in the tree.
+     *
+     * @return The number of shapes.
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of nodes in the tree, including the root.
+     *
+     * @return The number of nodes.
+     */
+    int nodeCount() {
+        return countNodes(root);
+    }
+
+    /**
+     * Counts a node and the nodes below it.
+     *
+     * @param node The node to count from.
+     * @return The number of nodes.
+     */
+    private static int countNodes(Node node) {
+        int count = 1;
+        if (node.children != null) {
+            for (Node child : node.children) {
+                count += countNodes(child);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Finds the topmost shape, by z-order, that contains a given point.
+     *
+     * @param x The x-coordinate of the point.
+     * @param y The y-coordinate of the point.
+     * @return The topmost shape containing the point, or null if there is none.
+     */
+    Shape findTopmostAt(double x, double y) {
+        Entry best = null;
+        Node node = root;
+        while (node != null) {
+            for (Entry entry : node.entries) {
+                if ((best == null || entry.order > best.order) && entry.bounds.contains(x, y)
+                        && entry.shape.contains(x, y)) {
+                    best = entry;
+                }
+            }
+            node = node.childContaining(x, y);
+        }
+        return best == null ? null : best.shape;
+    }
+
+    /**
+     * Returns the number of shapes a hit test at a given point checks, which
+     * are the shapes stored in the nodes on the path down to the point.
+     *
+     * @param x The x-coordinate of the point.
+     * @param y The y-coordinate of the point.
+     * @return The number of shapes checked.
+     */
+    int candidatesAt(double x, double y) {
+        int count = 0;
+        for (Node node = root; node != null; node = node.childContaining(x, y)) {
+            count += node.entries.size();
+        }
+        return count;
+    }
+
+    /**
+     * Finds a shape above a given z-order whose painted outline, with rotation
+     * applied, covers the whole of an area.
+     *
+     * @param area    The area that must be covered.
+     * @param above   Only shapes with a higher z-order than this are considered.
+     * @param ignored A shape that is not considered, or null.
+     * @return A shape covering the area, or null if there is none.
+     */
+    Shape findCovering(Rectangle2D area, long above, Shape ignored) {
+        Node node = root;
+        while (node != null) {
+            for (Entry entry : node.entries) {
+                if (entry.order > above && entry.shape != ignored && entry.bounds.contains(area)
+                        && entry.shape.getPath().contains(area)) {
+                    return entry.shape;
+                }
+            }
+            node = node.childEnclosing(area);
+        }
+        return null;
+    }
+
+    /**
+     * Finds every shape whose bounds intersect a given area.
+     *
+     * @param area The area to search.
+     * @return The shapes intersecting the area, in z-order.
+     */
+    List<Shape> query(Rectangle2D area) {
+        List<Entry> found = new ArrayList<>();
+        collect(root, area, found);
+        found.sort(Comparator.comparingLong(entry -> entry.order));
+        List<Shape> result = new ArrayList<>(found.size());
+        for (Entry entry : found) {
+            result.add(entry.shape);
+        }
+        return result;
+    }
+
+    /**
+     * Adds the entries of a node and its children that intersect an area.
+     *
+     * @param node  The node to search.
+     * @param area  The area to search.
+     * @param found The list the matching entries are added to.
+     */
+    private void collect(Node node, Rectangle2D area, List<Entry> found) {
+        for (Entry entry : node.entries) {
+            if (entry.bounds.intersects(area)) {
+                found.add(entry);
+            }
+        }
+        if (node.children != null) {
+            for (Node child : node.children) {
+                if (child.intersects(area)) {
+                    collect(child, area, found);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores an entry in the deepest node that fully contains its bounds,
+     * growing the root first if the bounds lie outside it.
+     *
+     * @param entry The entry to store.
+     */
+    private void place(Entry entry) {
+        int growth = 0;
+        while (!root.encloses(entry.bounds) && growth++ < MAX_GROWTH) {
+            grow(entry.bounds);
+        }
+        Node node = root;
+        while (true) {
+            Node child = node.childEnclosing(entry.bounds);
+            if (child == null) {
+                break;
+            }
+            node = child;
+        }
+        node.attach(entry);
+        if (node.children == null && node.entries.size() > NODE_CAPACITY && node.depth < MAX_DEPTH) {
+            split(node);
+        }
+    }
+
+    /**
+     * Doubles the size of the root towards an area outside of it, keeping the
+     * old root as one of the new root's children.
+     *
+     * @param towards The area the root should grow towards.
+     */
+    private void grow(Rectangle2D towards) {
+        Node old = root;
+        boolean left = towards.getMinX() < old.x;
+        boolean up = towards.getMinY() < old.y;
+        double newX = left ? old.x - old.size : old.x;
+        double newY = up ? old.y - old.size : old.y;
+        Node grown = new Node(newX, newY, old.size * 2, 0);
+        grown.children = new Node[4];
+        for (int i = 0; i < 4; i++) {
+            double childX = newX + (i % 2) * old.size;
+            double childY = newY + (i / 2) * old.size;
+            if (childX == old.x && childY == old.y) {
+                grown.children[i] = old;
+            } else {
+                grown.children[i] = new Node(childX, childY, old.size, 1);
+            }
+            grown.children[i].parent = grown;
+        }
+        root = grown;
+        deepen(old, 1);
+    }
+
+    /**
+     * Updates the depth of a subtree after it has been moved under a new root.
+     *
+     * @param node  The root of the subtree.
+     * @param depth The new depth of the node.
+     */
+    private void deepen(Node node, int depth) {
+        node.depth = depth;
+        if (node.children != null) {
+            for (Node child : node.children) {
+                deepen(child, depth + 1);
+            }
+        }
+    }
+
+    /**
+     * Splits a full node into four children and pushes down the entries that
+     * fit entirely inside one of them.
+     *
+     * @param node The node to split.
+     */
+    private void split(Node node) {
+        double half = node.size / 2;
+        node.children = new Node[4];
+        for (int i = 0; i < 4; i++) {
+            node.children[i] = new Node(node.x + (i % 2) * half, node.y + (i / 2) * half, half, node.depth + 1);
+            node.children[i].parent = node;
+        }
+        List<Entry> entries = node.entries;
+        node.entries = new ArrayList<>();
+        for (Entry entry : entries) {
+            Node child = node.childEnclosing(entry.bounds);
+            (child == null ? node : child).attach(entry);
+        }
+    }
+
+    /**
+     * Drops the children of the nodes above a node once all four of them are
+     * empty leaves, working up the tree, so that a tree emptied by removals
+     * does not keep searching nodes that hold nothing.
+     *
+     * @param node The node an entry has just been removed from.
+     */
+    private void prune(Node node) {
+        for (Node parent = node.parent; parent != null && parent.hasOnlyEmptyLeaves(); parent = parent.parent) {
+            parent.children = null;
+        }
+    }
+
+    /**
+     * A shape stored in the tree together with the bounds it was stored under.
+     */
+    private static class Entry {
+        private final Shape shape;
+        private final long order;
+        private Rectangle2D bounds;
+        private Node node;
+        private int slot;
+
+        /**
+         * Constructs a new Entry.
+         *
+         * @param shape  The shape being stored.
+         * @param bounds The bounds of the shape.
+         * @param order  The z-order of the shape.
+         */
+        Entry(Shape shape, Rectangle2D bounds, long order) {
+            this.shape = shape;
+            this.bounds = bounds;
+            this.order = order;
+        }
+    }
+
+    /**
+     * A square region of the tree holding the entries that do not fit inside
+     * any one of its children.
+     */
+    private static class Node {
+        private final double x;
+        private final double y;
+        private final double size;
+        private int depth;
+        private List<Entry> entries;
+        private Node[] children;
+        private Node parent;
+
+        /**
+         * Constructs a new Node covering a square region.
+         *
+         * @param x     The x-coordinate of the top-left corner of the region.
+         * @param y     The y-coordinate of the top-left corner of the region.
+         * @param size  The width and height of the region.
+         * @param depth The depth of the node in the tree.
+         */
+        Node(double x, double y, double size, int depth) {
+            this.x = x;
+            this.y = y;
+            this.size = size;
+            this.depth = depth;
+            this.entries = new ArrayList<>();
+        }
+
+        /**
+         * Stores an entry in this node, remembering where in the node's list
+         * it is kept.
+         *
+         * @param entry The entry to store.
+         */
+        void attach(Entry entry) {
+            entry.node = this;
+            entry.slot = entries.size();
+            entries.add(entry);
+        }
+
+        /**
+         * Takes an entry out of this node in constant time, by moving the last
+         * entry of the node's list into its place. The order of the entries
+         * in a node does not matter, as they are compared by z-order.
+         *
+         * @param entry The entry to take out, which must be in this node.
+         */
+        void detach(Entry entry) {
+            Entry last = entries.remove(entries.size() - 1);
+            if (last != entry) {
+                entries.set(entry.slot, last);
+                last.slot = entry.slot;
+            }
+            entry.node = null;
+        }
+
+        /**
+         * Returns whether this node has children, all of which are leaves
+         * holding no entries.
+         *
+         * @return true if the children can be dropped, false otherwise.
+         */
+        boolean hasOnlyEmptyLeaves() {
+            if (children == null) {
+                return false;
+            }
+            for (Node child : children) {
+                if (child.children != null || !child.entries.isEmpty()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns whether an area lies entirely inside this node.
+         *
+         * @param area The area to check.
+         * @return true if the area is enclosed by the node, false otherwise.
+         */
+        boolean encloses(Rectangle2D area) {
+            return area.getMinX() >= x && area.getMaxX() <= x + size && area.getMinY() >= y
+                    && area.getMaxY() <= y + size;
+        }
+
+        /**
+         * Returns whether an area overlaps this node.
+         *
+         * @param area The area to check.
+         * @return true if the area intersects the node, false otherwise.
+         */
+        boolean intersects(Rectangle2D area) {
+            return area.intersects(x, y, size, size);
+        }
+
+        /**
+         * Returns the child that entirely contains an area.
+         *
+         * @param area The area to look up.
+         * @return The enclosing child, or null if there are no children or the
+         *         area straddles more than one.
+         */
+        Node childEnclosing(Rectangle2D area) {
+            if (children != null) {
+                for (Node child : children) {
+                    if (child.encloses(area)) {
+                        return child;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns the child whose region contains a point.
+         *
+         * @param px The x-coordinate of the point.
+         * @param py The y-coordinate of the point.
+         * @return The child containing the point, or null if there are no
+         *         children or the point lies outside this node.
+         */
+        Node childContaining(double px, double py) {
+            if (children == null || px < x || py < y || px > x + size || py > y + size) {
+                return null;
+            }
+            int column = px < x + size / 2 ? 0 : 1;
+            int row = py < y + size / 2 ? 0 : 1;
+            return children[row * 2 + column];
+        }
+    }
+}
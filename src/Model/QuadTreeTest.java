@@ -0,0 +1,235 @@
+package Model;
+
+import org.junit.Test;
+import org.junit.Before;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import Shapes.Shape;
+import Shapes.Ellipses;
+import Shapes.Rectangle;
+
+/**
+ * This class contains unit tests for the QuadTree class.
+ * It tests inserting, removing and updating shapes, and that hit tests and
+ * area queries respect z-order.
+ */
+public class QuadTreeTest {
+
+    private QuadTree tree;
+
+    /**
+     * Sets up a new QuadTree instance before each test.
+     */
+    @Before
+    public void setUp() {
+        tree = new QuadTree();
+    }
+
+    /**
+     * Tests that a point inside a shape finds that shape.
+     */
+    @Test
+    public void testFindTopmostAt_SingleShape() {
+        Shape rect = new Rectangle(10, 10, 50, 50, Color.BLACK, 1, Color.WHITE);
+        tree.insert(rect, 0);
+        assertSame("Point inside the rectangle should find it", rect, tree.findTopmostAt(30, 30));
+        assertNull("Point outside the rectangle should find nothing", tree.findTopmostAt(200, 200));
+    }
+
+    /**
+     * Tests that overlapping shapes resolve to the one highest in z-order.
+     */
+    @Test
+    public void testFindTopmostAt_Overlapping() {
+        Shape bottom = new Rectangle(0, 0, 100, 100, Color.BLACK, 1, Color.WHITE);
+        Shape top = new Ellipses(20, 20, 60, 60, Color.BLUE, 2, null);
+        tree.insert(bottom, 0);
+        tree.insert(top, 1);
+        assertSame("Topmost shape should be found", top, tree.findTopmostAt(50, 50));
+        assertSame("Only the bottom shape covers the corner", bottom, tree.findTopmostAt(2, 2));
+    }
+
+    /**
+     * Tests that a removed shape is no longer found.
+     */
+    @Test
+    public void testRemove() {
+        Shape rect = new Rectangle(10, 10, 50, 50, Color.BLACK, 1, Color.WHITE);
+        tree.insert(rect, 0);
+        tree.remove(rect);
+        assertNull("Removed shape should not be found", tree.findTopmostAt(30, 30));
+        assertFalse("Tree should not contain the removed shape", tree.contains(rect));
+    }
+
+    /**
+     * Tests that a shape is found at its new position after an update.
+     */
+    @Test
+    public void testUpdateAfterMove() {
+        Shape rect = new Rectangle(10, 10, 50, 50, Color.BLACK, 1, Color.WHITE);
+        tree.insert(rect, 0);
+        rect.move(500, 500);
+        tree.update(rect);
+        assertNull("Shape should not be found at its old position", tree.findTopmostAt(30, 30));
+        assertSame("Shape should be found at its new position", rect, tree.findTopmostAt(530, 530));
+    }
+
+    /**
+     * Tests shapes outside the initial region, including negative coordinates.
+     */
+    @Test
+    public void testShapesOutsideInitialRegion() {
+        Shape far = new Rectangle(50000, 40000, 10, 10, Color.BLACK, 1, Color.WHITE);
+        Shape negative = new Rectangle(-3000, -2000, 10, 10, Color.BLACK, 1, Color.WHITE);
+        tree.insert(far, 0);
+        tree.insert(negative, 1);
+        assertSame("Distant shape should be found", far, tree.findTopmostAt(50005, 40005));
+        assertSame("Shape at negative coordinates should be found", negative, tree.findTopmostAt(-2995, -1995));
+    }
+
+    /**
+     * Tests hit testing against many shapes so that nodes are split.
+     */
+    @Test
+    public void testManyShapes() {
+        Shape[] grid = new Shape[400];
+        for (int i = 0; i < grid.length; i++) {
+            grid[i] = new Rectangle((i % 20) * 30, (i / 20) * 30, 20, 20, Color.BLACK, 1, Color.WHITE);
+            tree.insert(grid[i], i);
+        }
+        assertEquals("Tree should hold every shape", 400, tree.size());
+        assertSame("Point should find the shape in that cell", grid[7 * 20 + 3], tree.findTopmostAt(3 * 30 + 10,
+                7 * 30 + 10));
+        assertNull("Point between cells should find nothing", tree.findTopmostAt(3 * 30 + 25, 7 * 30 + 25));
+    }
+
+    /**
+     * Tests that area queries return intersecting shapes in z-order.
+     */
+    @Test
+    public void testQuery() {
+        Shape first = new Rectangle(0, 0, 50, 50, Color.BLACK, 1, Color.WHITE);
+        Shape second = new Rectangle(40, 40, 50, 50, Color.BLACK, 1, Color.WHITE);
+        Shape outside = new Rectangle(500, 500, 50, 50, Color.BLACK, 1, Color.WHITE);
+        tree.insert(second, 1);
+        tree.insert(first, 0);
+        tree.insert(outside, 2);
+        List<Shape> found = tree.query(new Rectangle2D.Double(30, 30, 20, 20));
+        assertEquals("Two shapes should intersect the area", 2, found.size());
+        assertSame("Shapes should be returned in z-order", first, found.get(0));
+        assertSame("Shapes should be returned in z-order", second, found.get(1));
+    }
+
+    /**
+     * Tests that clearing the tree removes every shape.
+     */
+    @Test
+    public void testClear() {
+        tree.insert(new Rectangle(0, 0, 50, 50, Color.BLACK, 1, Color.WHITE), 0);
+        tree.clear();
+        assertEquals("Tree should be empty after clearing", 0, tree.size());
+        assertTrue("Query should find nothing after clearing",
+                tree.query(new Rectangle2D.Double(0, 0, 100, 100)).isEmpty());
+    }
+
+    /**
+     * Tests that removing shapes in any order from a node holding many of
+     * them, such as shapes crossing the middle of the tree, leaves the others
+     * in place and findable.
+     */
+    @Test
+    public void testRemove_FromCrowdedNode() {
+        List<Shape> shapes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Shape shape = new Rectangle(500 - i, 500 - i, 2 * i + 10, 2 * i + 10, Color.BLACK, 1, Color.WHITE);
+            shapes.add(shape);
+            tree.insert(shape, i);
+        }
+        Collections.shuffle(shapes, new Random(42));
+        for (int i = 0; i < 50; i++) {
+            tree.remove(shapes.get(i));
+        }
+        assertEquals("Half the shapes should remain", 50, tree.size());
+        List<Shape> found = tree.query(new Rectangle2D.Double(505, 505, 1, 1));
+        assertEquals("Every remaining shape should be found", 50, found.size());
+        for (int i = 50; i < 100; i++) {
+            assertTrue("Remaining shape should be found", found.contains(shapes.get(i)));
+            tree.update(shapes.get(i));
+        }
+        assertEquals("Updating should keep every shape", 50,
+                tree.query(new Rectangle2D.Double(505, 505, 1, 1)).size());
+    }
+
+    /**
+     * Tests that the children of nodes emptied by removals are dropped.
+     */
+    @Test
+    public void testRemove_PrunesEmptyNodes() {
+        List<Shape> shapes = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Shape shape = new Rectangle((i * 37) % 1000, (i * 53) % 1000, 5, 5, Color.BLACK, 1, Color.WHITE);
+            shapes.add(shape);
+            tree.insert(shape, i);
+        }
+        assertTrue("Tree should have split", tree.nodeCount() > 1);
+        for (Shape shape : shapes) {
+            tree.remove(shape);
+        }
+        assertEquals("Emptied tree should collapse to its root", 1, tree.nodeCount());
+    }
+
+    /**
+     * Tests that a hit test in a drawing of 100,000 rotated shapes checks only
+     * a small share of them, so finding the shape under the mouse stays cheap
+     * as the drawing grows, and that it finds the same shape as checking
+     * every shape in turn.
+     */
+    @Test
+    public void testFindTopmostAt_LargeDrawing() {
+        List<Shape> shapes = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            Shape shape = i % 2 == 0
+                    ? new Rectangle(random.nextInt(20_000), random.nextInt(20_000), 10 + random.nextInt(60),
+                            10 + random.nextInt(60), Color.BLACK, 1, Color.WHITE)
+                    : new Ellipses(random.nextInt(20_000), random.nextInt(20_000), 10 + random.nextInt(60),
+                            10 + random.nextInt(60), Color.BLACK, 1, Color.WHITE);
+            shape.rotate(random.nextInt(360));
+            shapes.add(shape);
+            tree.insert(shape, i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            double x = random.nextDouble() * 20_000;
+            double y = random.nextDouble() * 20_000;
+            int candidates = tree.candidatesAt(x, y);
+            assertTrue("Hit test should check under 2% of the shapes, checked " + candidates,
+                    candidates < shapes.size() / 50);
+        }
+        int found = 0;
+        for (int i = 0; i < 100; i++) {
+            double x = random.nextDouble() * 20_000;
+            double y = random.nextDouble() * 20_000;
+            Shape expected = null;
+            for (Shape shape : shapes) {
+                if (shape.contains(x, y)) {
+                    expected = shape;
+                }
+            }
+            assertSame("Hit test should find the topmost shape at the point", expected, tree.findTopmostAt(x, y));
+            if (expected != null) {
+                found++;
+            }
+        }
+        assertTrue("Some hit tests should find a shape", found > 0);
+    }
+}
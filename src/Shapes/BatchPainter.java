@@ -0,0 +1,248 @@
+package Shapes;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Stroke;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Paints many shape snapshots with as few changes to the graphics context as
+ * possible, giving the same pixels as painting each snapshot in turn.
+ * Painting a snapshot is split into a fill and a border draw. Draws that use
+ * the same colour and stroke are gathered into batches and painted as a single
+ * merged path, with the colour and stroke only set when they differ from the
+ * previous batch. A draw may only join an earlier batch if it does not overlap
+ * anything painted since that batch or anything already in it, so the merged
+ * result is identical to the original painting order.
+ */
+public final class BatchPainter {
+    private static final int MAX_OPEN_BATCHES = 16;
+    private static final int MAX_BATCH_SIZE = 32;
+
+    /**
+     * A run of fills or border draws with the same colour and stroke, whose
+     * bounds do not overlap one another.
+     */
+    private static final class Batch {
+        private final Color color;
+        private final BasicStroke stroke;
+        private final List<java.awt.Shape> paths = new ArrayList<>();
+        private final List<Rectangle2D> bounds = new ArrayList<>();
+        private final Rectangle2D union;
+        private boolean rectangles = true;
+
+        /**
+         * Constructs a Batch holding one draw.
+         *
+         * @param color  The colour of the batch.
+         * @param stroke The stroke of a batch of borders, or null for fills.
+         * @param path   The first path of the batch.
+         * @param bounds The bounds of the first path.
+         */
+        Batch(Color color, BasicStroke stroke, java.awt.Shape path, Rectangle2D bounds) {
+            this.color = color;
+            this.stroke = stroke;
+            this.union = (Rectangle2D) bounds.clone();
+            add(path, bounds);
+        }
+
+        /**
+         * Returns whether a draw could be painted as part of this batch.
+         *
+         * @param color  The colour of the draw.
+         * @param stroke The stroke of a border draw, or null for a fill.
+         * @param area   The bounds of the draw.
+         * @return true if the draw uses the same state and overlaps nothing in
+         *         the batch, false otherwise.
+         */
+        boolean accepts(Color color, BasicStroke stroke, Rectangle2D area) {
+            if (paths.size() >= MAX_BATCH_SIZE || !this.color.equals(color)
+                    || (this.stroke == null ? stroke != null : !this.stroke.equals(stroke))) {
+                return false;
+            }
+            return !overlaps(area);
+        }
+
+        /**
+         * Returns whether an area overlaps any draw in the batch.
+         *
+         * @param area The area to check.
+         * @return true if the area overlaps a draw, false otherwise.
+         */
+        boolean overlaps(Rectangle2D area) {
+            if (!union.intersects(area)) {
+                return false;
+            }
+            for (Rectangle2D drawn : bounds) {
+                if (drawn.intersects(area)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Adds a draw to the batch.
+         *
+         * @param path The path to fill or stroke.
+         * @param area The bounds of the draw.
+         */
+        void add(java.awt.Shape path, Rectangle2D area) {
+            rectangles &= path instanceof Rectangle2D;
+            paths.add(path);
+            bounds.add(area);
+            union.add(area);
+        }
+
+        /**
+         * Returns the path covering every draw in the batch.
+         *
+         * @return The single path, or the paths merged into one.
+         */
+        java.awt.Shape mergedPath() {
+            if (paths.size() == 1) {
+                return paths.get(0);
+            }
+            Path2D.Double merged = new Path2D.Double();
+            for (java.awt.Shape path : paths) {
+                merged.append(path, false);
+            }
+            return merged;
+        }
+    }
+
+    private final Graphics2D g2d;
+    private final Deque<Batch> open = new ArrayDeque<>();
+    private final Color initialColor;
+    private final Stroke initialStroke;
+    private final boolean blendsOver;
+    private Color currentColor;
+    private Stroke currentStroke;
+
+    /**
+     * Constructs a BatchPainter that paints on a graphics context.
+     *
+     * @param g2d The graphics context to paint on.
+     */
+    private BatchPainter(Graphics2D g2d) {
+        this.g2d = g2d;
+        this.initialColor = g2d.getColor();
+        this.currentColor = initialColor;
+        this.initialStroke = g2d.getStroke();
+        this.currentStroke = initialStroke;
+        // painting a fully transparent colour over the image changes nothing
+        this.blendsOver = AlphaComposite.SrcOver.equals(g2d.getComposite());
+    }
+
+    /**
+     * Paints snapshots in order, batching their draws. The colour and stroke
+     * of the graphics context are restored afterwards.
+     *
+     * @param g2d       The graphics context to paint on.
+     * @param snapshots The snapshots to paint, in painting order.
+     */
+    public static void paint(Graphics2D g2d, List<ShapeSnapshot> snapshots) {
+        Color savedColor = g2d.getColor();
+        Stroke savedStroke = g2d.getStroke();
+        BatchPainter painter = new BatchPainter(g2d);
+        for (ShapeSnapshot snapshot : snapshots) {
+            painter.add(snapshot);
+        }
+        painter.flush();
+        g2d.setColor(savedColor);
+        g2d.setStroke(savedStroke);
+    }
+
+    /**
+     * Queues the fill and border of a snapshot.
+     *
+     * @param snapshot The snapshot to paint.
+     */
+    private void add(ShapeSnapshot snapshot) {
+        Rectangle2D bounds = snapshot.getBounds();
+        if (snapshot.getFillColor() != null && (snapshot.getFillColor().getAlpha() != 0 || !blendsOver)) {
+            add(snapshot.getFillColor(), null, snapshot.getPath(), bounds);
+        }
+        // a null colour leaves the context's own colour in place
+        Color border = snapshot.getBorderColor() == null ? initialColor : snapshot.getBorderColor();
+        if (border.getAlpha() != 0 || !blendsOver) {
+            add(border, snapshot.getStroke(), snapshot.getPath(), bounds);
+        }
+    }
+
+    /**
+     * Adds a draw to the newest open batch it can join without changing the
+     * painted result, or to a new batch. The oldest batch is painted once
+     * too many are open.
+     *
+     * @param color  The colour to paint with.
+     * @param stroke The stroke of a border draw, or null for a fill.
+     * @param path   The path to fill or stroke.
+     * @param area   The bounds of the draw.
+     */
+    private void add(Color color, BasicStroke stroke, java.awt.Shape path, Rectangle2D area) {
+        Iterator<Batch> newestFirst = open.descendingIterator();
+        while (newestFirst.hasNext()) {
+            Batch batch = newestFirst.next();
+            if (batch.accepts(color, stroke, area)) {
+                batch.add(path, area);
+                return;
+            }
+            if (batch.overlaps(area)) {
+                break;
+            }
+        }
+        open.addLast(new Batch(color, stroke, path, area));
+        if (open.size() > MAX_OPEN_BATCHES) {
+            paint(open.removeFirst());
+        }
+    }
+
+    /**
+     * Paints every open batch.
+     */
+    private void flush() {
+        while (!open.isEmpty()) {
+            paint(open.removeFirst());
+        }
+    }
+
+    /**
+     * Paints a batch, changing the colour and stroke of the graphics context
+     * only if they differ from the ones already set.
+     *
+     * @param batch The batch to paint.
+     */
+    private void paint(Batch batch) {
+        if (!batch.color.equals(currentColor)) {
+            g2d.setColor(batch.color);
+            currentColor = batch.color;
+        }
+        // fills are rasterized differently under a wide stroke, so they are
+        // painted with the stroke the context started with, as in Shape.paint
+        Stroke stroke = batch.stroke == null ? initialStroke : batch.stroke;
+        if (!stroke.equals(currentStroke)) {
+            g2d.setStroke(stroke);
+            currentStroke = stroke;
+        }
+        if (batch.stroke == null && batch.rectangles) {
+            // the rasterizer has a fast path for single rectangles, such as
+            // the dots of shapes too small to draw, that a merged path loses
+            for (java.awt.Shape path : batch.paths) {
+                g2d.fill(path);
+            }
+        } else if (batch.stroke == null) {
+            g2d.fill(batch.mergedPath());
+        } else {
+            g2d.draw(batch.mergedPath());
+        }
+    }
+}
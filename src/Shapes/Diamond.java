@@ -1,9 +1,9 @@
 package Shapes;
 
-import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics;
-import java.awt.Graphics2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
 
 /**
  * The Diamond class extends the Shape class and represents a diamond shape.
@@ -45,47 +45,73 @@ public class Diamond extends Shape {
      */
     @Override
     public void paint(Graphics g) {
-        Graphics2D g2d = (Graphics2D) g.create();
-
-        double centerX = getX() + width / 2;
-        double centerY = getY() + height / 2;
-
-        double[] xPointsDouble = { getX() + width / 2, getX() + width, getX() + width / 2, getX() };
-        double[] yPointsDouble = { getY(), getY() + height / 2, getY() + height, getY() + height / 2 };
-
-        int[] xPoints = new int[xPointsDouble.length];
-        int[] yPoints = new int[yPointsDouble.length];
+        paintPath(g);
+    }
 
-        for (int i = 0; i < xPointsDouble.length; i++) {
-            xPoints[i] = (int) Math.round(xPointsDouble[i]);
-            yPoints[i] = (int) Math.round(yPointsDouble[i]);
-        }
+    /**
+     * Returns the colour the diamond is filled with when painted.
+     *
+     * @return The fill colour, or null for no fill.
+     */
+    @Override
+    protected Color getPaintedFillColor() {
+        return fillColor;
+    }
 
-        g2d.translate(centerX, centerY);
-        g2d.rotate(Math.toRadians(getRotation()));
-        g2d.translate(-centerX, -centerY);
+    /**
+     * Returns the colour the diamond's border is painted with.
+     *
+     * @return The border colour.
+     */
+    @Override
+    protected Color getPaintedBorderColor() {
+        return borderColor;
+    }
 
-        if (fillColor != null) {
-            g2d.setColor(fillColor);
-            g2d.fillPolygon(xPoints, yPoints, 4);
+    /**
+     * Checks if a point of the unrotated diamond is inside it, that is, on or
+     * within the four edges joining the midpoints of its bounding rectangle.
+     * A diamond with no width or no height is just its border, a segment that
+     * fills its bounds, so any point within the bounds is on it.
+     *
+     * @param x The x-coordinate of the point, before rotation.
+     * @param y The y-coordinate of the point, before rotation.
+     * @return true if the point is inside the diamond, false otherwise.
+     */
+    @Override
+    protected boolean containsLocal(double x, double y) {
+        if (width == 0 || height == 0) {
+            return true;
         }
-        g2d.setColor(borderColor);
-        g2d.setStroke(new BasicStroke(getBorderWidth()));
-        g2d.drawPolygon(xPoints, yPoints, 4);
+        double dx = Math.abs(x - (getX() + width / 2.0)) / (width / 2.0);
+        double dy = Math.abs(y - (getY() + height / 2.0)) / (height / 2.0);
+        return dx + dy <= 1.0;
+    }
 
-        g2d.dispose();
+    /**
+     * Returns the outline of the diamond before rotation is applied.
+     *
+     * @return The unrotated outline of the diamond.
+     */
+    @Override
+    protected java.awt.Shape getOutline() {
+        Path2D.Double outline = new Path2D.Double();
+        outline.moveTo(Math.round(getX() + width / 2), Math.round(getY()));
+        outline.lineTo(Math.round(getX() + width), Math.round(getY() + height / 2));
+        outline.lineTo(Math.round(getX() + width / 2), Math.round(getY() + height));
+        outline.lineTo(Math.round(getX()), Math.round(getY() + height / 2));
+        outline.closePath();
+        return outline;
     }
 
     /**
-     * Checks if a given point is within the bounding rectangle of the diamond.
+     * Returns the point the diamond is rotated about, matching the centre used when painting.
      *
-     * @param x The x-coordinate of the point.
-     * @param y The y-coordinate of the point.
-     * @return true if the point is within the bounding rectangle, false otherwise.
+     * @return The centre of rotation.
      */
     @Override
-    public boolean contains(int x, int y) {
-        return x >= getX() && x <= getX() + width && y >= getY() && y <= getY() + height;
+    protected Point2D getRotationCentre() {
+        return new Point2D.Double(getX() + width / 2, getY() + height / 2);
     }
 
     /**
@@ -109,6 +135,29 @@ public class Diamond extends Shape {
     public void resize(double scaleFactor) {
         width *= scaleFactor;
         height *= scaleFactor;
+        invalidateGeometry();
+    }
+
+    /**
+     * Returns the position and size of the diamond.
+     * 
+     * @return The x, y, width and height.
+     */
+    @Override
+    public double[] getGeometry() {
+        return new double[] { getX(), getY(), width, height };
+    }
+
+    /**
+     * Puts back the position and size returned by getGeometry.
+     * 
+     * @param geometry The x, y, width and height to restore.
+     */
+    @Override
+    public void setGeometry(double[] geometry) {
+        width = (int) geometry[2];
+        height = (int) geometry[3];
+        super.setGeometry(geometry);
     }
 
     /**
@@ -139,6 +188,7 @@ public class Diamond extends Shape {
     @Override
     public void setBorderWidth(int borderWidth) {
         this.borderWidth = borderWidth;
+        invalidateGeometry();
     }
 
     /**
@@ -1,8 +1,8 @@
 package Shapes;
 
-import java.awt.BasicStroke;
 import java.awt.Graphics;
-import java.awt.Graphics2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Point2D;
 import java.awt.Color;
 
 /**
@@ -46,40 +46,73 @@ public class Ellipses extends Shape {
      */
     @Override
     public void paint(Graphics g) {
-        Graphics2D g2d = (Graphics2D) g.create();
-
-        double centerX = getX() + width / 2;
-        double centerY = getY() + height / 2;
-
-        g2d.translate(centerX, centerY);
-        g2d.rotate(Math.toRadians(getRotation()));
-
-        if (fillColor != null) {
-            g2d.setColor(fillColor);
-            g2d.fillOval(-width / 2, -height / 2, width, height);
-        }
+        paintPath(g);
+    }
 
-        g2d.setColor(borderColor);
-        g2d.setStroke(new BasicStroke(borderWidth));
-        g2d.drawOval(-width / 2, -height / 2, width, height);
+    /**
+     * Returns the colour the ellipse is filled with when painted.
+     *
+     * @return The fill colour, or null for no fill.
+     */
+    @Override
+    protected Color getPaintedFillColor() {
+        return fillColor;
+    }
 
-        g2d.dispose();
+    /**
+     * Returns the colour the ellipse's border is painted with.
+     *
+     * @return The border colour.
+     */
+    @Override
+    protected Color getPaintedBorderColor() {
+        return borderColor;
     }
 
     /**
-     * Checks if a given point is inside the ellipse.
+     * Checks if a point of the unrotated ellipse is inside it.
      *
-     * @param x The x-coordinate of the point.
-     * @param y The y-coordinate of the point.
+     * @param x The x-coordinate of the point, before rotation.
+     * @param y The y-coordinate of the point, before rotation.
      * @return true if the point is inside the ellipse, false otherwise.
      */
     @Override
-    public boolean contains(int x, int y) {
+    protected boolean containsLocal(double x, double y) {
         double dx = (x - (getX() + width / 2.0)) / (width / 2.0);
         double dy = (y - (getY() + height / 2.0)) / (height / 2.0);
         return (dx * dx + dy * dy) <= 1.0;
     }
 
+    /**
+     * Returns the outline of the ellipse before rotation is applied.
+     *
+     * @return The unrotated outline of the ellipse.
+     */
+    @Override
+    protected java.awt.Shape getOutline() {
+        return new Ellipse2D.Double(getX(), getY(), width, height);
+    }
+
+    /**
+     * Returns the point the ellipse is rotated about, matching the centre used when painting.
+     *
+     * @return The centre of rotation.
+     */
+    @Override
+    protected Point2D getRotationCentre() {
+        return new Point2D.Double(getX() + width / 2, getY() + height / 2);
+    }
+
+    /**
+     * Returns the width of the stroke the ellipse is painted with.
+     *
+     * @return The stroke width.
+     */
+    @Override
+    protected int getStrokeWidth() {
+        return borderWidth;
+    }
+
     /**
      * Moves the ellipse by a specified delta in the x and y directions.
      *
@@ -101,6 +134,29 @@ public class Ellipses extends Shape {
     public void resize(double scaleFactor) {
         width *= scaleFactor;
         height *= scaleFactor;
+        invalidateGeometry();
+    }
+
+    /**
+     * Returns the position and size of the ellipse.
+     * 
+     * @return The x, y, width and height.
+     */
+    @Override
+    public double[] getGeometry() {
+        return new double[] { getX(), getY(), width, height };
+    }
+
+    /**
+     * Puts back the position and size returned by getGeometry.
+     * 
+     * @param geometry The x, y, width and height to restore.
+     */
+    @Override
+    public void setGeometry(double[] geometry) {
+        width = (int) geometry[2];
+        height = (int) geometry[3];
+        super.setGeometry(geometry);
     }
 
     // Getters and Setters
@@ -120,6 +176,7 @@ public class Ellipses extends Shape {
      */
     public void setWidth(int width) {
         this.width = width;
+        invalidateGeometry();
     }
 
     /**
@@ -138,6 +195,7 @@ public class Ellipses extends Shape {
      */
     public void setHeight(int height) {
         this.height = height;
+        invalidateGeometry();
     }
 
     /**
@@ -168,6 +226,7 @@ public class Ellipses extends Shape {
     @Override
     public void setBorderWidth(int borderWidth) {
         this.borderWidth = borderWidth;
+        invalidateGeometry();
     }
 
     /**
@@ -1,10 +1,9 @@
 package Shapes;
 
-import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics;
-import java.awt.Graphics2D;
 import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
 
 /**
  * The Line class extends the Shape class and represents a line shape.
@@ -12,9 +11,10 @@ import java.awt.geom.Line2D;
  * moving it, and resizing it.
  */
 public class Line extends Shape {
+    private static final double TOLERANCE = 5.0;
+
     private double x2, y2;
     private int width, height;
-    private int borderWidth;
     private Color color;
 
     /**
@@ -33,7 +33,6 @@ public class Line extends Shape {
         this.x2 = x2;
         this.y2 = y2;
         this.color = color;
-        this.borderWidth = borderWidth2;
     }
 
     /**
@@ -43,25 +42,27 @@ public class Line extends Shape {
      */
     @Override
     public void paint(Graphics g) {
-        Graphics2D g2d = (Graphics2D) g.create();
-
-        double centerX = (getX() + x2) / 2;
-        double centerY = (getY() + y2) / 2;
-
-        g2d.translate(centerX, centerY);
-        g2d.rotate(Math.toRadians(getRotation()));
-        g2d.translate(-centerX, -centerY);
-
-        int intX1 = (int) Math.round(getX());
-        int intY1 = (int) Math.round(getY());
-        int intX2 = (int) Math.round(x2);
-        int intY2 = (int) Math.round(y2);
+        paintPath(g);
+    }
 
-        g2d.setColor(getColor());
-        g2d.setStroke(new BasicStroke(this.borderWidth));
-        g2d.drawLine(intX1, intY1, intX2, intY2);
+    /**
+     * Returns the colour the line is filled with when painted.
+     *
+     * @return The fill colour, or null for no fill.
+     */
+    @Override
+    protected Color getPaintedFillColor() {
+        return null;
+    }
 
-        g2d.dispose();
+    /**
+     * Returns the colour the line's border is painted with.
+     *
+     * @return The border colour.
+     */
+    @Override
+    protected Color getPaintedBorderColor() {
+        return color;
     }
 
     /**
@@ -73,22 +74,75 @@ public class Line extends Shape {
     public void resize(double scaleFactor) {
         this.x2 = getX() + (this.x2 - getX()) * scaleFactor;
         this.y2 = getY() + (this.y2 - getY()) * scaleFactor;
+        invalidateGeometry();
     }
 
     /**
-     * Checks if a given point is within a certain tolerance of the line.
+     * Returns the positions of the line's two end points.
      *
-     * @param x The x-coordinate of the point.
-     * @param y The y-coordinate of the point.
+     * @return The x and y of the start point, then of the end point.
+     */
+    @Override
+    public double[] getGeometry() {
+        return new double[] { getX(), getY(), x2, y2 };
+    }
+
+    /**
+     * Puts back the end points returned by getGeometry.
+     *
+     * @param geometry The x and y of the start point, then of the end point.
+     */
+    @Override
+    public void setGeometry(double[] geometry) {
+        x2 = geometry[2];
+        y2 = geometry[3];
+        super.setGeometry(geometry);
+    }
+
+    /**
+     * Checks if a point of the unrotated line is within a certain tolerance of
+     * it.
+     *
+     * @param x The x-coordinate of the point, before rotation.
+     * @param y The y-coordinate of the point, before rotation.
      * @return true if the point is near the line, false otherwise.
      */
     @Override
-    public boolean contains(int x, int y) {
-        final double TOLERANCE = 5.0;
+    protected boolean containsLocal(double x, double y) {
         double dist = Line2D.ptSegDist(getX(), getY(), x2, y2, x, y);
         return dist <= TOLERANCE;
     }
 
+    /**
+     * Returns how far from the line a point may lie and still be inside it.
+     *
+     * @return The tolerance around the line.
+     */
+    @Override
+    protected double getHitMargin() {
+        return TOLERANCE;
+    }
+
+    /**
+     * Returns the outline of the line before rotation is applied.
+     *
+     * @return The unrotated outline of the line.
+     */
+    @Override
+    protected java.awt.Shape getOutline() {
+        return new Line2D.Double(getX(), getY(), x2, y2);
+    }
+
+    /**
+     * Returns the point the line is rotated about, its midpoint.
+     *
+     * @return The centre of rotation.
+     */
+    @Override
+    protected Point2D getRotationCentre() {
+        return new Point2D.Double((getX() + x2) / 2, (getY() + y2) / 2);
+    }
+
     /**
      * Moves the line by a specified delta in the x and y directions.
      *
@@ -101,6 +155,7 @@ public class Line extends Shape {
         setY(getY() + deltaY);
         x2 += deltaX;
         y2 += deltaY;
+        invalidateGeometry();
     }
 
     // Getters and setters
@@ -120,6 +175,7 @@ public class Line extends Shape {
      */
     public void setX2(double x2) {
         this.x2 = x2;
+        invalidateGeometry();
     }
 
     /**
@@ -138,6 +194,7 @@ public class Line extends Shape {
      */
     public void setY2(double y2) {
         this.y2 = y2;
+        invalidateGeometry();
     }
 
     /**
@@ -1,9 +1,9 @@
 package Shapes;
 
-import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics;
-import java.awt.Graphics2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 
 /**
  * The Rectangle class extends the Shape class and represents a rectangle shape.
@@ -45,37 +45,70 @@ public class Rectangle extends Shape {
      */
     @Override
     public void paint(Graphics g) {
-        Graphics2D g2d = (Graphics2D) g.create();
+        paintPath(g);
+    }
 
-        double centerX = getX() + width / 2;
-        double centerY = getY() + height / 2;
+    /**
+     * Returns the colour the rectangle is filled with when painted.
+     *
+     * @return The fill colour, or null for no fill.
+     */
+    @Override
+    protected Color getPaintedFillColor() {
+        return fillColor;
+    }
 
-        g2d.translate(centerX, centerY);
-        g2d.rotate(Math.toRadians(getRotation()));
-        g2d.translate(-width / 2, -height / 2);
+    /**
+     * Returns the colour the rectangle's border is painted with.
+     *
+     * @return The border colour.
+     */
+    @Override
+    protected Color getPaintedBorderColor() {
+        return borderColor;
+    }
 
-        if (fillColor != null) {
-            g2d.setColor(fillColor);
-            g2d.fillRect(0, 0, width, height);
-        }
+    /**
+     * Checks if a point of the unrotated rectangle is inside it. Every point
+     * within the outline's bounds, edges included, is inside.
+     *
+     * @param x The x-coordinate of the point, before rotation.
+     * @param y The y-coordinate of the point, before rotation.
+     * @return true if the point is inside the rectangle, false otherwise.
+     */
+    @Override
+    protected boolean containsLocal(double x, double y) {
+        return true;
+    }
 
-        g2d.setColor(borderColor);
-        g2d.setStroke(new BasicStroke(borderWidth));
-        g2d.drawRect(0, 0, width, height);
+    /**
+     * Returns the outline of the rectangle before rotation is applied.
+     *
+     * @return The unrotated outline of the rectangle.
+     */
+    @Override
+    protected java.awt.Shape getOutline() {
+        return new Rectangle2D.Double(getX(), getY(), width, height);
+    }
 
-        g2d.dispose();
+    /**
+     * Returns the point the rectangle is rotated about, matching the centre used when painting.
+     *
+     * @return The centre of rotation.
+     */
+    @Override
+    protected Point2D getRotationCentre() {
+        return new Point2D.Double(getX() + width / 2, getY() + height / 2);
     }
 
     /**
-     * Checks if a given point is inside the rectangle.
+     * Returns the width of the stroke the rectangle is painted with.
      *
-     * @param x The x-coordinate of the point.
-     * @param y The y-coordinate of the point.
-     * @return true if the point is inside the rectangle, false otherwise.
+     * @return The stroke width.
      */
     @Override
-    public boolean contains(int x, int y) {
-        return x >= getX() && x <= getX() + width && y >= getY() && y <= getY() + height;
+    protected int getStrokeWidth() {
+        return borderWidth;
     }
 
     /**
@@ -99,6 +132,29 @@ public class Rectangle extends Shape {
     public void resize(double scaleFactor) {
         width *= scaleFactor;
         height *= scaleFactor;
+        invalidateGeometry();
+    }
+
+    /**
+     * Returns the position and size of the rectangle.
+     * 
+     * @return The x, y, width and height.
+     */
+    @Override
+    public double[] getGeometry() {
+        return new double[] { getX(), getY(), width, height };
+    }
+
+    /**
+     * Puts back the position and size returned by getGeometry.
+     * 
+     * @param geometry The x, y, width and height to restore.
+     */
+    @Override
+    public void setGeometry(double[] geometry) {
+        width = (int) geometry[2];
+        height = (int) geometry[3];
+        super.setGeometry(geometry);
     }
 
     // Getters and Setters
@@ -130,6 +186,7 @@ public class Rectangle extends Shape {
     @Override
     public void setBorderWidth(int borderWidth) {
         this.borderWidth = borderWidth;
+        invalidateGeometry();
     }
 
     /**
@@ -148,6 +205,7 @@ public class Rectangle extends Shape {
      */
     public void setWidth(int width) {
         this.width = width;
+        invalidateGeometry();
     }
 
     /**
@@ -166,6 +224,7 @@ public class Rectangle extends Shape {
      */
     public void setHeight(int height) {
         this.height = height;
+        invalidateGeometry();
     }
 
     /**
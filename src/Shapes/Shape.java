@@ -1,7 +1,13 @@
 package Shapes;
 
+import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 
 /**
  * The Shape class is an abstract class that provides a template for shapes in a
@@ -19,6 +25,12 @@ public abstract class Shape {
     protected int rotation;
     protected String id;
     private Boolean isOwner;
+    private Rectangle2D bounds;
+    private AffineTransform transform;
+    private Path2D path;
+    private BasicStroke stroke;
+    private AffineTransform inverse;
+    private Rectangle2D localBounds;
 
     /**
      * Constructs a Shape object with specified coordinates, border properties, and
@@ -62,21 +74,226 @@ public abstract class Shape {
     public void move(int deltaX, int deltaY) {
         this.x += deltaX;
         this.y += deltaY;
+        invalidateGeometry();
     }
 
     /**
-     * Checks if a given point is inside the shape. The default implementation
-     * always returns false.
-     * Subclasses should override this method with specific logic.
+     * Checks if a given point is inside the shape.
      * 
      * @param x The x-coordinate of the point.
      * @param y The y-coordinate of the point.
      * @return true if the point is inside the shape, false otherwise.
      */
     public boolean contains(int x, int y) {
+        return contains((double) x, (double) y);
+    }
+
+    /**
+     * Checks if a given point is inside the shape, with its rotation taken
+     * into account. The point is turned back into the shape's unrotated frame
+     * with the cached inverse rotation, rejected if it lies outside the cached
+     * unrotated bounds, and otherwise tested by containsLocal. Nothing is
+     * allocated once the geometry is cached.
+     * 
+     * @param x The x-coordinate of the point.
+     * @param y The y-coordinate of the point.
+     * @return true if the point is inside the shape, false otherwise.
+     */
+    public boolean contains(double x, double y) {
+        buildGeometry();
+        double localX = inverse.getScaleX() * x + inverse.getShearX() * y + inverse.getTranslateX();
+        double localY = inverse.getShearY() * x + inverse.getScaleY() * y + inverse.getTranslateY();
+        double margin = getHitMargin();
+        if (localX < localBounds.getMinX() - margin || localX > localBounds.getMaxX() + margin
+                || localY < localBounds.getMinY() - margin || localY > localBounds.getMaxY() + margin) {
+            return false;
+        }
+        return containsLocal(localX, localY);
+    }
+
+    /**
+     * Checks if a point in the shape's unrotated frame is inside its outline.
+     * The point is already known to lie within the outline's bounds, grown by
+     * the hit margin. The default implementation always returns false.
+     * Subclasses should override this method with specific logic.
+     * 
+     * @param x The x-coordinate of the point, before rotation.
+     * @param y The y-coordinate of the point, before rotation.
+     * @return true if the point is inside the shape, false otherwise.
+     */
+    protected boolean containsLocal(double x, double y) {
         return false;
     }
 
+    /**
+     * Returns how far outside its outline a point may lie and still be inside
+     * the shape. The default implementation is no distance at all.
+     * 
+     * @return The margin around the outline, in drawing units.
+     */
+    protected double getHitMargin() {
+        return 0;
+    }
+
+    /**
+     * Returns the outline of the shape before rotation is applied. The default
+     * implementation is an empty rectangle at the shape's position.
+     * Subclasses should override this method with their own geometry.
+     * 
+     * @return The unrotated outline of the shape.
+     */
+    protected java.awt.Shape getOutline() {
+        return new Rectangle2D.Double(x, y, 0, 0);
+    }
+
+    /**
+     * Returns the point the shape is rotated about when it is painted. The
+     * default implementation is the centre of the outline's bounds.
+     * 
+     * @return The centre of rotation.
+     */
+    protected Point2D getRotationCentre() {
+        Rectangle2D outlineBounds = getOutline().getBounds2D();
+        return new Point2D.Double(outlineBounds.getCenterX(), outlineBounds.getCenterY());
+    }
+
+    /**
+     * Returns the width of the stroke the shape is painted with.
+     * 
+     * @return The stroke width.
+     */
+    protected int getStrokeWidth() {
+        return borderWidth;
+    }
+
+    /**
+     * Returns the area of the canvas covered by the shape once painted,
+     * accounting for its rotation and the width of its border. The bounds are
+     * cached until the shape's geometry changes, so the returned rectangle must
+     * not be modified.
+     * 
+     * @return The bounding box of the painted shape.
+     */
+    public Rectangle2D getBounds() {
+        buildGeometry();
+        return bounds;
+    }
+
+    /**
+     * Returns the transform that rotates the shape's outline about its centre
+     * of rotation. It is cached until the shape's geometry changes, so it must
+     * not be modified.
+     * 
+     * @return The rotation transform of the shape.
+     */
+    public AffineTransform getTransform() {
+        buildGeometry();
+        return transform;
+    }
+
+    /**
+     * Returns the outline of the shape as it is painted, with its rotation
+     * already applied. It is cached until the shape's geometry changes.
+     * 
+     * @return The painted outline of the shape.
+     */
+    public java.awt.Shape getPath() {
+        buildGeometry();
+        return path;
+    }
+
+    /**
+     * Returns the stroke the shape's border is painted with.
+     * 
+     * @return The border stroke.
+     */
+    public BasicStroke getStroke() {
+        buildGeometry();
+        return stroke;
+    }
+
+    /**
+     * Discards the cached geometry of the shape. Must be called whenever a
+     * change affects where the shape is painted.
+     */
+    protected void invalidateGeometry() {
+        path = null;
+    }
+
+    /**
+     * Builds the cached transform and its inverse, path, stroke, and painted
+     * and unrotated bounds of the shape if they have been discarded since they
+     * were last used.
+     */
+    private void buildGeometry() {
+        if (path != null) {
+            return;
+        }
+        Point2D centre = getRotationCentre();
+        transform = AffineTransform.getRotateInstance(Math.toRadians(getRotation()), centre.getX(), centre.getY());
+        inverse = AffineTransform.getRotateInstance(-Math.toRadians(getRotation()), centre.getX(), centre.getY());
+        stroke = new BasicStroke(Math.max(getStrokeWidth(), 0));
+        java.awt.Shape outline = getOutline();
+        localBounds = outline.getBounds2D();
+        Path2D.Double rotated = new Path2D.Double(outline, transform);
+        Rectangle2D strokedBounds = stroke.createStrokedShape(rotated).getBounds2D();
+        // allow a pixel either side for rounding of the painted coordinates
+        bounds = new Rectangle2D.Double(strokedBounds.getX() - 1, strokedBounds.getY() - 1,
+                strokedBounds.getWidth() + 2, strokedBounds.getHeight() + 2);
+        path = rotated;
+    }
+
+    /**
+     * Returns the colour the shape is filled with when painted.
+     * 
+     * @return The fill colour, or null for no fill.
+     */
+    protected Color getPaintedFillColor() {
+        return fillColor;
+    }
+
+    /**
+     * Returns the colour the shape's border is painted with.
+     * 
+     * @return The border colour.
+     */
+    protected Color getPaintedBorderColor() {
+        return borderColor;
+    }
+
+    /**
+     * Paints the cached path of the shape, filling it first if it has a fill
+     * colour and then drawing its border. The colour and stroke of the graphics
+     * context are restored afterwards.
+     * 
+     * @param g The graphics context to paint on.
+     */
+    protected void paintPath(Graphics g) {
+        buildGeometry();
+        ShapeSnapshot.paint((Graphics2D) g, path, stroke, getPaintedFillColor(), getPaintedBorderColor());
+    }
+
+    /**
+     * Returns whether the shape's fill completely hides whatever is painted
+     * beneath its outline.
+     * 
+     * @return true if the shape has a fully opaque fill, false otherwise.
+     */
+    public boolean isOpaque() {
+        Color fill = getPaintedFillColor();
+        return fill != null && fill.getAlpha() == 255;
+    }
+
+    /**
+     * Takes an immutable snapshot of the shape as it would be painted now.
+     * 
+     * @return The snapshot of the shape.
+     */
+    public ShapeSnapshot snapshot() {
+        buildGeometry();
+        return new ShapeSnapshot(path, stroke, getPaintedFillColor(), getPaintedBorderColor(), bounds);
+    }
+
     /**
      * Rotates the shape by a given angle.
      * 
@@ -84,6 +301,30 @@ public abstract class Shape {
      */
     public void rotate(int angle) {
         this.rotation += angle % 360;
+        invalidateGeometry();
+    }
+
+    /**
+     * Returns the coordinates and sizes that place the shape, other than its
+     * rotation, so that they can be put back exactly with setGeometry. The
+     * default implementation holds the shape's position. Subclasses with
+     * more points or a size should override both methods.
+     * 
+     * @return A copy of the shape's geometry.
+     */
+    public double[] getGeometry() {
+        return new double[] { x, y };
+    }
+
+    /**
+     * Puts back the geometry returned by an earlier call to getGeometry.
+     * 
+     * @param geometry The geometry to restore.
+     */
+    public void setGeometry(double[] geometry) {
+        this.x = geometry[0];
+        this.y = geometry[1];
+        invalidateGeometry();
     }
 
     /**
@@ -102,6 +343,7 @@ public abstract class Shape {
      */
     public void setX(double x) {
         this.x = x;
+        invalidateGeometry();
     }
 
     /**
@@ -120,6 +362,7 @@ public abstract class Shape {
      */
     public void setY(double y) {
         this.y = y;
+        invalidateGeometry();
     }
 
     /**
@@ -156,6 +399,7 @@ public abstract class Shape {
      */
     public void setBorderWidth(int borderWidth) {
         this.borderWidth = borderWidth;
+        invalidateGeometry();
     }
 
     /**
@@ -174,6 +418,7 @@ public abstract class Shape {
      */
     public void setRotation(int rotation) {
         this.rotation = rotation;
+        invalidateGeometry();
     }
 
     /**
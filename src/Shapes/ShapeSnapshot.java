@@ -0,0 +1,167 @@
+package Shapes;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Stroke;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * An immutable copy of everything needed to paint a shape at one point in
+ * time. Snapshots can be painted from any thread while the shape they were
+ * taken from continues to be edited.
+ */
+public final class ShapeSnapshot {
+    private static final BasicStroke HAIRLINE = new BasicStroke(0);
+    private static final Color TRANSPARENT = new Color(0, 0, 0, 0);
+
+    private final java.awt.Shape path;
+    private final BasicStroke stroke;
+    private final Color fillColor;
+    private final Color borderColor;
+    private final Rectangle2D bounds;
+
+    /**
+     * Constructs a ShapeSnapshot from a shape's painted geometry and colours.
+     *
+     * @param path        The painted outline, with rotation applied.
+     * @param stroke      The stroke the border is painted with.
+     * @param fillColor   The fill colour, or null for no fill.
+     * @param borderColor The border colour.
+     * @param bounds      The bounding box of the painted shape.
+     */
+    ShapeSnapshot(java.awt.Shape path, BasicStroke stroke, Color fillColor, Color borderColor,
+            Rectangle2D bounds) {
+        this.path = path;
+        this.stroke = stroke;
+        this.fillColor = fillColor;
+        this.borderColor = borderColor;
+        this.bounds = bounds;
+    }
+
+    /**
+     * Paints the snapshot on a graphics context.
+     *
+     * @param g2d The graphics context to paint on.
+     */
+    public void paint(Graphics2D g2d) {
+        paint(g2d, path, stroke, fillColor, borderColor);
+    }
+
+    /**
+     * Returns a copy of the snapshot whose border is drawn as a hairline, one
+     * pixel wide whatever the scale. It is cheaper to draw than a wide border.
+     *
+     * @return The simplified snapshot.
+     */
+    public ShapeSnapshot withHairline() {
+        if (stroke.getLineWidth() == 0) {
+            return this;
+        }
+        return new ShapeSnapshot(path, HAIRLINE, fillColor, borderColor, bounds);
+    }
+
+    /**
+     * Returns a copy of the snapshot drawn as a filled dot, for shapes too
+     * small on screen for their outline to show. The dot takes the fill
+     * colour, or the border colour if there is no fill, and has no border.
+     * The bounds are kept, so the dot is culled like the shape.
+     *
+     * @param dot The area of the dot, usually a single pixel of the device.
+     * @return The simplified snapshot.
+     */
+    public ShapeSnapshot asDot(Rectangle2D dot) {
+        Color color = fillColor != null ? fillColor : borderColor;
+        return new ShapeSnapshot(dot, HAIRLINE, color, TRANSPARENT, bounds);
+    }
+
+    /**
+     * Paints the area the snapshot covers in a single colour: the fill, if it
+     * has one, and the border. Thin borders can be widened so that they cover
+     * enough pixels to be clicked on. The colour and stroke of the graphics
+     * context are restored afterwards.
+     *
+     * @param g2d            The graphics context to paint on.
+     * @param color          The colour to paint with.
+     * @param minBorderWidth The narrowest the border is painted, in the units
+     *                       of the graphics context.
+     */
+    public void paintSilhouette(Graphics2D g2d, Color color, float minBorderWidth) {
+        BasicStroke border = stroke;
+        if (stroke.getLineWidth() < minBorderWidth) {
+            border = new BasicStroke(minBorderWidth, stroke.getEndCap(), stroke.getLineJoin(),
+                    stroke.getMiterLimit());
+        }
+        paint(g2d, path, border, fillColor == null ? null : color, color);
+    }
+
+    /**
+     * Returns the bounding box of the painted shape. It must not be modified.
+     *
+     * @return The bounding box.
+     */
+    public Rectangle2D getBounds() {
+        return bounds;
+    }
+
+    /**
+     * Returns the painted outline, with rotation applied.
+     *
+     * @return The path.
+     */
+    java.awt.Shape getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the stroke the border is painted with.
+     *
+     * @return The stroke.
+     */
+    BasicStroke getStroke() {
+        return stroke;
+    }
+
+    /**
+     * Returns the fill colour.
+     *
+     * @return The fill colour, or null for no fill.
+     */
+    public Color getFillColor() {
+        return fillColor;
+    }
+
+    /**
+     * Returns the border colour.
+     *
+     * @return The border colour.
+     */
+    public Color getBorderColor() {
+        return borderColor;
+    }
+
+    /**
+     * Fills and strokes a path, restoring the colour and stroke of the graphics
+     * context afterwards.
+     *
+     * @param g2d         The graphics context to paint on.
+     * @param path        The path to paint.
+     * @param stroke      The stroke to draw the border with.
+     * @param fillColor   The fill colour, or null for no fill.
+     * @param borderColor The border colour.
+     */
+    static void paint(Graphics2D g2d, java.awt.Shape path, BasicStroke stroke, Color fillColor,
+            Color borderColor) {
+        Color savedColor = g2d.getColor();
+        Stroke savedStroke = g2d.getStroke();
+        if (fillColor != null) {
+            g2d.setColor(fillColor);
+            g2d.fill(path);
+        }
+        g2d.setColor(borderColor);
+        g2d.setStroke(stroke);
+        g2d.draw(path);
+        g2d.setColor(savedColor);
+        g2d.setStroke(savedStroke);
+    }
+}
@@ -0,0 +1,118 @@
+package Shapes.Tests;
+
+import org.junit.Test;
+
+import Shapes.BatchPainter;
+import Shapes.Diamond;
+import Shapes.Ellipses;
+import Shapes.Line;
+import Shapes.Rectangle;
+import Shapes.Shape;
+import Shapes.ShapeSnapshot;
+import Shapes.Triangle;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Stroke;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * This class contains unit tests for the BatchPainter class.
+ * It checks that batching gives exactly the same pixels as painting each
+ * snapshot in turn, and that the graphics context is left as it was found.
+ */
+public class BatchPainterTests {
+
+    /**
+     * Creates snapshots of random shapes with a small set of colours and
+     * border widths, so that many draws share the same state.
+     *
+     * @param count The number of shapes.
+     * @param seed  The seed for the random generator.
+     * @return The snapshots, in painting order.
+     */
+    private List<ShapeSnapshot> createSnapshots(int count, long seed) {
+        Random random = new Random(seed);
+        Color[] colors = { Color.RED, Color.BLUE, Color.BLACK, new Color(0, 0, 255, 100) };
+        List<ShapeSnapshot> snapshots = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int x = random.nextInt(380);
+            int y = random.nextInt(280);
+            int width = 2 + random.nextInt(30);
+            int height = 2 + random.nextInt(30);
+            Color fill = random.nextInt(3) == 0 ? null : colors[random.nextInt(colors.length)];
+            Color border = colors[random.nextInt(3)];
+            int borderWidth = random.nextInt(3);
+            Shape shape;
+            switch (random.nextInt(5)) {
+                case 0:
+                    shape = new Rectangle(x, y, width, height, border, borderWidth, fill);
+                    break;
+                case 1:
+                    shape = new Ellipses(x, y, width, height, border, borderWidth, fill);
+                    break;
+                case 2:
+                    shape = new Diamond(x, y, width, height, border, borderWidth, fill);
+                    break;
+                case 3:
+                    shape = new Triangle(x, y, x + width, y, x, y + height, border, borderWidth, fill);
+                    break;
+                default:
+                    shape = new Line(x, y, x + width, y + height, border, borderWidth);
+            }
+            shape.rotate(random.nextInt(360));
+            snapshots.add(shape.snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * Tests that batched painting matches painting each snapshot in turn
+     * pixel for pixel.
+     */
+    @Test
+    public void testMatchesSerialPainting() {
+        for (long seed = 0; seed < 3; seed++) {
+            List<ShapeSnapshot> snapshots = createSnapshots(3000, seed);
+            BufferedImage serial = new BufferedImage(400, 300, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D serialGraphics = serial.createGraphics();
+            for (ShapeSnapshot snapshot : snapshots) {
+                snapshot.paint(serialGraphics);
+            }
+            serialGraphics.dispose();
+            BufferedImage batched = new BufferedImage(400, 300, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D batchedGraphics = batched.createGraphics();
+            BatchPainter.paint(batchedGraphics, snapshots);
+            batchedGraphics.dispose();
+
+            for (int y = 0; y < 300; y++) {
+                for (int x = 0; x < 400; x++) {
+                    assertEquals("Pixel " + x + "," + y + " should match serial painting", serial.getRGB(x, y),
+                            batched.getRGB(x, y));
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests that the colour and stroke of the graphics context are restored.
+     */
+    @Test
+    public void testRestoresGraphicsState() {
+        BufferedImage image = new BufferedImage(400, 300, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g2d = image.createGraphics();
+        Stroke stroke = new BasicStroke(7);
+        g2d.setColor(Color.ORANGE);
+        g2d.setStroke(stroke);
+        BatchPainter.paint(g2d, createSnapshots(50, 1));
+        assertEquals("Colour should be restored", Color.ORANGE, g2d.getColor());
+        assertEquals("Stroke should be restored", stroke, g2d.getStroke());
+        g2d.dispose();
+    }
+}
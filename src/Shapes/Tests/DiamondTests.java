@@ -182,7 +182,40 @@ public class DiamondTests {
      */
     @Test
     public void testContainsPointOnEdge() {
-        assertTrue("Point on the edge of the diamond should return true", diamond.contains(30, 10));
+        assertTrue("Point on the edge of the diamond should return true", diamond.contains(35, 10));
+    }
+
+    /**
+     * Tests that a corner of the diamond's bounding rectangle, which lies
+     * outside its edges, is not contained.
+     */
+    @Test
+    public void testContainsBoundingCorner() {
+        assertFalse("Corner of the bounding rectangle should return false", diamond.contains(12, 12));
+    }
+
+    /**
+     * Tests that containment follows the diamond's rotation.
+     */
+    @Test
+    public void testContainsRotated() {
+        diamond.rotate(90);
+        assertTrue("Point inside the rotated diamond should return true", diamond.contains(35, 48));
+        assertFalse("Point left outside by the rotation should return false", diamond.contains(55, 25));
+    }
+
+    /**
+     * Tests that a diamond with no width or no height, drawn as a single
+     * segment, can still be hit on that segment.
+     */
+    @Test
+    public void testContainsDegenerate() {
+        Diamond flat = new Diamond(10, 10, 0, 40, Color.RED, 2, Color.BLUE);
+        assertTrue("Point on a zero-width diamond should return true", flat.contains(10, 30));
+        assertFalse("Point beside a zero-width diamond should return false", flat.contains(12, 30));
+        Diamond thin = new Diamond(10, 10, 40, 0, Color.RED, 2, Color.BLUE);
+        assertTrue("Point on a zero-height diamond should return true", thin.contains(30, 10));
+        assertFalse("Point beyond a zero-height diamond should return false", thin.contains(55, 10));
     }
 
     /**
@@ -210,4 +243,20 @@ public class DiamondTests {
         assertEquals("Initial height should match constructor", 30, diamond.getHeight());
     }
 
+    /**
+     * Tests that the cached geometry is reused between paints and rebuilt when
+     * the diamond is rotated.
+     */
+    @Test
+    public void testGeometryCachedUntilChanged() {
+        java.awt.Shape path = diamond.getPath();
+        Graphics g = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB).getGraphics();
+        diamond.paint(g);
+        assertSame("Painting should reuse the cached path", path, diamond.getPath());
+        assertSame("Painting should reuse the cached stroke", diamond.getStroke(), diamond.getStroke());
+        diamond.rotate(90);
+        assertNotSame("Rotating should rebuild the path", path, diamond.getPath());
+        assertTrue("Rotated path should be taller than it is wide",
+                diamond.getPath().getBounds2D().getHeight() > diamond.getPath().getBounds2D().getWidth());
+    }
 }
@@ -153,4 +153,14 @@ public class EllipsesTests {
         assertEquals("Border color should be red", newBorderColor, ellipse.getBorderColor());
         assertEquals("Fill color should be blue", newFillColor, ellipse.getFillColor());
     }
+
+    /**
+     * Tests that containment follows the ellipse's rotation.
+     */
+    @Test
+    public void testContainsRotated() {
+        ellipse.rotate(90);
+        assertTrue("Point inside rotated ellipse should return true", ellipse.contains(60, 80));
+        assertFalse("Point left outside by the rotation should return false", ellipse.contains(100, 35));
+    }
 }
@@ -204,4 +204,14 @@ public class LineTests {
             fail("Paint method should not throw exceptions.");
         }
     }
+
+    /**
+     * Tests that containment follows the line's rotation.
+     */
+    @Test
+    public void testContainsRotated() {
+        line.rotate(90);
+        assertTrue("Point near the rotated line should return true", line.contains(45, 15));
+        assertFalse("Point near the unrotated line should return false", line.contains(45, 45));
+    }
 }
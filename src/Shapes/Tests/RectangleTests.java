@@ -8,6 +8,7 @@ import Shapes.Rectangle;
 
 import java.awt.Color;
 import java.awt.Graphics;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 
 /**
@@ -174,4 +175,50 @@ public class RectangleTests {
             fail("Paint method should not throw exceptions.");
         }
     }
+
+    /**
+     * Tests that the bounds of the rectangle include its border.
+     */
+    @Test
+    public void testBoundsIncludeBorder() {
+        Rectangle2D bounds = rectangle.getBounds();
+        assertTrue("Bounds should extend past the left edge by half the border", bounds.getMinX() <= 10 - 2.5);
+        assertTrue("Bounds should extend past the bottom edge by half the border", bounds.getMaxY() >= 70 + 2.5);
+    }
+
+    /**
+     * Tests that the bounds of the rectangle follow its rotation.
+     */
+    @Test
+    public void testBoundsFollowRotation() {
+        rectangle.rotate(90);
+        Rectangle2D bounds = rectangle.getBounds();
+        assertTrue("Rotated bounds should be taller than the rectangle's width", bounds.getHeight() >= 100);
+        assertTrue("Rotated bounds should be narrower than the rectangle's width", bounds.getWidth() < 100);
+    }
+
+    /**
+     * Tests that the cached bounds are reused until the rectangle changes.
+     */
+    @Test
+    public void testBoundsCachedUntilChanged() {
+        Rectangle2D bounds = rectangle.getBounds();
+        assertSame("Unchanged rectangle should reuse its bounds", bounds, rectangle.getBounds());
+        rectangle.move(100, 0);
+        assertEquals("Bounds should follow a move", bounds.getMinX() + 100, rectangle.getBounds().getMinX(), 0.01);
+        rectangle.resize(2);
+        assertTrue("Bounds should follow a resize", rectangle.getBounds().getWidth() >= 200);
+        rectangle.setBorderWidth(20);
+        assertTrue("Bounds should follow the border width", rectangle.getBounds().getMinX() <= 110 - 10);
+    }
+
+    /**
+     * Tests that containment follows the rectangle's rotation.
+     */
+    @Test
+    public void testContainsRotated() {
+        rectangle.rotate(90);
+        assertTrue("Should contain point within rotated bounds", rectangle.contains(60, 90));
+        assertFalse("Should not contain point left outside by the rotation", rectangle.contains(100, 45));
+    }
 }
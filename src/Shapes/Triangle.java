@@ -1,8 +1,8 @@
 package Shapes;
 
-import java.awt.BasicStroke;
 import java.awt.Graphics;
-import java.awt.Graphics2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
 import java.awt.Color;
 
 /**
@@ -50,40 +50,38 @@ public class Triangle extends Shape {
      */
     @Override
     public void paint(Graphics g) {
-        Graphics2D g2d = (Graphics2D) g.create();
-
-        double centroidX = (getX() + x2 + x3) / 3.0;
-        double centroidY = (getY() + y2 + y3) / 3.0;
-
-        g2d.translate(centroidX, centroidY);
-        g2d.rotate(Math.toRadians(getRotation()));
-
-        int[] xPoints = { (int) Math.round(getX() - centroidX), (int) Math.round(x2 - centroidX),
-                (int) Math.round(x3 - centroidX) };
-        int[] yPoints = { (int) Math.round(getY() - centroidY), (int) Math.round(y2 - centroidY),
-                (int) Math.round(y3 - centroidY) };
-
-        if (fillColor != null) {
-            g2d.setColor(fillColor);
-            g2d.fillPolygon(xPoints, yPoints, 3);
-        }
+        paintPath(g);
+    }
 
-        g2d.setColor(borderColor);
-        g2d.setStroke(new BasicStroke(borderWidth));
-        g2d.drawPolygon(xPoints, yPoints, 3);
+    /**
+     * Returns the colour the triangle is filled with when painted.
+     *
+     * @return The fill colour, or null for no fill.
+     */
+    @Override
+    protected Color getPaintedFillColor() {
+        return fillColor;
+    }
 
-        g2d.dispose();
+    /**
+     * Returns the colour the triangle's border is painted with.
+     *
+     * @return The border colour.
+     */
+    @Override
+    protected Color getPaintedBorderColor() {
+        return borderColor;
     }
 
     /**
-     * Checks if a given point is inside the triangle.
+     * Checks if a point of the unrotated triangle is inside it.
      *
-     * @param x The x-coordinate of the point.
-     * @param y The y-coordinate of the point.
+     * @param x The x-coordinate of the point, before rotation.
+     * @param y The y-coordinate of the point, before rotation.
      * @return true if the point is inside the triangle, false otherwise.
      */
     @Override
-    public boolean contains(int x, int y) {
+    protected boolean containsLocal(double x, double y) {
         double x1 = getX(), y1 = getY(), x2 = this.x2, y2 = this.y2, x3 = this.x3, y3 = this.y3;
         double denominator = ((y2 - y3) * (x1 - x3) + (x3 - x2) * (y1 - y3));
         double a = ((y2 - y3) * (x - x3) + (x3 - x2) * (y - y3)) / denominator;
@@ -92,6 +90,41 @@ public class Triangle extends Shape {
         return 0 <= a && a <= 1 && 0 <= b && b <= 1 && 0 <= c && c <= 1;
     }
 
+    /**
+     * Returns the outline of the triangle before rotation is applied.
+     *
+     * @return The unrotated outline of the triangle.
+     */
+    @Override
+    protected java.awt.Shape getOutline() {
+        Path2D.Double outline = new Path2D.Double();
+        outline.moveTo(getX(), getY());
+        outline.lineTo(x2, y2);
+        outline.lineTo(x3, y3);
+        outline.closePath();
+        return outline;
+    }
+
+    /**
+     * Returns the point the triangle is rotated about, its centroid.
+     *
+     * @return The centre of rotation.
+     */
+    @Override
+    protected Point2D getRotationCentre() {
+        return new Point2D.Double((getX() + x2 + x3) / 3.0, (getY() + y2 + y3) / 3.0);
+    }
+
+    /**
+     * Returns the width of the stroke the triangle is painted with.
+     *
+     * @return The stroke width.
+     */
+    @Override
+    protected int getStrokeWidth() {
+        return borderWidth;
+    }
+
     /**
      * Moves the triangle by a specified delta in the x and y directions.
      *
@@ -106,6 +139,7 @@ public class Triangle extends Shape {
         y2 += deltaY;
         x3 += deltaX;
         y3 += deltaY;
+        invalidateGeometry();
     }
 
     /**
@@ -124,6 +158,31 @@ public class Triangle extends Shape {
         y2 = resizeCoordinate(y2, cy, scaleFactor);
         x3 = resizeCoordinate(x3, cx, scaleFactor);
         y3 = resizeCoordinate(y3, cy, scaleFactor);
+        invalidateGeometry();
+    }
+
+    /**
+     * Returns the positions of the triangle's three vertices.
+     *
+     * @return The x and y of each vertex in turn.
+     */
+    @Override
+    public double[] getGeometry() {
+        return new double[] { getX(), getY(), x2, y2, x3, y3 };
+    }
+
+    /**
+     * Puts back the vertex positions returned by getGeometry.
+     *
+     * @param geometry The x and y of each vertex in turn.
+     */
+    @Override
+    public void setGeometry(double[] geometry) {
+        x2 = geometry[2];
+        y2 = geometry[3];
+        x3 = geometry[4];
+        y3 = geometry[5];
+        super.setGeometry(geometry);
     }
 
     /**
@@ -168,6 +227,7 @@ public class Triangle extends Shape {
     @Override
     public void setBorderWidth(int borderWidth) {
         this.borderWidth = borderWidth;
+        invalidateGeometry();
     }
 
     /**
@@ -186,6 +246,7 @@ public class Triangle extends Shape {
      */
     public void setX2(double x2) {
         this.x2 = x2;
+        invalidateGeometry();
     }
 
     /**
@@ -204,6 +265,7 @@ public class Triangle extends Shape {
      */
     public void setY2(double y2) {
         this.y2 = y2;
+        invalidateGeometry();
     }
 
     /**
@@ -222,6 +284,7 @@ public class Triangle extends Shape {
      */
     public void setX3(double x3) {
         this.x3 = x3;
+        invalidateGeometry();
     }
 
     /**
@@ -239,6 +302,7 @@ public class Triangle extends Shape {
      */
     public void setY3(double y3) {
         this.y3 = y3;
+        invalidateGeometry();
     }
 
     /**
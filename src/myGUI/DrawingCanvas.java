@@ -0,0 +1,643 @@
+package myGUI;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.JPanel;
+import javax.swing.Timer;
+import Model.Model;
+import Shapes.Shape;
+import Shapes.ShapeSnapshot;
+
+/**
+ * The panel the drawing is painted on.
+ * Shapes that are not being edited are rasterized into a cached layer, which
+ * is only redrawn in the regions the model reports as changed. Only the shapes
+ * whose bounds intersect the region being drawn are painted. The shape being
+ * dragged is kept out of the layer and painted live on top of it, so moving it
+ * does not require repainting the shapes underneath.
+ * The layer is rasterized off the EDT by a LayerRenderer, from snapshots of
+ * the shapes taken when a region is invalidated, and only the tiles of the
+ * layer that a change touches are rasterized again. Shapes that are entirely
+ * covered by an opaque shape above them are not rasterized at all. Painting
+ * only blits the last frame the renderer presented, so input is never held up
+ * by rasterization. Long redraws present their partial results at a fixed
+ * interval, and a redraw that is in progress when the model changes is
+ * restarted to include the changed region.
+ * While a gesture such as a drag is in progress, rendering follows the
+ * interactive half of a QualityPolicy. Once the canvas has been still for the
+ * policy's settle delay, the regions rendered during the gesture are rendered
+ * again at full quality.
+ * The drawing is shown through a Viewport that can be zoomed and panned.
+ * Shapes that shrink below a couple of pixels on screen are drawn as a one
+ * pixel dot, and are skipped if another dot already covers that pixel, so a
+ * zoomed out view of many small shapes costs at most a dot per pixel.
+ * The shape under the mouse can be outlined as a hover highlight. The outline
+ * is painted over the layer like the live shape, so moving the highlight only
+ * repaints the bounds of the shape it leaves and the shape it reaches.
+ * Selected shapes are outlined in the same way, and a selection marquee can be
+ * shown while it is being dragged out.
+ */
+public class DrawingCanvas extends JPanel {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The interval, in milliseconds, at which the partial result of a long
+     * redraw is presented by default.
+     */
+    public static final int DEFAULT_FRAME_BUDGET = 8;
+
+    /**
+     * The size, in layer pixels, of painted bounds below which a shape is
+     * drawn as a single pixel dot.
+     */
+    private static final double DOT_BELOW = 2;
+
+    /**
+     * The width, in pixels of the canvas, of the hover highlight.
+     */
+    private static final float HOVER_WIDTH = 2;
+    private static final Color HOVER_COLOR = new Color(30, 144, 255, 200);
+    private static final Color SELECTION_COLOR = new Color(255, 140, 0, 220);
+    private static final Color MARQUEE_FILL = new Color(30, 144, 255, 40);
+    private static final BasicStroke MARQUEE_STROKE = new BasicStroke(1, BasicStroke.CAP_BUTT,
+            BasicStroke.JOIN_MITER, 10, new float[] { 4, 4 }, 0);
+
+    private final Model model;
+    private final LayerRenderer renderer;
+    private final Timer settleTimer;
+    private final Viewport viewport = new Viewport();
+    private final PickBuffer pickBuffer;
+    private QualityPolicy qualityPolicy;
+    private boolean gestureInProgress;
+    private Rectangle2D interactiveRegion;
+    private boolean showServerShapes;
+    private Shape liveShape;
+    private Shape hoveredShape;
+    private List<Shape> selection = new ArrayList<>();
+    private Rectangle2D marquee;
+    private int layerWidth;
+    private int layerHeight;
+    private double layerScale;
+    private Rectangle2D invalidRegion;
+    private Rectangle2D pendingRegion;
+    private long frameNumber;
+
+    /**
+     * Constructs a DrawingCanvas for a model.
+     *
+     * @param model The model whose shapes are painted.
+     */
+    public DrawingCanvas(Model model) {
+        this.model = model;
+        this.renderer = new LayerRenderer(this::framePresented, DEFAULT_FRAME_BUDGET);
+        this.pickBuffer = new PickBuffer(model);
+        this.qualityPolicy = QualityPolicy.createDefault();
+        this.settleTimer = new Timer(qualityPolicy.getSettleDelay(), e -> settle());
+        this.settleTimer.setRepeats(false);
+    }
+
+    /**
+     * Sets the policy that decides how rendering trades quality for speed
+     * during gestures. The whole canvas is rendered again with it.
+     *
+     * @param qualityPolicy The policy to use.
+     */
+    public void setQualityPolicy(QualityPolicy qualityPolicy) {
+        this.qualityPolicy = qualityPolicy;
+        settleTimer.setInitialDelay(qualityPolicy.getSettleDelay());
+        invalidateAll();
+    }
+
+    /**
+     * Returns the policy that decides how rendering trades quality for speed
+     * during gestures.
+     *
+     * @return The quality policy.
+     */
+    public QualityPolicy getQualityPolicy() {
+        return qualityPolicy;
+    }
+
+    /**
+     * Starts a gesture, such as dragging a shape. Rendering uses the
+     * interactive hints until the gesture ends and then settles.
+     */
+    public void beginGesture() {
+        gestureInProgress = true;
+        settleTimer.stop();
+    }
+
+    /**
+     * Ends the gesture started by beginGesture. The high quality pass runs
+     * once the settle delay has passed without another interaction.
+     */
+    public void endGesture() {
+        gestureInProgress = false;
+        settleTimer.restart();
+    }
+
+    /**
+     * Records a single interactive step, such as a click of the scale button.
+     * Rendering uses the interactive hints until no further step has happened
+     * for the settle delay.
+     */
+    public void interacted() {
+        if (!gestureInProgress) {
+            settleTimer.restart();
+        }
+    }
+
+    /**
+     * Returns whether rendering currently follows the interactive half of the
+     * quality policy.
+     *
+     * @return true during a gesture and until it settles, false otherwise.
+     */
+    public boolean isInteractive() {
+        return gestureInProgress || settleTimer.isRunning();
+    }
+
+    /**
+     * Sets whether the shapes retrieved from the server are painted.
+     *
+     * @param showServerShapes true to paint the server shapes, false otherwise.
+     */
+    public void setShowServerShapes(boolean showServerShapes) {
+        this.showServerShapes = showServerShapes;
+        invalidateAll();
+    }
+
+    /**
+     * Sets how long a redraw of the cached layer may run before its partial
+     * result is presented.
+     *
+     * @param millis The interval between partial results, in milliseconds.
+     */
+    public void setFrameBudget(int millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Frame budget must be positive: " + millis);
+        }
+        renderer.setPresentInterval(millis);
+    }
+
+    /**
+     * Returns whether a redraw of the cached layer has been requested and not
+     * yet presented in full.
+     *
+     * @return true if the layer is out of date, false otherwise.
+     */
+    public boolean isRendering() {
+        return invalidRegion != null || pendingRegion != null;
+    }
+
+    /**
+     * Sets the shape that is being edited. It is taken out of the cached layer
+     * and painted live until another shape, or null, is set.
+     *
+     * @param shape The shape being edited, or null if there is none.
+     */
+    public void setLiveShape(Shape shape) {
+        if (shape == liveShape) {
+            return;
+        }
+        if (liveShape != null) {
+            invalidate(liveShape.getBounds());
+        }
+        liveShape = shape;
+        if (liveShape != null) {
+            invalidate(liveShape.getBounds());
+        }
+    }
+
+    /**
+     * Returns the shape that is being edited.
+     *
+     * @return The live shape, or null if there is none.
+     */
+    public Shape getLiveShape() {
+        return liveShape;
+    }
+
+    /**
+     * Sets the shape outlined as being under the mouse. Only the regions of
+     * the previously and newly outlined shapes are repainted, and the cached
+     * layer is left untouched.
+     *
+     * @param shape The shape under the mouse, or null if there is none.
+     */
+    public void setHoveredShape(Shape shape) {
+        if (shape == hoveredShape) {
+            return;
+        }
+        if (hoveredShape != null) {
+            repaintHover(hoveredShape.getBounds());
+        }
+        hoveredShape = shape;
+        if (hoveredShape != null) {
+            repaintHover(hoveredShape.getBounds());
+        }
+    }
+
+    /**
+     * Returns the shape outlined as being under the mouse.
+     *
+     * @return The hovered shape, or null if there is none.
+     */
+    public Shape getHoveredShape() {
+        return hoveredShape;
+    }
+
+    /**
+     * Sets the shapes outlined as selected. Only the regions of the shapes
+     * that were or are now selected are repainted.
+     *
+     * @param shapes The selected shapes, which may be empty.
+     */
+    public void setSelection(List<Shape> shapes) {
+        for (Shape shape : selection) {
+            repaintHover(shape.getBounds());
+        }
+        selection = new ArrayList<>(shapes);
+        for (Shape shape : selection) {
+            repaintHover(shape.getBounds());
+        }
+    }
+
+    /**
+     * Sets the selection marquee being dragged out, or removes it.
+     *
+     * @param region The area of the marquee, in drawing coordinates, or null
+     *               to remove it.
+     */
+    public void setMarquee(Rectangle2D region) {
+        if (marquee != null) {
+            repaintHover(marquee);
+        }
+        marquee = region == null ? null : (Rectangle2D) region.clone();
+        if (marquee != null) {
+            repaintHover(marquee);
+        }
+    }
+
+    /**
+     * Marks a region of the cached layer as out of date and schedules it to be
+     * repainted.
+     *
+     * @param region The region of the drawing that has changed.
+     */
+    public void invalidate(Rectangle2D region) {
+        invalidateView(viewport.toView(region));
+    }
+
+    /**
+     * Marks the whole cached layer as out of date and schedules a repaint.
+     */
+    public void invalidateAll() {
+        invalidateView(new Rectangle2D.Double(0, 0, getWidth(), getHeight()));
+    }
+
+    /**
+     * Schedules a repaint of a region of the drawing without touching the
+     * cached layer, for changes to the live shape.
+     *
+     * @param region The region of the drawing to repaint.
+     */
+    public void repaintDrawing(Rectangle2D region) {
+        repaint(viewport.toView(region).getBounds());
+    }
+
+    /**
+     * Schedules a repaint of the region of the canvas a highlight around a
+     * region of the drawing covers.
+     *
+     * @param region The painted bounds of the highlighted shape, or the area
+     *               of the marquee.
+     */
+    private void repaintHover(Rectangle2D region) {
+        java.awt.Rectangle viewRegion = viewport.toView(region).getBounds();
+        viewRegion.grow((int) Math.ceil(HOVER_WIDTH), (int) Math.ceil(HOVER_WIDTH));
+        repaint(viewRegion);
+    }
+
+    /**
+     * Zooms the view by a factor, keeping the point of the drawing under a
+     * point of the canvas in place.
+     *
+     * @param factor The factor to multiply the zoom by.
+     * @param viewX  The x-coordinate on the canvas to zoom about.
+     * @param viewY  The y-coordinate on the canvas to zoom about.
+     */
+    public void zoomAt(double factor, double viewX, double viewY) {
+        viewport.zoomAt(factor, viewX, viewY);
+        interacted();
+        viewChanged();
+    }
+
+    /**
+     * Pans the view so that the drawing moves by a distance on the canvas.
+     *
+     * @param viewDx The horizontal distance, in pixels of the canvas.
+     * @param viewDy The vertical distance, in pixels of the canvas.
+     */
+    public void panBy(double viewDx, double viewDy) {
+        viewport.panBy(viewDx, viewDy);
+        interacted();
+        viewChanged();
+    }
+
+    /**
+     * Pans the view so that a point of the drawing is shown at the centre of
+     * the canvas.
+     *
+     * @param x The x-coordinate of the point, in drawing coordinates.
+     * @param y The y-coordinate of the point, in drawing coordinates.
+     */
+    public void centreOn(double x, double y) {
+        viewport.centreOn(x, y, getWidth(), getHeight());
+        interacted();
+        viewChanged();
+    }
+
+    /**
+     * Returns the view to showing the drawing at 1:1 from its origin.
+     */
+    public void resetView() {
+        viewport.reset();
+        viewChanged();
+    }
+
+    /**
+     * Returns the zoom factor of the view.
+     *
+     * @return The number of canvas pixels per drawing unit.
+     */
+    public double getZoom() {
+        return viewport.getZoom();
+    }
+
+    /**
+     * Converts a point on the canvas, such as the position of the mouse, to
+     * drawing coordinates.
+     *
+     * @param viewX The x-coordinate on the canvas.
+     * @param viewY The y-coordinate on the canvas.
+     * @return The point of the drawing shown there.
+     */
+    public Point2D toDrawing(double viewX, double viewY) {
+        return viewport.toDrawing(viewX, viewY);
+    }
+
+    /**
+     * Finds the topmost shape painted at a point of the canvas by looking it
+     * up in a pick buffer. Unlike a hit test on the model, this follows the
+     * rotated outline and border width of each shape exactly, and ignores the
+     * inside of shapes that have no fill.
+     *
+     * @param viewX The x-coordinate on the canvas.
+     * @param viewY The y-coordinate on the canvas.
+     * @return The shape at the point, or null if there is none.
+     */
+    public Shape pickShapeAt(int viewX, int viewY) {
+        return pickBuffer.pick(viewX, viewY, getWidth(), getHeight(), viewport.getTransform(), showServerShapes);
+    }
+
+    /**
+     * Returns the region of the drawing the canvas currently shows.
+     *
+     * @return The visible region, in drawing coordinates.
+     */
+    public Rectangle2D getVisibleRegion() {
+        return viewport.toDrawing(new Rectangle2D.Double(0, 0, getWidth(), getHeight()));
+    }
+
+    /**
+     * Redraws the whole canvas after the viewport has moved, and tells
+     * listeners for the "visibleRegion" property what the canvas now shows.
+     */
+    private void viewChanged() {
+        invalidateAll();
+        firePropertyChange("visibleRegion", null, getVisibleRegion());
+    }
+
+    /**
+     * Marks a region of the cached layer as out of date and schedules it to be
+     * repainted.
+     *
+     * @param viewRegion The region of the canvas that has changed.
+     */
+    private void invalidateView(Rectangle2D viewRegion) {
+        pickBuffer.invalidate(viewRegion);
+        if (invalidRegion == null) {
+            invalidRegion = (Rectangle2D) viewRegion.clone();
+        } else {
+            invalidRegion.add(viewRegion);
+        }
+        repaint(viewRegion.getBounds());
+    }
+
+    /**
+     * Stops the render thread when the canvas is removed from its window.
+     */
+    @Override
+    public void removeNotify() {
+        super.removeNotify();
+        renderer.stop();
+    }
+
+    /**
+     * Requests a redraw of any invalid region of the cached layer, blits the
+     * last frame the renderer presented and paints the live shape, the
+     * selection and hover highlights and the marquee on top.
+     *
+     * @param g The graphics context to paint on.
+     */
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        Graphics2D g2d = (Graphics2D) g;
+        double scale = g2d.getTransform().getScaleX();
+        int width = (int) Math.ceil(getWidth() * scale);
+        int height = (int) Math.ceil(getHeight() * scale);
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        if (width != layerWidth || height != layerHeight || scale != layerScale) {
+            layerWidth = width;
+            layerHeight = height;
+            layerScale = scale;
+            invalidRegion = new Rectangle2D.Double(0, 0, getWidth(), getHeight());
+        }
+        if (invalidRegion != null) {
+            requestFrame();
+        }
+        renderer.drawFront(g2d, getWidth(), getHeight());
+        java.awt.Rectangle clip = g2d.getClipBounds();
+        if (liveShape != null && (clip == null || viewport.toView(liveShape.getBounds()).intersects(clip))) {
+            Graphics2D liveGraphics = (Graphics2D) g2d.create();
+            liveGraphics.addRenderingHints(currentHints());
+            liveGraphics.transform(viewport.getTransform());
+            liveShape.paint(liveGraphics);
+            liveGraphics.dispose();
+        }
+        if (!selection.isEmpty() || hoveredShape != null || marquee != null) {
+            Graphics2D overlay = (Graphics2D) g2d.create();
+            overlay.addRenderingHints(currentHints());
+            overlay.transform(viewport.getTransform());
+            overlay.setStroke(new BasicStroke((float) (HOVER_WIDTH / viewport.getZoom())));
+            overlay.setColor(SELECTION_COLOR);
+            for (Shape shape : selection) {
+                if (clip == null || viewport.toView(shape.getBounds()).intersects(clip)) {
+                    overlay.draw(shape.getPath());
+                }
+            }
+            if (hoveredShape != null
+                    && (clip == null || viewport.toView(hoveredShape.getBounds()).intersects(clip))) {
+                overlay.setColor(HOVER_COLOR);
+                overlay.draw(hoveredShape.getPath());
+            }
+            overlay.dispose();
+        }
+        if (marquee != null) {
+            java.awt.Rectangle area = viewport.toView(marquee).getBounds();
+            Graphics2D marqueeGraphics = (Graphics2D) g2d.create();
+            marqueeGraphics.setColor(MARQUEE_FILL);
+            marqueeGraphics.fill(area);
+            marqueeGraphics.setColor(HOVER_COLOR);
+            marqueeGraphics.setStroke(MARQUEE_STROKE);
+            marqueeGraphics.draw(area);
+            marqueeGraphics.dispose();
+        }
+    }
+
+    /**
+     * Returns the rendering hints the quality policy calls for at the moment.
+     *
+     * @return The interactive hints during a gesture, the settled hints
+     *         otherwise.
+     */
+    private RenderingHints currentHints() {
+        return isInteractive() ? qualityPolicy.getInteractiveHints() : qualityPolicy.getSettledHints();
+    }
+
+    /**
+     * Renders again at full quality every region that was rendered while a
+     * gesture was in progress, unless another gesture has begun.
+     */
+    private void settle() {
+        if (gestureInProgress) {
+            return;
+        }
+        if (interactiveRegion != null) {
+            invalidateView(interactiveRegion);
+            interactiveRegion = null;
+        }
+        if (liveShape != null) {
+            repaintDrawing(liveShape.getBounds());
+        }
+    }
+
+    /**
+     * Snapshots every shape other than the live shape that intersects the
+     * tiles touched by the regions invalidated since the last complete frame,
+     * and asks the renderer to redraw those tiles. Shapes hidden behind an
+     * opaque shape painted after them, or too small to see, are left out.
+     */
+    private void requestFrame() {
+        if (pendingRegion != null) {
+            invalidRegion.add(pendingRegion);
+        }
+        pendingRegion = LayerRenderer.toTiles(invalidRegion, layerScale);
+        invalidRegion = null;
+
+        boolean interactive = isInteractive() && qualityPolicy.needsSettledPass();
+        if (interactive) {
+            if (interactiveRegion == null) {
+                interactiveRegion = (Rectangle2D) pendingRegion.clone();
+            } else {
+                interactiveRegion.add(pendingRegion);
+            }
+        }
+        Rectangle2D drawingRegion = viewport.toDrawing(pendingRegion);
+        LayerSnapshots snapshots = new LayerSnapshots();
+        for (Shape shape : model.getShapesIntersecting(drawingRegion)) {
+            if (shape != liveShape) {
+                addSnapshot(snapshots, shape, showServerShapes, interactive);
+            }
+        }
+        if (showServerShapes) {
+            for (Shape serverShape : model.getServerShapesIntersecting(drawingRegion)) {
+                if (serverShape != liveShape) {
+                    addSnapshot(snapshots, serverShape, true, interactive);
+                }
+            }
+        }
+        renderer.request(++frameNumber, snapshots.toList(), (Rectangle2D) pendingRegion.clone(), layerWidth,
+                layerHeight, layerScale, viewport.getTransform(),
+                interactive ? qualityPolicy.getInteractiveHints() : qualityPolicy.getSettledHints());
+    }
+
+    /**
+     * Takes a snapshot of a shape to render at its level of detail. A shape
+     * smaller on screen than DOT_BELOW is drawn as a dot filling the layer
+     * pixel under its centre, taking the place of the dot of any shape below
+     * it in the same pixel, so the topmost colour shows. Larger shapes are
+     * left out if an opaque shape hides them, and during a gesture, the border
+     * of a shape smaller than the quality policy's threshold is drawn as a
+     * hairline. Dots are not checked for occlusion, as that costs more than
+     * painting one.
+     *
+     * @param snapshots           The snapshots to add to.
+     * @param shape               The shape to snapshot.
+     * @param includeServerShapes true if server shapes can hide the shape.
+     * @param interactive         true if the frame is rendered during a
+     *                            gesture.
+     */
+    private void addSnapshot(LayerSnapshots snapshots, Shape shape, boolean includeServerShapes,
+            boolean interactive) {
+        Rectangle2D bounds = shape.getBounds();
+        double zoom = viewport.getZoom();
+        double size = Math.max(bounds.getWidth(), bounds.getHeight()) * zoom * layerScale;
+        if (size < DOT_BELOW) {
+            int column = (int) Math.floor((bounds.getCenterX() - viewport.getOriginX()) * zoom * layerScale);
+            int row = (int) Math.floor((bounds.getCenterY() - viewport.getOriginY()) * zoom * layerScale);
+            if (column < 0 || row < 0 || column >= layerWidth || row >= layerHeight) {
+                return;
+            }
+            Rectangle2D pixel = new Rectangle2D.Double(column / layerScale, row / layerScale, 1 / layerScale,
+                    1 / layerScale);
+            snapshots.addDot(row * layerWidth + column, shape.snapshot().asDot(viewport.toDrawing(pixel)));
+            return;
+        }
+        if (model.isOccluded(shape, includeServerShapes, liveShape)) {
+            return;
+        }
+        ShapeSnapshot snapshot = shape.snapshot();
+        if (interactive && size < qualityPolicy.getSimplifyBelow()) {
+            snapshots.add(snapshot.withHairline());
+        } else {
+            snapshots.add(snapshot);
+        }
+    }
+
+    /**
+     * Repaints a region the renderer has presented, and forgets the pending
+     * region once the latest frame has been presented in full.
+     *
+     * @param frame    The number of the frame that was presented.
+     * @param region   The region of the canvas that changed.
+     * @param complete true if the frame has been fully rendered.
+     */
+    private void framePresented(long frame, Rectangle2D region, boolean complete) {
+        if (complete && frame == frameNumber) {
+            pendingRegion = null;
+        }
+        repaint(region.getBounds());
+    }
+}
@@ -3,24 +3,29 @@ package myGUI;
 import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
+import java.awt.GridLayout;
 import java.awt.Color;
-import java.awt.Graphics;
-import java.awt.Graphics2D;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.awt.image.BufferedImage;
+import java.awt.event.MouseWheelEvent;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.awt.Font;
-import javax.imageio.ImageIO;
 import javax.swing.BoxLayout;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JColorChooser;
 import javax.swing.JComboBox;
 import javax.swing.JFileChooser;
@@ -33,21 +38,26 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JSpinner;
 import javax.swing.JToolBar;
+import javax.swing.ProgressMonitor;
 import javax.swing.SpinnerNumberModel;
 import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import Model.Model;
+import Model.ModelEvent;
 import Shapes.Diamond;
 import Shapes.DrawType;
 import Shapes.Ellipses;
 import Shapes.Line;
 import Shapes.Rectangle;
 import Shapes.Shape;
+import Shapes.ShapeSnapshot;
 import Shapes.Triangle;
 
 import javax.json.JsonArray;
 import javax.json.JsonObject;
 
 import Server.Client;
+import Export.StreamingPngExporter;
 
 /**
  * This class represents the graphical user interface for the drawing
@@ -56,11 +66,17 @@ import Server.Client;
  * interface.
  */
 public class GUIDelegate implements PropertyChangeListener {
+    private static final double ZOOM_STEP = 1.25;
     private static final int FRAME_HEIGHT = 900;
     private static final int FRAME_WIDTH = 1000;
+    private static final int MAX_EXPORT_SIZE = 32_768;
     private Shape selectedShape = null;
+    private List<Shape> selectedShapes = new ArrayList<>();
+    private boolean selecting;
     private JFrame mainFrame;
-    private JPanel drawingCanvas;
+    private DrawingCanvas drawingCanvas;
+    private Minimap minimap;
+    private boolean pixelPicking = true;
     private JToolBar toolbar;
     private JCheckBox solidFill;
     private JButton Undo, Redo, fillColorButton, borderColorButton, rotateButton, rotateButtonLeft, deleteButton;
@@ -76,7 +92,7 @@ public class GUIDelegate implements PropertyChangeListener {
     private int endPointX;
     private int endPointY;
     private MouseHandler handler;
-    private String[] shapeOptions = { "line", "rectangle", "ellipse", "triangle", "diamond" };
+    private String[] shapeOptions = { "line", "rectangle", "ellipse", "triangle", "diamond", "select" };
     private JComboBox<String> shapeSelector = new JComboBox<>(shapeOptions);
     private Client client;
     private List<Shape> shapes;
@@ -94,20 +110,8 @@ public class GUIDelegate implements PropertyChangeListener {
     public GUIDelegate(Model model) throws IOException {
         this.connectedToServer = false;
 
-        drawingCanvas = new JPanel() {
-            @Override
-            public void paint(Graphics g) {
-                super.paint(g);
-                for (Shape shape : model.getShapes()) {
-                    shape.paint(g);
-                }
-                if (connectedToServer) {
-                    for (Shape serverShape : model.getShapesFromServer()) {
-                        serverShape.paint(g);
-                    }
-                }
-            }
-        };
+        drawingCanvas = new DrawingCanvas(model);
+        minimap = new Minimap(model, drawingCanvas);
         this.mainFrame = new JFrame();
         handler = new MouseHandler();
         this.model = model;
@@ -116,6 +120,7 @@ public class GUIDelegate implements PropertyChangeListener {
         this.drawType = DrawType.line;
         setupComponents();
         model.addObserver(this);
+        model.addModelListener(this::modelChanged);
         this.client = new Client("cs5001-p3.dynv6.net", 8080, this);
     }
 
@@ -126,6 +131,16 @@ public class GUIDelegate implements PropertyChangeListener {
     private void setUpMenu() {
         JMenu fileMenu = new JMenu("File");
         JMenu serverMenu = new JMenu("Server");
+        JMenu viewMenu = new JMenu("View");
+
+        JMenuItem zoomInItem = new JMenuItem("Zoom In");
+        zoomInItem.addActionListener(e -> zoomAtCentre(ZOOM_STEP));
+        JMenuItem zoomOutItem = new JMenuItem("Zoom Out");
+        zoomOutItem.addActionListener(e -> zoomAtCentre(1 / ZOOM_STEP));
+        JMenuItem resetViewItem = new JMenuItem("Reset View");
+        resetViewItem.addActionListener(e -> drawingCanvas.resetView());
+        JCheckBoxMenuItem pixelPickingItem = new JCheckBoxMenuItem("Select Painted Pixels", pixelPicking);
+        pixelPickingItem.addActionListener(e -> pixelPicking = pixelPickingItem.isSelected());
 
         JMenuItem saveItem = new JMenuItem("Save");
         saveItem.addActionListener(e -> {
@@ -157,7 +172,7 @@ public class GUIDelegate implements PropertyChangeListener {
                         JsonObject response = client.deleteDrawing(String.valueOf(selectedShape.getId()));
                         if ("ok".equals(response.getString("result"))) {
                             model.removeShape(selectedShape);
-                            selectedShape = null;
+                            select(Collections.emptyList());
                             drawingCanvas.repaint();
                             JOptionPane.showMessageDialog(mainFrame, "Shape deleted successfully.");
                         } else {
@@ -246,10 +261,25 @@ public class GUIDelegate implements PropertyChangeListener {
 
         this.menuBar.add(fileMenu);
         this.menuBar.add(serverMenu);
+        viewMenu.add(zoomInItem);
+        viewMenu.add(zoomOutItem);
+        viewMenu.add(resetViewItem);
+        viewMenu.addSeparator();
+        viewMenu.add(pixelPickingItem);
+        this.menuBar.add(viewMenu);
 
         mainFrame.setJMenuBar(menuBar);
     }
 
+    /**
+     * Zooms the canvas about its centre.
+     *
+     * @param factor The factor to multiply the zoom by.
+     */
+    private void zoomAtCentre(double factor) {
+        drawingCanvas.zoomAt(factor, drawingCanvas.getWidth() / 2.0, drawingCanvas.getHeight() / 2.0);
+    }
+
     /**
      * Updates the server connection status and refreshes the canvas to display
      * server shapes if connected.
@@ -258,37 +288,108 @@ public class GUIDelegate implements PropertyChangeListener {
      */
     public void setConnectedToServer(boolean connected) {
         this.connectedToServer = connected;
-        drawingCanvas.repaint();
+        drawingCanvas.setShowServerShapes(connected);
+        minimap.setShowServerShapes(connected);
     }
 
     /**
      * Inner class for handling mouse events on the drawing canvas.
-     * It manages mouse interactions for selecting, dragging, and releasing shapes.
+     * It manages mouse interactions for selecting, dragging, and releasing shapes,
+     * and for panning and zooming the view. Mouse positions are mapped to
+     * drawing coordinates through the canvas's viewport.
+     * Every mouse movement hit-tests the model's spatial index for the shape
+     * under the cursor, which the canvas outlines as a hover highlight.
+     * With the select tool, dragging across empty space draws a marquee that
+     * selects every shape it touches, and dragging any selected shape moves
+     * the whole selection.
      */
     private class MouseHandler extends MouseAdapter {
         private boolean isDragging = false;
-        private int prevX, prevY;
+        private boolean isPanning = false;
+        private double prevX, prevY;
+        private int panX, panY;
+        private int mouseX, mouseY;
+        private boolean mouseInside;
+        private Point2D marqueeStart;
+
+        /**
+         * Handles mouse moved events on the canvas by highlighting the shape
+         * under the cursor.
+         *
+         * @param e The MouseEvent object containing details about the mouse event.
+         */
+        @Override
+        public void mouseMoved(MouseEvent e) {
+            mouseX = e.getX();
+            mouseY = e.getY();
+            mouseInside = true;
+            updateHover();
+        }
+
+        /**
+         * Handles the mouse leaving the canvas by removing the hover highlight.
+         *
+         * @param e The MouseEvent object containing details about the mouse event.
+         */
+        @Override
+        public void mouseExited(MouseEvent e) {
+            mouseInside = false;
+            drawingCanvas.setHoveredShape(null);
+        }
+
+        /**
+         * Highlights the shape under the last known mouse position, after the
+         * mouse or the shapes beneath it have moved.
+         */
+        void updateHover() {
+            if (!mouseInside) {
+                return;
+            }
+            Point2D point = drawingCanvas.toDrawing(mouseX, mouseY);
+            drawingCanvas.setHoveredShape(model.getShapeAt(point.getX(), point.getY()));
+        }
 
         /**
          * Handles mouse pressed events on the canvas.
          * Identifies if a shape is selected and prepares for potential dragging.
+         * The shape under the mouse is looked up in the canvas's pick buffer, or
+         * hit-tested against the model if selecting painted pixels is turned off.
+         * Pressing a shape outside the selection selects it alone, and pressing
+         * empty space with the select tool starts a marquee.
+         * Pressing any button other than the left one starts panning the view.
          *
          * @param e The MouseEvent object containing details about the mouse event.
          */
         @Override
         public void mousePressed(MouseEvent e) {
-            int x = e.getX();
-            int y = e.getY();
             isDragging = false;
-
-            for (Shape shape : model.getShapes()) {
-                if (shape.contains(x, y)) {
-                    selectedShape = shape;
-                    prevX = x;
-                    prevY = y;
-                    isDragging = true;
-                    break;
+            if (!SwingUtilities.isLeftMouseButton(e)) {
+                isPanning = true;
+                panX = e.getX();
+                panY = e.getY();
+                drawingCanvas.beginGesture();
+                return;
+            }
+            Point2D point = drawingCanvas.toDrawing(e.getX(), e.getY());
+            int x = (int) Math.floor(point.getX());
+            int y = (int) Math.floor(point.getY());
+
+            Shape shape = pixelPicking ? drawingCanvas.pickShapeAt(e.getX(), e.getY())
+                    : model.getShapeAt(point.getX(), point.getY());
+            if (shape != null) {
+                if (!selectedShapes.contains(shape)) {
+                    select(Collections.singletonList(shape));
+                }
+                drawingCanvas.beginGesture();
+                if (selectedShapes.size() == 1) {
+                    drawingCanvas.setLiveShape(shape);
                 }
+                prevX = point.getX();
+                prevY = point.getY();
+                isDragging = true;
+            } else if (selecting) {
+                select(Collections.emptyList());
+                marqueeStart = point;
             }
 
             if (!isDragging) {
@@ -299,23 +400,66 @@ public class GUIDelegate implements PropertyChangeListener {
 
         /**
          * Handles mouse dragged events on the canvas.
-         * Responsible for dragging the selected shape across the canvas.
+         * Responsible for dragging the selected shapes across the canvas,
+         * stretching the marquee, or panning the view. Shapes move by whole
+         * drawing units, and the part of the mouse movement they could not
+         * follow is carried to the next event. A selection of several shapes is
+         * moved with a single model operation per event.
          *
          * @param e The MouseEvent object containing details about the mouse event.
          */
         @Override
         public void mouseDragged(MouseEvent e) {
-            if (isDragging && selectedShape != null) {
-                int deltaX = e.getX() - prevX;
-                int deltaY = e.getY() - prevY;
-                selectedShape.move(deltaX, deltaY);
-                prevX = e.getX();
-                prevY = e.getY();
-                model.notifyShapeChanged(selectedShape);
-                drawingCanvas.repaint();
+            mouseX = e.getX();
+            mouseY = e.getY();
+            if (isPanning) {
+                drawingCanvas.panBy(e.getX() - panX, e.getY() - panY);
+                panX = e.getX();
+                panY = e.getY();
+            } else if (marqueeStart != null) {
+                drawingCanvas.setMarquee(marquee(e));
+            } else if (isDragging && !selectedShapes.isEmpty()) {
+                Point2D point = drawingCanvas.toDrawing(e.getX(), e.getY());
+                int deltaX = (int) Math.round(point.getX() - prevX);
+                int deltaY = (int) Math.round(point.getY() - prevY);
+                if (deltaX != 0 || deltaY != 0) {
+                    prevX += deltaX;
+                    prevY += deltaY;
+                    if (selectedShapes.size() == 1) {
+                        model.moveShape(selectedShapes.get(0), deltaX, deltaY);
+                    } else {
+                        model.moveShapes(selectedShapes, deltaX, deltaY);
+                    }
+                }
             }
         }
 
+        /**
+         * Returns the area between the point the marquee was started from and
+         * the mouse.
+         *
+         * @param e The MouseEvent giving the current mouse position.
+         * @return The area of the marquee, in drawing coordinates.
+         */
+        private Rectangle2D marquee(MouseEvent e) {
+            Point2D point = drawingCanvas.toDrawing(e.getX(), e.getY());
+            Rectangle2D area = new Rectangle2D.Double(marqueeStart.getX(), marqueeStart.getY(), 0, 0);
+            area.add(point);
+            return area;
+        }
+
+        /**
+         * Handles mouse wheel events on the canvas by zooming the view about the
+         * mouse position.
+         *
+         * @param e The MouseWheelEvent object containing details about the event.
+         */
+        @Override
+        public void mouseWheelMoved(MouseWheelEvent e) {
+            drawingCanvas.zoomAt(Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation()), e.getX(), e.getY());
+            updateHover();
+        }
+
         /**
          * Handles mouse released events on the canvas.
          * Finalizes the position of a shape after being dragged and adds new shapes.
@@ -324,9 +468,21 @@ public class GUIDelegate implements PropertyChangeListener {
          */
         @Override
         public void mouseReleased(MouseEvent e) {
+            if (isPanning) {
+                isPanning = false;
+                drawingCanvas.endGesture();
+                return;
+            }
+            if (marqueeStart != null) {
+                select(model.getShapesTouching(marquee(e)));
+                drawingCanvas.setMarquee(null);
+                marqueeStart = null;
+                return;
+            }
             if (!isDragging) {
-                endPointX = e.getX();
-                endPointY = e.getY();
+                Point2D point = drawingCanvas.toDrawing(e.getX(), e.getY());
+                endPointX = (int) Math.floor(point.getX());
+                endPointY = (int) Math.floor(point.getY());
 
                 int width = Math.abs(endPointX - startPointX);
                 int height = Math.abs(endPointY - startPointY);
@@ -373,7 +529,13 @@ public class GUIDelegate implements PropertyChangeListener {
                 model.addShape(currentDrawingShape);
             }
 
+            if (isDragging) {
+                drawingCanvas.endGesture();
+                // the moves of one drag are undone together, but not with the next drag
+                model.endUndoStep();
+            }
             isDragging = false;
+            drawingCanvas.setLiveShape(null);
         }
     }
 
@@ -403,6 +565,7 @@ public class GUIDelegate implements PropertyChangeListener {
             public void actionPerformed(ActionEvent e) {
                 String selectedShape = (String) shapeSelector.getSelectedItem();
                 shapeSelector.setFont(new Font("Segoe UI", Font.PLAIN, 11));
+                selecting = "select".equals(selectedShape);
                 switch (selectedShape) {
                     case "line":
                         selectedShape = null;
@@ -458,9 +621,9 @@ public class GUIDelegate implements PropertyChangeListener {
         rotateButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                if (GUIDelegate.this.selectedShape != null) {
-                    GUIDelegate.this.selectedShape.rotate(30);
-                    drawingCanvas.repaint();
+                if (!selectedShapes.isEmpty()) {
+                    drawingCanvas.interacted();
+                    model.rotateShapes(selectedShapes, 30);
                 }
             }
         });
@@ -472,9 +635,9 @@ public class GUIDelegate implements PropertyChangeListener {
         rotateButtonLeft.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                if (GUIDelegate.this.selectedShape != null) {
-                    GUIDelegate.this.selectedShape.rotate(-30);
-                    drawingCanvas.repaint();
+                if (!selectedShapes.isEmpty()) {
+                    drawingCanvas.interacted();
+                    model.rotateShapes(selectedShapes, -30);
                 }
             }
         });
@@ -486,9 +649,9 @@ public class GUIDelegate implements PropertyChangeListener {
         scaleUpButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                if (selectedShape != null) {
-                    selectedShape.resize(1.1);
-                    drawingCanvas.repaint();
+                if (!selectedShapes.isEmpty()) {
+                    drawingCanvas.interacted();
+                    model.resizeShapes(selectedShapes, 1.1);
                 }
             }
         });
@@ -500,9 +663,9 @@ public class GUIDelegate implements PropertyChangeListener {
         scaleDownButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                if (selectedShape != null) {
-                    selectedShape.resize(0.9);
-                    drawingCanvas.repaint();
+                if (!selectedShapes.isEmpty()) {
+                    drawingCanvas.interacted();
+                    model.resizeShapes(selectedShapes, 0.9);
                 }
             }
         });
@@ -525,8 +688,8 @@ public class GUIDelegate implements PropertyChangeListener {
         borderWidth.setPreferredSize(new Dimension(45, 34));
         borderWidth.addChangeListener(e -> {
             int newWidth = (Integer) borderWidth.getValue();
-            if (selectedShape != null) {
-                model.changeShapeBorderWidth(selectedShape, newWidth);
+            if (!selectedShapes.isEmpty()) {
+                model.changeShapesBorderWidth(selectedShapes, newWidth);
             } else {
                 selectedBorderWidth = newWidth;
             }
@@ -554,8 +717,8 @@ public class GUIDelegate implements PropertyChangeListener {
             public void actionPerformed(ActionEvent e) {
                 Color newColor = JColorChooser.showDialog(mainFrame, "Choose Fill Color", selectedFillColor);
                 if (newColor != null) {
-                    if (selectedShape != null) {
-                        model.changeShapeFillColor(selectedShape, newColor);
+                    if (!selectedShapes.isEmpty()) {
+                        model.changeShapesFillColor(selectedShapes, newColor);
                     } else {
                         selectedFillColor = newColor;
                     }
@@ -574,8 +737,8 @@ public class GUIDelegate implements PropertyChangeListener {
             public void actionPerformed(ActionEvent e) {
                 Color newColor = JColorChooser.showDialog(mainFrame, "Choose Border Color", selectedBorderColor);
                 if (newColor != null) {
-                    if (selectedShape != null) {
-                        model.changeShapeBorderColor(selectedShape, newColor);
+                    if (!selectedShapes.isEmpty()) {
+                        model.changeShapesBorderColor(selectedShapes, newColor);
                     } else {
                         selectedBorderColor = newColor;
                     }
@@ -618,9 +781,11 @@ public class GUIDelegate implements PropertyChangeListener {
     private void setupComponents() {
         drawingCanvas.addMouseMotionListener(handler);
         drawingCanvas.addMouseListener(handler);
+        drawingCanvas.addMouseWheelListener(handler);
         drawingCanvas.setFocusable(true);
         drawingCanvas.requestFocusInWindow();
         mainFrame.add(drawingCanvas, BorderLayout.CENTER);
+        mainFrame.add(minimap, BorderLayout.EAST);
         setUpMenu();
         setupToolbar();
         mainFrame.getContentPane().setBackground(new Color(230, 230, 230));
@@ -639,10 +804,83 @@ public class GUIDelegate implements PropertyChangeListener {
         button.setBackground(new Color(100, 100, 100));
     }
 
+    /**
+     * Replaces the selection and outlines it on the canvas. The single
+     * selected shape, used by the server actions, is only set when exactly one
+     * shape is selected.
+     *
+     * @param shapes The shapes to select, which may be empty.
+     */
+    private void select(List<Shape> shapes) {
+        selectedShapes = new ArrayList<>(shapes);
+        selectedShape = selectedShapes.size() == 1 ? selectedShapes.get(0) : null;
+        drawingCanvas.setSelection(selectedShapes);
+    }
+
+    /**
+     * Handles the typed change events of the model. Changes confined to some
+     * shapes only redraw the region of the canvas those shapes covered before
+     * and after, and changes to the shape being dragged leave the cached layer
+     * untouched. The minimap renders the same regions again, removed shapes
+     * leave the selection, and the hover highlight is moved to whichever shape
+     * is now under the mouse.
+     *
+     * @param event The change made to the model.
+     */
+    private void modelChanged(ModelEvent event) {
+        if (event instanceof ModelEvent.Cleared) {
+            select(Collections.emptyList());
+        } else {
+            if (!selectedShapes.isEmpty()) {
+                List<Shape> remaining = new ArrayList<>(selectedShapes);
+                if (deselectRemoved(event, remaining)) {
+                    select(remaining);
+                }
+            }
+            Rectangle2D dirtyRegion = event.getDirtyRegion();
+            if (dirtyRegion == null) {
+                drawingCanvas.invalidateAll();
+                minimap.invalidateAll();
+            } else if (!dirtyRegion.isEmpty()) {
+                if (event instanceof ModelEvent.ShapeChanged
+                        && ((ModelEvent.ShapeChanged) event).getShape() == drawingCanvas.getLiveShape()) {
+                    drawingCanvas.repaintDrawing(dirtyRegion);
+                } else {
+                    drawingCanvas.invalidate(dirtyRegion);
+                }
+                minimap.invalidate(dirtyRegion);
+            }
+        }
+        handler.updateHover();
+    }
+
+    /**
+     * Takes the shapes a change removed from the model out of a selection,
+     * looking inside batches.
+     *
+     * @param event     The change made to the model.
+     * @param selection The selection to update.
+     * @return true if any shape was taken out of the selection.
+     */
+    private boolean deselectRemoved(ModelEvent event, List<Shape> selection) {
+        if (event instanceof ModelEvent.ShapeRemoved) {
+            return selection.remove(((ModelEvent.ShapeRemoved) event).getShape());
+        }
+        boolean changed = false;
+        if (event instanceof ModelEvent.BatchCommitted) {
+            for (ModelEvent batched : ((ModelEvent.BatchCommitted) event).getEvents()) {
+                changed |= deselectRemoved(batched, selection);
+            }
+        }
+        return changed;
+    }
+
     /**
      * Handles property changes in the observed model.
      * This method is called in response to model updates and is responsible for
-     * updating the GUI based on the changes.
+     * updating the GUI based on the changes. Changes to particular shapes are
+     * handled by modelChanged, so only changes to the whole shape list redraw
+     * the whole canvas and minimap here.
      *
      * @param event The property change event that contains information about
      *              the changed property and its new value.
@@ -650,15 +888,15 @@ public class GUIDelegate implements PropertyChangeListener {
     @Override
     public void propertyChange(final PropertyChangeEvent event) {
         if ("selectedShape".equals(event.getPropertyName())) {
-            this.selectedShape = (Shape) event.getNewValue();
+            Shape shape = (Shape) event.getNewValue();
+            select(shape == null ? Collections.emptyList() : Collections.singletonList(shape));
         }
-        drawingCanvas.repaint();
-        if (event.getSource() == model && event.getPropertyName().equals("shapes")) {
-            SwingUtilities.invokeLater(new Runnable() {
-                public void run() {
-                    drawingCanvas.repaint();
-                }
-            });
+        if ("shapes".equals(event.getPropertyName())) {
+            drawingCanvas.invalidateAll();
+            minimap.invalidateAll();
+            handler.updateHover();
+        } else if (!"dirtyRegion".equals(event.getPropertyName())) {
+            drawingCanvas.repaint();
         }
     }
 
@@ -672,7 +910,7 @@ public class GUIDelegate implements PropertyChangeListener {
                 JsonObject response = client.addDrawing(shape);
                 String ID = response.getJsonObject("data").getString("id");
 
-                shape.setId(ID);
+                model.setShapeId(shape, ID);
 
                 if ("ok".equals(response.getString("result"))) {
                     JOptionPane.showMessageDialog(mainFrame,
@@ -714,7 +952,9 @@ public class GUIDelegate implements PropertyChangeListener {
     }
 
     /**
-     * Displays a list of shapes retrieved from the server.
+     * Displays a list of shapes retrieved from the server. They are added in
+     * a single batch, so the canvas is notified once and the import is undone
+     * in one step.
      *
      * @param shapes The list of shapes to display.
      */
@@ -723,19 +963,26 @@ public class GUIDelegate implements PropertyChangeListener {
             JOptionPane.showMessageDialog(mainFrame, "No shapes received or empty list of shapes.");
             return;
         }
-        for (Shapes.Shape shape : shapes) {
-            model.addShapeFromServer(shape);
-        }
+        model.runBatch(() -> {
+            for (Shapes.Shape shape : shapes) {
+                model.addShapeFromServer(shape);
+            }
+        });
         drawingCanvas.repaint();
     }
 
     /**
-     * Deletes the currently selected shape from the model and updates the display.
+     * Deletes the currently selected shapes from the model and updates the display.
      */
     private void deleteSelectedShape() {
-        if (selectedShape != null) {
-            model.removeShape(selectedShape);
-            selectedShape = null;
+        if (!selectedShapes.isEmpty()) {
+            List<Shape> removed = selectedShapes;
+            model.runBatch(() -> {
+                for (Shape shape : removed) {
+                    model.removeShape(shape);
+                }
+            });
+            select(Collections.emptyList());
             drawingCanvas.repaint();
         } else {
             JOptionPane.showMessageDialog(mainFrame, "No shape selected for deletion.");
@@ -744,7 +991,12 @@ public class GUIDelegate implements PropertyChangeListener {
 
     /**
      * Saves the current drawing to a file.
-     * Prompts the user to specify the file location and format.
+     * Prompts the user to specify the file location and format, then the size
+     * of the image, which covers every shape in the drawing. The shapes are
+     * snapshotted on the event dispatch thread, then rendered and streamed to
+     * the file strip by strip on a background thread, with a progress monitor
+     * showing how much has been written. Cancelling the progress monitor stops
+     * the export after the strip being written and deletes the file.
      */
     private void saveDrawingToFile() {
         JFileChooser fileChooser = new JFileChooser();
@@ -760,28 +1012,145 @@ public class GUIDelegate implements PropertyChangeListener {
                 fileToSave = new File(fileToSave + ".png");
             }
 
-            try {
-                int width = 800;
-                int height = 600;
-                BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-                Graphics2D g2d = image.createGraphics();
-
-                for (Shape shape : model.getShapes()) {
-                    shape.paint(g2d);
+            final File outputFile = fileToSave;
+            final List<ShapeSnapshot> snapshots = new ArrayList<>();
+            Rectangle2D extent = null;
+            for (Shape shape : model.getShapes()) {
+                snapshots.add(shape.snapshot());
+                if (extent == null) {
+                    extent = (Rectangle2D) shape.getBounds().clone();
+                } else {
+                    extent.add(shape.getBounds());
+                }
+            }
+            if (extent == null) {
+                extent = drawingCanvas.getVisibleRegion();
+            }
+            final Rectangle2D area = new Rectangle2D.Double(extent.getX(), extent.getY(),
+                    Math.max(extent.getWidth(), 1), Math.max(extent.getHeight(), 1));
+            Dimension size = promptExportSize(area);
+            if (size == null) {
+                return;
+            }
+            final int width = size.width;
+            final int height = size.height;
+
+            final ProgressMonitor progressMonitor = new ProgressMonitor(mainFrame, "Saving image", null, 0, 100);
+            SwingWorker<Void, Void> exportWorker = new SwingWorker<Void, Void>() {
+                @Override
+                protected Void doInBackground() throws IOException {
+                    new StreamingPngExporter().export(snapshots, area, width, height, outputFile.toPath(),
+                            fraction -> setProgress((int) Math.round(fraction * 100)), this::isCancelled);
+                    return null;
                 }
-                g2d.dispose();
 
-                if (!ImageIO.write(image, "png", fileToSave)) {
-                    throw new IOException("Failed to write the image file.");
+                @Override
+                protected void done() {
+                    progressMonitor.close();
+                    if (isCancelled()) {
+                        return;
+                    }
+                    try {
+                        get();
+                        JOptionPane.showMessageDialog(mainFrame, "Image saved successfully", "Success",
+                                JOptionPane.INFORMATION_MESSAGE);
+                    } catch (InterruptedException | ExecutionException e) {
+                        Throwable cause = e.getCause() != null ? e.getCause() : e;
+                        cause.printStackTrace();
+                        JOptionPane.showMessageDialog(mainFrame, "Error saving image: " + cause.getMessage(),
+                                "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            };
+            exportWorker.addPropertyChangeListener(event -> {
+                if ("progress".equals(event.getPropertyName())) {
+                    if (progressMonitor.isCanceled()) {
+                        exportWorker.cancel(false);
+                    } else {
+                        progressMonitor.setProgress((Integer) event.getNewValue());
+                    }
                 }
+            });
+            exportWorker.execute();
+        }
+    }
 
-                JOptionPane.showMessageDialog(mainFrame, "Image saved successfully", "Success",
-                        JOptionPane.INFORMATION_MESSAGE);
-            } catch (IOException e) {
-                e.printStackTrace();
-                JOptionPane.showMessageDialog(mainFrame, "Error saving image: " + e.getMessage(), "Error",
-                        JOptionPane.ERROR_MESSAGE);
+    /**
+     * Asks the user how large to make the image of an area of the drawing,
+     * either as a scale factor or as a width and height in pixels. The width
+     * and height follow the scale factor, and changing either of them changes
+     * the scale factor, so the image keeps the proportions of the area. The
+     * scale factor starts at one, one pixel per unit of the drawing.
+     *
+     * @param area The area of the drawing to export.
+     * @return The width and height of the image, or null if the user cancelled.
+     */
+    private Dimension promptExportSize(Rectangle2D area) {
+        JSpinner scale = new JSpinner(new SpinnerNumberModel(1.0, 0.01, 100.0, 0.25));
+        JSpinner width = new JSpinner(new SpinnerNumberModel(exportPixels(area.getWidth(), 1), 1,
+                MAX_EXPORT_SIZE, 1));
+        JSpinner height = new JSpinner(new SpinnerNumberModel(exportPixels(area.getHeight(), 1), 1,
+                MAX_EXPORT_SIZE, 1));
+        boolean[] updating = new boolean[1];
+        scale.addChangeListener(e -> {
+            if (!updating[0]) {
+                updating[0] = true;
+                double factor = (Double) scale.getValue();
+                width.setValue(exportPixels(area.getWidth(), factor));
+                height.setValue(exportPixels(area.getHeight(), factor));
+                updating[0] = false;
+            }
+        });
+        width.addChangeListener(e -> {
+            if (!updating[0]) {
+                updating[0] = true;
+                double factor = (Integer) width.getValue() / area.getWidth();
+                scale.setValue(factor);
+                height.setValue(exportPixels(area.getHeight(), factor));
+                updating[0] = false;
+            }
+        });
+        height.addChangeListener(e -> {
+            if (!updating[0]) {
+                updating[0] = true;
+                double factor = (Integer) height.getValue() / area.getHeight();
+                scale.setValue(factor);
+                width.setValue(exportPixels(area.getWidth(), factor));
+                updating[0] = false;
+            }
+        });
+
+        JPanel panel = new JPanel(new GridLayout(3, 2, 5, 5));
+        panel.add(new JLabel("Scale factor:"));
+        panel.add(scale);
+        panel.add(new JLabel("Width (pixels):"));
+        panel.add(width);
+        panel.add(new JLabel("Height (pixels):"));
+        panel.add(height);
+        int choice = JOptionPane.showConfirmDialog(mainFrame, panel, "Image size", JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE);
+        if (choice != JOptionPane.OK_OPTION) {
+            return null;
+        }
+        for (JSpinner spinner : new JSpinner[] { scale, width, height }) {
+            try {
+                spinner.commitEdit();
+            } catch (ParseException e) {
+                // keep the last valid value
             }
         }
+        return new Dimension((Integer) width.getValue(), (Integer) height.getValue());
+    }
+
+    /**
+     * Returns the number of pixels a length of the drawing covers in an
+     * exported image, kept within the sizes an image can have.
+     *
+     * @param length The length in the drawing.
+     * @param factor The scale factor of the image.
+     * @return The number of pixels.
+     */
+    private static int exportPixels(double length, double factor) {
+        return (int) Math.max(1, Math.min(MAX_EXPORT_SIZE, Math.ceil(length * factor)));
     }
-}
\ No newline at end of file
+}
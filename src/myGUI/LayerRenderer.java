@@ -0,0 +1,406 @@
+package myGUI;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import javax.swing.SwingUtilities;
+import Export.TiledRasterizer;
+import Shapes.ShapeSnapshot;
+
+/**
+ * Rasterizes the cached layer of a DrawingCanvas on a dedicated thread.
+ * Frames are rendered from immutable shape snapshots into a back buffer that
+ * only the render thread touches. A render thread that has been stopped may
+ * still be finishing its frame when the next one starts, so frames are
+ * rendered one at a time under a lock, which also hands the buffers from one
+ * thread to the next. The layer is divided into square tiles, and
+ * the tiles a frame covers are rasterized in parallel on the common fork-join
+ * pool. Finished frames are swapped with the front
+ * buffer, which the EDT only ever blits, so painting never waits for shapes to
+ * be rasterized. A frame that is still being rendered when a newer one is
+ * requested is abandoned in favour of it.
+ */
+class LayerRenderer {
+    /**
+     * The width and height, in layer pixels, of the tiles the layer is
+     * rendered in.
+     */
+    static final int TILE_SIZE = 128;
+
+    /**
+     * How long, in milliseconds, stopping the renderer waits for the render
+     * thread to give up its frame before returning without it.
+     */
+    private static final long STOP_TIMEOUT = 100;
+
+    /**
+     * Receives notice, on the EDT, that a region of the front buffer has
+     * changed.
+     */
+    interface Listener {
+        /**
+         * Called when rendered pixels have been made visible in the front
+         * buffer.
+         *
+         * @param frame    The number of the frame that was presented.
+         * @param region   The region of the view that changed.
+         * @param complete true if the frame has been fully rendered, false if
+         *                 only part of it has been drawn so far.
+         */
+        void framePresented(long frame, Rectangle2D region, boolean complete);
+    }
+
+    /**
+     * A request to redraw a region of the layer.
+     */
+    private static final class Frame {
+        private final long number;
+        private final List<ShapeSnapshot> shapes;
+        private final Rectangle2D region;
+        private final int width;
+        private final int height;
+        private final double scale;
+        private final AffineTransform view;
+        private final RenderingHints hints;
+
+        /**
+         * Constructs a Frame.
+         *
+         * @param number The number identifying the frame.
+         * @param shapes The shapes intersecting the region, in painting order.
+         * @param region The region of the view to redraw.
+         * @param width  The width of the layer, in pixels.
+         * @param height The height of the layer, in pixels.
+         * @param scale  The scale from view coordinates to layer pixels.
+         * @param view   The transform from drawing to view coordinates.
+         * @param hints  The rendering hints to render with.
+         */
+        Frame(long number, List<ShapeSnapshot> shapes, Rectangle2D region, int width, int height, double scale,
+                AffineTransform view, RenderingHints hints) {
+            this.number = number;
+            this.shapes = shapes;
+            this.region = region;
+            this.width = width;
+            this.height = height;
+            this.scale = scale;
+            this.view = view;
+            this.hints = hints;
+        }
+    }
+
+    private final Listener listener;
+    private final TiledRasterizer rasterizer = new TiledRasterizer(ForkJoinPool.commonPool(), TILE_SIZE);
+    private final Object frontLock = new Object();
+    private final Object renderLock = new Object();
+    private volatile long presentIntervalNanos;
+    private volatile Thread thread;
+    private volatile Frame pending;
+    private BufferedImage front;
+    private BufferedImage back;
+
+    /**
+     * Constructs a LayerRenderer.
+     *
+     * @param listener        Notified when the front buffer changes.
+     * @param presentInterval How often, in milliseconds, a frame that is still
+     *                        being rendered has its partial result presented.
+     */
+    LayerRenderer(Listener listener, int presentInterval) {
+        this.listener = listener;
+        setPresentInterval(presentInterval);
+    }
+
+    /**
+     * Sets how often a frame that is still being rendered has its partial
+     * result presented.
+     *
+     * @param millis The interval, in milliseconds.
+     */
+    void setPresentInterval(int millis) {
+        presentIntervalNanos = millis * 1_000_000L;
+    }
+
+    /**
+     * Requests that a region of the layer be redrawn, replacing any frame
+     * that has not been finished yet. The region must therefore cover every
+     * region requested since the last frame that was completed. The render
+     * thread is started if it is not running.
+     *
+     * @param number The number identifying the frame.
+     * @param shapes The shapes intersecting the region, in painting order.
+     * @param region The region of the view to redraw.
+     * @param width  The width of the layer, in pixels.
+     * @param height The height of the layer, in pixels.
+     * @param scale  The scale from view coordinates to layer pixels.
+     * @param view   The transform from drawing to view coordinates.
+     * @param hints  The rendering hints to render with.
+     */
+    synchronized void request(long number, List<ShapeSnapshot> shapes, Rectangle2D region, int width, int height,
+            double scale, AffineTransform view, RenderingHints hints) {
+        pending = new Frame(number, shapes, region, width, height, scale, view, hints);
+        if (thread == null) {
+            thread = new Thread(this::run, "Canvas renderer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        notifyAll();
+    }
+
+    /**
+     * Stops the render thread and waits a short while for it to finish. The
+     * frame it is rendering is abandoned, so tiles not yet started are
+     * skipped. The thread is started again by the next request. As this is
+     * called on the EDT, it never waits longer than STOP_TIMEOUT for a slow
+     * frame; a new thread waits for the old one to finish its frame instead.
+     */
+    void stop() {
+        Thread stopped;
+        synchronized (this) {
+            stopped = thread;
+            thread = null;
+            notifyAll();
+        }
+        if (stopped != null) {
+            try {
+                stopped.join(STOP_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Draws the front buffer onto a graphics context, scaled to a given size.
+     * Nothing is drawn if no frame has been presented yet.
+     *
+     * @param g2d    The graphics context to draw on.
+     * @param width  The width to draw the buffer at.
+     * @param height The height to draw the buffer at.
+     */
+    void drawFront(Graphics2D g2d, int width, int height) {
+        synchronized (frontLock) {
+            if (front != null) {
+                g2d.drawImage(front, 0, 0, width, height, null);
+            }
+        }
+    }
+
+    /**
+     * Renders requested frames until the renderer is stopped or interrupted.
+     * A frame that fails to render is reported and dropped, and the renderer
+     * goes on to the next one. However the thread ends, it is forgotten, so
+     * that the next request starts a new one.
+     */
+    private void run() {
+        Thread current = Thread.currentThread();
+        try {
+            while (!current.isInterrupted()) {
+                Frame frame;
+                synchronized (this) {
+                    while (pending == null && thread == current) {
+                        wait();
+                    }
+                    if (thread != current) {
+                        return;
+                    }
+                    frame = pending;
+                    pending = null;
+                }
+                try {
+                    render(frame);
+                } catch (RuntimeException e) {
+                    System.err.println("Dropped frame " + frame.number + ": " + e);
+                    e.printStackTrace();
+                }
+            }
+        } catch (InterruptedException e) {
+            // interrupted while waiting for a frame, so stop
+        } finally {
+            synchronized (this) {
+                if (thread == current) {
+                    thread = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Renders a frame while holding the render lock, so that no other render
+     * thread touches the buffers at the same time.
+     *
+     * @param frame The frame to render.
+     * @throws IllegalStateException If a tile failed to render.
+     */
+    private void render(Frame frame) {
+        synchronized (renderLock) {
+            renderFrame(frame);
+        }
+    }
+
+    /**
+     * Clears the frame's region of the back buffer and renders its shapes
+     * tile by tile on the rasterizer's pool, presenting partial results at the
+     * present interval. Once every tile has been rendered the buffers are
+     * swapped. The frame is abandoned as soon as a newer one is requested or
+     * the renderer is stopped, in which case the tiles not yet started are
+     * skipped, and the tiles already started are waited for, so that none of
+     * them is still painting into the back buffer once this returns.
+     *
+     * @param frame The frame to render.
+     * @throws IllegalStateException If a tile failed to render.
+     */
+    private void renderFrame(Frame frame) {
+        if (back == null || back.getWidth() != frame.width || back.getHeight() != frame.height) {
+            back = new BufferedImage(frame.width, frame.height, BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+        Rectangle pixels = toPixels(frame);
+        if (pixels.isEmpty()) {
+            swap(frame, pixels);
+            return;
+        }
+        Graphics2D g2d = back.createGraphics();
+        g2d.setComposite(AlphaComposite.Clear);
+        g2d.fill(pixels);
+        g2d.dispose();
+
+        AffineTransform transform = AffineTransform.getTranslateInstance(-pixels.x, -pixels.y);
+        transform.scale(frame.scale, frame.scale);
+        transform.concatenate(frame.view);
+        Thread current = Thread.currentThread();
+        BooleanSupplier abandoned = () -> pending != null || thread != current;
+        ForkJoinTask<Void> tiles = rasterizer.submit(frame.shapes, transform,
+                back.getSubimage(pixels.x, pixels.y, pixels.width, pixels.height), frame.hints, abandoned);
+        while (true) {
+            try {
+                tiles.get(presentIntervalNanos, TimeUnit.NANOSECONDS);
+                break;
+            } catch (TimeoutException e) {
+                if (!abandoned.getAsBoolean()) {
+                    presentPartial(frame, pixels);
+                }
+            } catch (InterruptedException e) {
+                tiles.quietlyJoin();
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Rendering a frame failed", e.getCause());
+            }
+        }
+        if (!abandoned.getAsBoolean()) {
+            swap(frame, pixels);
+        }
+    }
+
+    /**
+     * Copies the part of a frame rendered so far into the front buffer.
+     *
+     * @param frame  The frame being rendered.
+     * @param pixels The frame's region, in layer pixels.
+     */
+    private void presentPartial(Frame frame, Rectangle pixels) {
+        synchronized (frontLock) {
+            if (front == null || front.getWidth() != back.getWidth() || front.getHeight() != back.getHeight()) {
+                front = copyOf(back);
+            } else {
+                copy(back, front, pixels);
+            }
+        }
+        SwingUtilities.invokeLater(() -> listener.framePresented(frame.number, frame.region, false));
+    }
+
+    /**
+     * Makes the back buffer the front buffer, then brings the new back buffer
+     * up to date with the region that was just rendered.
+     *
+     * @param frame  The frame that was rendered.
+     * @param pixels The frame's region, in layer pixels.
+     */
+    private void swap(Frame frame, Rectangle pixels) {
+        BufferedImage previous;
+        synchronized (frontLock) {
+            previous = front;
+            front = back;
+        }
+        if (previous == null || previous.getWidth() != front.getWidth()
+                || previous.getHeight() != front.getHeight()) {
+            back = copyOf(front);
+        } else {
+            back = previous;
+            copy(front, back, pixels);
+        }
+        SwingUtilities.invokeLater(() -> listener.framePresented(frame.number, frame.region, true));
+    }
+
+    /**
+     * Grows a region of the view to the smallest region made up of whole
+     * tiles of the layer, so that rendering it re-rasterizes complete tiles.
+     *
+     * @param region The region of the view.
+     * @param scale  The scale from view coordinates to layer pixels.
+     * @return The region covered by the tiles that the region touches.
+     */
+    static Rectangle2D toTiles(Rectangle2D region, double scale) {
+        int firstColumn = (int) Math.floor(region.getMinX() * scale / TILE_SIZE);
+        int firstRow = (int) Math.floor(region.getMinY() * scale / TILE_SIZE);
+        int lastColumn = (int) Math.ceil(region.getMaxX() * scale / TILE_SIZE);
+        int lastRow = (int) Math.ceil(region.getMaxY() * scale / TILE_SIZE);
+        double tile = TILE_SIZE / scale;
+        return new Rectangle2D.Double(firstColumn * tile, firstRow * tile, (lastColumn - firstColumn) * tile,
+                (lastRow - firstRow) * tile);
+    }
+
+    /**
+     * Converts the tile-aligned region of a frame to the layer pixels it
+     * covers.
+     *
+     * @param frame The frame.
+     * @return The covered pixels, clipped to the layer.
+     */
+    private static Rectangle toPixels(Frame frame) {
+        Rectangle2D region = frame.region;
+        int x = (int) Math.round(region.getMinX() * frame.scale);
+        int y = (int) Math.round(region.getMinY() * frame.scale);
+        int maxX = (int) Math.round(region.getMaxX() * frame.scale);
+        int maxY = (int) Math.round(region.getMaxY() * frame.scale);
+        return new Rectangle(x, y, maxX - x, maxY - y).intersection(new Rectangle(frame.width, frame.height));
+    }
+
+    /**
+     * Copies a rectangle of pixels between two images of the same size and
+     * type.
+     *
+     * @param from   The image to copy from.
+     * @param to     The image to copy to.
+     * @param pixels The rectangle to copy.
+     */
+    private static void copy(BufferedImage from, BufferedImage to, Rectangle pixels) {
+        if (pixels.isEmpty()) {
+            return;
+        }
+        to.getRaster().setDataElements(pixels.x, pixels.y,
+                from.getRaster().createChild(pixels.x, pixels.y, pixels.width, pixels.height, 0, 0, null));
+    }
+
+    /**
+     * Creates a copy of an image.
+     *
+     * @param image The image to copy.
+     * @return A new image with the same size, type and pixels.
+     */
+    private static BufferedImage copyOf(BufferedImage image) {
+        BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
+        copy(image, copy, new Rectangle(image.getWidth(), image.getHeight()));
+        return copy;
+    }
+}
@@ -0,0 +1,83 @@
+package myGUI;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import Shapes.Rectangle;
+import Shapes.ShapeSnapshot;
+
+/**
+ * This class contains unit tests for the LayerRenderer class.
+ * It tests that a renderer stopped in the middle of a frame can be started
+ * again without the old frame's tiles painting over the new one.
+ */
+public class LayerRendererTest {
+
+    private static final int SIZE = 512;
+
+    /**
+     * Creates the snapshot of a filled square.
+     *
+     * @param x    The x-coordinate of the square.
+     * @param y    The y-coordinate of the square.
+     * @param size The width and height of the square.
+     * @param fill The fill colour of the square.
+     * @return The snapshot of the square.
+     */
+    private static ShapeSnapshot square(int x, int y, int size, Color fill) {
+        return new Rectangle(x, y, size, size, fill, 1, fill).snapshot();
+    }
+
+    /**
+     * Tests that after stopping the renderer in the middle of a slow frame, a
+     * frame requested straight afterwards is presented with only its own
+     * pixels.
+     *
+     * @throws InterruptedException If the test is interrupted while waiting.
+     */
+    @Test
+    public void testStopThenRequest_PresentsOnlyNewFrame() throws InterruptedException {
+        CountDownLatch presented = new CountDownLatch(1);
+        LayerRenderer renderer = new LayerRenderer((frame, region, complete) -> {
+            if (frame == 2 && complete) {
+                presented.countDown();
+            }
+        }, 1000);
+        Rectangle2D region = new Rectangle2D.Double(0, 0, SIZE, SIZE);
+        List<ShapeSnapshot> slow = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            slow.add(square((i * 37) % SIZE, (i * 53) % SIZE, 40, Color.RED));
+        }
+        renderer.request(1, slow, region, SIZE, SIZE, 1, new AffineTransform(), null);
+        renderer.stop();
+        renderer.request(2, Collections.singletonList(square(-10, -10, SIZE + 20, Color.BLUE)), region, SIZE,
+                SIZE, 1, new AffineTransform(), null);
+        assertTrue("New frame should be presented", presented.await(30, TimeUnit.SECONDS));
+        renderer.stop();
+
+        BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = image.createGraphics();
+        renderer.drawFront(g2d, SIZE, SIZE);
+        g2d.dispose();
+        int stale = 0;
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                if (image.getRGB(x, y) != Color.BLUE.getRGB()) {
+                    stale++;
+                }
+            }
+        }
+        assertEquals("No pixel of the stopped frame should be left", 0, stale);
+    }
+}
@@ -0,0 +1,64 @@
+package myGUI;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import Shapes.ShapeSnapshot;
+
+/**
+ * The snapshots gathered for a frame of the canvas's cached layer, in painting
+ * order. Shapes too small to see are drawn as a dot filling one layer pixel,
+ * and each pixel keeps only the dot of the last shape collapsed into it, which
+ * is the topmost, so a zoomed-out view shows the colour on top. The dot is
+ * painted in that shape's place in the order, above any larger shape painted
+ * between the two.
+ */
+final class LayerSnapshots {
+    private final List<ShapeSnapshot> snapshots = new ArrayList<>();
+    private final Map<Integer, Integer> dots = new HashMap<>();
+    private int replaced;
+
+    /**
+     * Adds the snapshot of a shape drawn at its full level of detail.
+     *
+     * @param snapshot The snapshot to add.
+     */
+    void add(ShapeSnapshot snapshot) {
+        snapshots.add(snapshot);
+    }
+
+    /**
+     * Adds the dot of a shape collapsed into a layer pixel, replacing the dot
+     * of any shape below it that was collapsed into the same pixel.
+     *
+     * @param pixel The index of the layer pixel, by row and column.
+     * @param dot   The snapshot of the dot.
+     */
+    void addDot(int pixel, ShapeSnapshot dot) {
+        Integer earlier = dots.put(pixel, snapshots.size());
+        if (earlier != null) {
+            snapshots.set(earlier, null);
+            replaced++;
+        }
+        snapshots.add(dot);
+    }
+
+    /**
+     * Returns the snapshots to paint, in painting order.
+     *
+     * @return The snapshots.
+     */
+    List<ShapeSnapshot> toList() {
+        if (replaced == 0) {
+            return snapshots;
+        }
+        List<ShapeSnapshot> painted = new ArrayList<>(snapshots.size() - replaced);
+        for (ShapeSnapshot snapshot : snapshots) {
+            if (snapshot != null) {
+                painted.add(snapshot);
+            }
+        }
+        return painted;
+    }
+}
@@ -0,0 +1,84 @@
+package myGUI;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import Shapes.Rectangle;
+import Shapes.ShapeSnapshot;
+
+/**
+ * This class contains unit tests for the LayerSnapshots class.
+ * It tests that shapes collapsed into the same layer pixel show the colour of
+ * the topmost one.
+ */
+public class LayerSnapshotsTest {
+
+    private static final Rectangle2D PIXEL = new Rectangle2D.Double(0, 0, 1, 1);
+
+    /**
+     * Creates the dot of a tiny shape filled with a colour.
+     *
+     * @param fill  The fill colour of the shape.
+     * @param pixel The pixel the dot fills.
+     * @return The snapshot of the dot.
+     */
+    private static ShapeSnapshot dot(Color fill, Rectangle2D pixel) {
+        return new Rectangle(0, 0, 1, 1, Color.BLACK, 1, fill).snapshot().asDot(pixel);
+    }
+
+    /**
+     * Paints snapshots onto a one-pixel image.
+     *
+     * @param snapshots The snapshots, in painting order.
+     * @return The colour of the pixel.
+     */
+    private static Color paint(List<ShapeSnapshot> snapshots) {
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = image.createGraphics();
+        for (ShapeSnapshot snapshot : snapshots) {
+            snapshot.paint(g2d);
+        }
+        g2d.dispose();
+        return new Color(image.getRGB(0, 0), true);
+    }
+
+    /**
+     * Tests that two tiny overlapping shapes of different colours show the
+     * colour of the one painted last.
+     */
+    @Test
+    public void testAddDot_TopmostColourWins() {
+        LayerSnapshots snapshots = new LayerSnapshots();
+        snapshots.addDot(0, dot(Color.RED, PIXEL));
+        snapshots.addDot(0, dot(Color.BLUE, PIXEL));
+        List<ShapeSnapshot> painted = snapshots.toList();
+        assertEquals("Only one dot should be kept for the pixel", 1, painted.size());
+        assertEquals("Pixel should show the topmost shape's colour", Color.BLUE, paint(painted));
+    }
+
+    /**
+     * Tests that a dot replacing an earlier one is painted in its own place
+     * in the order, above a larger shape painted between the two.
+     */
+    @Test
+    public void testAddDot_KeepsPaintingOrder() {
+        LayerSnapshots snapshots = new LayerSnapshots();
+        ShapeSnapshot large = new Rectangle(0, 0, 10, 10, Color.GREEN, 1, Color.GREEN).snapshot();
+        ShapeSnapshot top = dot(Color.BLUE, PIXEL);
+        snapshots.addDot(0, dot(Color.RED, PIXEL));
+        snapshots.add(large);
+        snapshots.addDot(0, top);
+        snapshots.addDot(1, dot(Color.RED, new Rectangle2D.Double(1, 0, 1, 1)));
+        List<ShapeSnapshot> painted = snapshots.toList();
+        assertEquals("Replaced dot should be dropped", 3, painted.size());
+        assertSame("Larger shape should be painted first", large, painted.get(0));
+        assertSame("Topmost dot should be painted above it", top, painted.get(1));
+        assertEquals("Pixel should show the topmost shape's colour", Color.BLUE, paint(painted));
+    }
+}
@@ -0,0 +1,325 @@
+package myGUI;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import Export.TilePyramid;
+import Model.Model;
+import Shapes.Shape;
+import Shapes.ShapeSnapshot;
+
+/**
+ * An overview of the whole drawing, shown next to a DrawingCanvas with the
+ * region the canvas shows outlined. The overview is drawn from a TilePyramid,
+ * so painting it is a blit of a few cached tiles. When the model changes,
+ * only the pyramid tiles covering the changed region are rendered again, on a
+ * background thread, and changes that arrive in quick succession are
+ * gathered into one update. Clicking or dragging on the overview centres the
+ * canvas on that point.
+ */
+public class Minimap extends JPanel {
+    private static final long serialVersionUID = 1L;
+    private static final int TILE_SIZE = 128;
+    private static final int LEVELS = 4;
+    private static final double INITIAL_WORLD_SIZE = 1024;
+    private static final int UPDATE_DELAY = 150;
+    private static final int MARGIN = 4;
+
+    private final Model model;
+    private final DrawingCanvas canvas;
+    private final TilePyramid pyramid = new TilePyramid(TILE_SIZE, LEVELS, INITIAL_WORLD_SIZE);
+    private final ExecutorService renderer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Minimap renderer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Timer updateTimer;
+    private boolean showServerShapes;
+    private Rectangle2D dirtyRegion;
+    private Rectangle2D contentBounds;
+    private boolean contentStale = true;
+
+    /**
+     * Constructs a Minimap for a model and the canvas it is shown on.
+     *
+     * @param model  The model whose shapes are shown.
+     * @param canvas The canvas whose visible region is outlined and moved.
+     */
+    public Minimap(Model model, DrawingCanvas canvas) {
+        this.model = model;
+        this.canvas = canvas;
+        this.updateTimer = new Timer(UPDATE_DELAY, e -> update());
+        this.updateTimer.setRepeats(false);
+        setPreferredSize(new Dimension(200, 180));
+        setBackground(Color.WHITE);
+
+        canvas.addPropertyChangeListener("visibleRegion", event -> repaint());
+        canvas.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                repaint();
+            }
+        });
+        MouseAdapter navigator = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                canvas.beginGesture();
+                navigate(e.getX(), e.getY());
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                navigate(e.getX(), e.getY());
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                canvas.endGesture();
+            }
+        };
+        addMouseListener(navigator);
+        addMouseMotionListener(navigator);
+        invalidateAll();
+    }
+
+    /**
+     * Sets whether the shapes retrieved from the server are shown.
+     *
+     * @param showServerShapes true to show the server shapes, false otherwise.
+     */
+    public void setShowServerShapes(boolean showServerShapes) {
+        this.showServerShapes = showServerShapes;
+        invalidateAll();
+    }
+
+    /**
+     * Marks a region of the drawing as changed. The tiles covering it are
+     * rendered again shortly. A change reaching the edge of the drawing's
+     * extent, such as removing a shape there, has the extent worked out again
+     * from the model before it is next shown.
+     *
+     * @param region The region of the drawing that has changed.
+     */
+    public void invalidate(Rectangle2D region) {
+        if (region.isEmpty()) {
+            return;
+        }
+        if (dirtyRegion == null) {
+            dirtyRegion = (Rectangle2D) region.clone();
+        } else {
+            dirtyRegion.add(region);
+        }
+        if (!contentStale && !isInside(region, contentBounds)) {
+            contentStale = true;
+        }
+        if (!updateTimer.isRunning()) {
+            updateTimer.start();
+        }
+    }
+
+    /**
+     * Discards the whole overview and renders it again from the model.
+     */
+    public void invalidateAll() {
+        pyramid.clear();
+        dirtyRegion = null;
+        contentStale = true;
+        for (Shape shape : model.getShapes()) {
+            invalidate(shape.getBounds());
+        }
+        if (showServerShapes) {
+            for (Shape shape : model.getShapesFromServer()) {
+                invalidate(shape.getBounds());
+            }
+        }
+        repaint();
+    }
+
+    /**
+     * Stops the render thread when the minimap is removed from its window.
+     */
+    @Override
+    public void removeNotify() {
+        super.removeNotify();
+        updateTimer.stop();
+        renderer.shutdownNow();
+    }
+
+    /**
+     * Blits the pyramid tiles covering the drawing and outlines the region the
+     * canvas shows.
+     *
+     * @param g The graphics context to paint on.
+     */
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        Graphics2D g2d = (Graphics2D) g;
+        Rectangle2D shown = shownRegion();
+        AffineTransform transform = toMinimap(shown);
+        if (transform == null) {
+            return;
+        }
+        Graphics2D tiles = (Graphics2D) g2d.create();
+        tiles.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        pyramid.draw(tiles, transform, shown);
+        tiles.dispose();
+
+        Rectangle2D visible = transform.createTransformedShape(canvas.getVisibleRegion()).getBounds2D();
+        g2d.setColor(Color.RED);
+        g2d.drawRect((int) Math.round(visible.getX()), (int) Math.round(visible.getY()),
+                (int) Math.round(visible.getWidth()), (int) Math.round(visible.getHeight()));
+    }
+
+    /**
+     * Snapshots the shapes in every pyramid tile touched by the regions that
+     * changed since the last update, and renders those tiles on the render
+     * thread. Tiles that go stale because the pyramid grew meanwhile are
+     * marked as changed again.
+     */
+    private void update() {
+        if (dirtyRegion == null) {
+            return;
+        }
+        Rectangle2D region = dirtyRegion;
+        dirtyRegion = null;
+        pyramid.grow(region);
+        Map<TilePyramid.Tile, List<ShapeSnapshot>> work = new LinkedHashMap<>();
+        for (TilePyramid.Tile tile : pyramid.tilesIn(region)) {
+            Rectangle2D bounds = tile.getBounds();
+            List<ShapeSnapshot> snapshots = new ArrayList<>();
+            for (Shape shape : model.getShapesIntersecting(bounds)) {
+                snapshots.add(shape.snapshot());
+            }
+            if (showServerShapes) {
+                for (Shape shape : model.getServerShapesIntersecting(bounds)) {
+                    snapshots.add(shape.snapshot());
+                }
+            }
+            work.put(tile, snapshots);
+        }
+        renderer.execute(() -> {
+            List<Rectangle2D> stale = new ArrayList<>();
+            for (Map.Entry<TilePyramid.Tile, List<ShapeSnapshot>> entry : work.entrySet()) {
+                if (!pyramid.render(entry.getKey(), entry.getValue())) {
+                    stale.add(entry.getKey().getBounds());
+                }
+            }
+            SwingUtilities.invokeLater(() -> {
+                for (Rectangle2D bounds : stale) {
+                    invalidate(bounds);
+                }
+                repaint();
+            });
+        });
+    }
+
+    /**
+     * Centres the canvas on the point of the drawing under a point of the
+     * minimap.
+     *
+     * @param x The x-coordinate on the minimap.
+     * @param y The y-coordinate on the minimap.
+     */
+    private void navigate(int x, int y) {
+        AffineTransform transform = toMinimap(shownRegion());
+        if (transform == null) {
+            return;
+        }
+        try {
+            Point2D target = transform.inverseTransform(new Point2D.Double(x, y), null);
+            canvas.centreOn(target.getX(), target.getY());
+        } catch (NoninvertibleTransformException e) {
+            // the transform only scales by a positive factor and translates
+        }
+    }
+
+    /**
+     * Returns the region of the drawing the minimap shows: everything that is
+     * drawn and the region the canvas shows.
+     *
+     * @return The shown region, in drawing coordinates.
+     */
+    private Rectangle2D shownRegion() {
+        if (contentStale) {
+            updateContentBounds();
+        }
+        Rectangle2D shown = canvas.getVisibleRegion();
+        if (contentBounds != null) {
+            shown.add(contentBounds);
+        }
+        return shown;
+    }
+
+    /**
+     * Works out the extent of everything drawn from the model's spatial
+     * indexes, so that it shrinks again once shapes at its edge are removed
+     * or moved inwards.
+     */
+    private void updateContentBounds() {
+        contentBounds = model.getShapesBounds();
+        if (showServerShapes) {
+            Rectangle2D serverBounds = model.getServerShapesBounds();
+            if (contentBounds == null) {
+                contentBounds = serverBounds;
+            } else if (serverBounds != null) {
+                contentBounds.add(serverBounds);
+            }
+        }
+        contentStale = false;
+    }
+
+    /**
+     * Returns whether a changed region lies strictly inside the extent of the
+     * drawing, in which case the change cannot have moved the extent's edges.
+     *
+     * @param region The region that has changed.
+     * @param extent The extent of the drawing, or null if nothing is drawn.
+     * @return true if the region is strictly inside the extent.
+     */
+    private static boolean isInside(Rectangle2D region, Rectangle2D extent) {
+        return extent != null && region.getMinX() > extent.getMinX() && region.getMinY() > extent.getMinY()
+                && region.getMaxX() < extent.getMaxX() && region.getMaxY() < extent.getMaxY();
+    }
+
+    /**
+     * Returns the transform that fits a region of the drawing into the
+     * minimap, keeping its aspect ratio and centring it.
+     *
+     * @param region The region to fit.
+     * @return The transform from drawing coordinates to the minimap, or null
+     *         if either is empty.
+     */
+    private AffineTransform toMinimap(Rectangle2D region) {
+        double width = getWidth() - 2 * MARGIN;
+        double height = getHeight() - 2 * MARGIN;
+        if (width <= 0 || height <= 0 || region.isEmpty()) {
+            return null;
+        }
+        double scale = Math.min(width / region.getWidth(), height / region.getHeight());
+        AffineTransform transform = AffineTransform.getTranslateInstance(
+                MARGIN + (width - region.getWidth() * scale) / 2, MARGIN + (height - region.getHeight() * scale) / 2);
+        transform.scale(scale, scale);
+        transform.translate(-region.getX(), -region.getY());
+        return transform;
+    }
+}
@@ -0,0 +1,191 @@
+package myGUI;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import Model.Model;
+import Shapes.Shape;
+
+/**
+ * A hidden image of the canvas in which every shape is painted in a colour
+ * encoding its own number, so that finding the shape under a pixel is a single
+ * lookup. Shapes are painted with their rotated outline and border, in the
+ * order the canvas paints them, so the shape found is the one the user sees.
+ * Thin borders can optionally be widened to be easier to click on, at the
+ * cost of picking shapes just beside them. Server shapes hide what is beneath them but cannot be picked.
+ * The buffer is divided into tiles, which are marked out of date as the model
+ * changes. Looking up a pixel only paints the tile it lies in, if that tile
+ * is out of date, so a click never waits for the whole canvas to be painted.
+ */
+class PickBuffer {
+    /**
+     * How many numbers of removed shapes may be held, beyond one for each
+     * shape in the model, before the buffer is painted from scratch.
+     */
+    private static final int MIN_STALE_IDS = 1024;
+
+    private static final int BACKGROUND = 0;
+    private static final int MAX_ID = 0xFFFFFF;
+    private static final int TILE_SIZE = 64;
+
+    private final Model model;
+    private final List<Shape> shapesById = new ArrayList<>();
+    private final Map<Shape, Integer> idsByShape = new IdentityHashMap<>();
+    private final BitSet invalidTiles = new BitSet();
+    private BufferedImage image;
+    private int columns;
+    private float minBorderWidth;
+
+    /**
+     * Constructs an empty PickBuffer for a model.
+     *
+     * @param model The model whose shapes are picked.
+     */
+    PickBuffer(Model model) {
+        this.model = model;
+    }
+
+    /**
+     * Sets the narrowest a border is painted in the buffer, so that thin
+     * borders are easier to click on. A border widened this way is picked up
+     * to half the extra width beside where it is painted. By default borders
+     * are painted at their real width, so a pick matches what is seen.
+     *
+     * @param pixels The narrowest border width, in pixels of the canvas, or
+     *               zero to paint every border at its real width.
+     */
+    void setMinBorderWidth(float pixels) {
+        if (pixels != minBorderWidth) {
+            minBorderWidth = pixels;
+            image = null;
+        }
+    }
+
+    /**
+     * Returns the number of shapes the buffer has given a number to, including
+     * removed shapes whose numbers have not been reclaimed yet.
+     *
+     * @return The number of numbered shapes.
+     */
+    int idCount() {
+        return shapesById.size();
+    }
+
+    /**
+     * Marks the tiles a region of the buffer touches as out of date.
+     *
+     * @param viewRegion The region of the canvas that has changed.
+     */
+    void invalidate(Rectangle2D viewRegion) {
+        if (image == null) {
+            return;
+        }
+        int rows = (image.getHeight() + TILE_SIZE - 1) / TILE_SIZE;
+        int firstColumn = Math.max(0, (int) Math.floor(viewRegion.getMinX() / TILE_SIZE));
+        int firstRow = Math.max(0, (int) Math.floor(viewRegion.getMinY() / TILE_SIZE));
+        int lastColumn = Math.min(columns - 1, (int) Math.floor(viewRegion.getMaxX() / TILE_SIZE));
+        int lastRow = Math.min(rows - 1, (int) Math.floor(viewRegion.getMaxY() / TILE_SIZE));
+        for (int row = firstRow; row <= lastRow; row++) {
+            if (firstColumn <= lastColumn) {
+                invalidTiles.set(row * columns + firstColumn, row * columns + lastColumn + 1);
+            }
+        }
+    }
+
+    /**
+     * Returns the topmost local shape painted at a point of the canvas,
+     * bringing the buffer up to date first.
+     *
+     * @param x                The x-coordinate on the canvas.
+     * @param y                The y-coordinate on the canvas.
+     * @param width            The width of the canvas.
+     * @param height           The height of the canvas.
+     * @param view             The transform from drawing coordinates to the
+     *                         canvas.
+     * @param showServerShapes true if server shapes are painted on the canvas.
+     * @return The shape at the point, or null if there is none.
+     */
+    Shape pick(int x, int y, int width, int height, AffineTransform view, boolean showServerShapes) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return null;
+        }
+        // numbers of removed shapes are only reclaimed when the buffer is
+        // painted from scratch, which happens before they run out or once
+        // they outnumber the shapes, so removed shapes are not held for long
+        int shapes = model.getShapes().size();
+        if (image == null || image.getWidth() != width || image.getHeight() != height
+                || shapesById.size() + shapes > MAX_ID
+                || shapesById.size() - shapes > Math.max(MIN_STALE_IDS, shapes)) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            shapesById.clear();
+            idsByShape.clear();
+            columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+            invalidTiles.set(0, columns * ((height + TILE_SIZE - 1) / TILE_SIZE));
+        }
+        int tile = (y / TILE_SIZE) * columns + x / TILE_SIZE;
+        if (invalidTiles.get(tile)) {
+            repaint(new Rectangle(x / TILE_SIZE * TILE_SIZE, y / TILE_SIZE * TILE_SIZE, TILE_SIZE, TILE_SIZE), view,
+                    showServerShapes);
+            invalidTiles.clear(tile);
+        }
+        int id = image.getRGB(x, y) & 0xFFFFFF;
+        return id == BACKGROUND ? null : shapesById.get(id - 1);
+    }
+
+    /**
+     * Paints a tile of the buffer again from the model.
+     *
+     * @param tile             The tile, in pixels of the canvas.
+     * @param view             The transform from drawing coordinates to the
+     *                         canvas.
+     * @param showServerShapes true if server shapes are painted on the canvas.
+     */
+    private void repaint(Rectangle tile, AffineTransform view, boolean showServerShapes) {
+        Rectangle pixels = tile.intersection(new Rectangle(image.getWidth(), image.getHeight()));
+        Graphics2D g2d = image.createGraphics();
+        g2d.setClip(pixels);
+        g2d.setColor(new Color(BACKGROUND));
+        g2d.fill(pixels);
+        // antialiasing would blend the colours, and with them the numbers
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+        g2d.transform(view);
+        float minWidth = (float) (minBorderWidth / Math.abs(view.getScaleX()));
+        Rectangle2D drawingRegion = g2d.getClip().getBounds2D();
+        for (Shape shape : model.getShapesIntersecting(drawingRegion)) {
+            shape.snapshot().paintSilhouette(g2d, new Color(idOf(shape)), minWidth);
+        }
+        if (showServerShapes) {
+            Color background = new Color(BACKGROUND);
+            for (Shape serverShape : model.getServerShapesIntersecting(drawingRegion)) {
+                serverShape.snapshot().paintSilhouette(g2d, background, 0);
+            }
+        }
+        g2d.dispose();
+    }
+
+    /**
+     * Returns the number a shape is painted with, giving it a new one if it
+     * has none yet.
+     *
+     * @param shape The shape.
+     * @return The shape's number, which is never the background.
+     */
+    private int idOf(Shape shape) {
+        Integer id = idsByShape.get(shape);
+        if (id == null) {
+            shapesById.add(shape);
+            id = shapesById.size();
+            idsByShape.put(shape, id);
+        }
+        return id;
+    }
+}
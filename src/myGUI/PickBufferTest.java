@@ -0,0 +1,150 @@
+package myGUI;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import Model.Model;
+import Shapes.Rectangle;
+import Shapes.Shape;
+
+/**
+ * This class contains unit tests for the PickBuffer class.
+ * It tests that the shape picked at a point is the one painted there, with
+ * rotation and border width applied, and that the buffer follows changes to
+ * the model once they are invalidated.
+ */
+public class PickBufferTest {
+
+    private static final int SIZE = 300;
+    private static final AffineTransform VIEW = new AffineTransform();
+
+    private Model model;
+    private PickBuffer buffer;
+
+    /**
+     * Sets up a model and an empty pick buffer over it.
+     */
+    @Before
+    public void setUp() {
+        model = new Model();
+        buffer = new PickBuffer(model);
+    }
+
+    /**
+     * Picks the shape at a point of the canvas, with server shapes shown.
+     *
+     * @param x The x-coordinate on the canvas.
+     * @param y The y-coordinate on the canvas.
+     * @return The shape picked, or null if there is none.
+     */
+    private Shape pick(int x, int y) {
+        return buffer.pick(x, y, SIZE, SIZE, VIEW, true);
+    }
+
+    /**
+     * Marks the whole buffer as out of date.
+     */
+    private void invalidateAll() {
+        buffer.invalidate(new Rectangle2D.Double(0, 0, SIZE, SIZE));
+    }
+
+    /**
+     * Tests that the topmost of two overlapping shapes is picked where they
+     * overlap, and the lower one where it is uncovered.
+     */
+    @Test
+    public void testPick_TopmostWins() {
+        Shape bottom = new Rectangle(0, 0, 100, 100, Color.BLACK, 1, Color.WHITE);
+        Shape top = new Rectangle(50, 50, 100, 100, Color.BLACK, 1, Color.RED);
+        model.addShape(bottom);
+        model.addShape(top);
+        assertSame("Topmost shape should be picked where shapes overlap", top, pick(75, 75));
+        assertSame("Lower shape should be picked where it is uncovered", bottom, pick(20, 20));
+        assertNull("Nothing should be picked in empty space", pick(250, 250));
+    }
+
+    /**
+     * Tests that a rotated shape is picked where it is painted, not where its
+     * unrotated outline would be.
+     */
+    @Test
+    public void testPick_Rotated() {
+        Shape bar = new Rectangle(50, 140, 200, 20, Color.BLACK, 1, Color.BLUE);
+        bar.rotate(90);
+        model.addShape(bar);
+        assertSame("Rotated shape should be picked along its new length", bar, pick(150, 60));
+        assertNull("Rotated shape should not be picked where it used to lie", pick(60, 150));
+    }
+
+    /**
+     * Tests that borders are picked at their real width by default, and only
+     * beside them once widening is asked for.
+     */
+    @Test
+    public void testPick_BorderWidth() {
+        Shape outline = new Rectangle(50, 50, 100, 100, Color.BLACK, 1, null);
+        model.addShape(outline);
+        assertSame("Border should be picked where it is painted", outline, pick(50, 100));
+        assertNull("Nothing should be picked beside a thin border", pick(53, 100));
+        assertNull("Inside of an unfilled shape should not be picked", pick(100, 100));
+        buffer.setMinBorderWidth(8);
+        assertSame("Widened border should be picked beside where it is painted", outline, pick(53, 100));
+    }
+
+    /**
+     * Tests that moving or removing a shape is followed once the region it
+     * covered is invalidated.
+     */
+    @Test
+    public void testPick_AfterMoveAndRemove() {
+        Shape shape = new Rectangle(20, 20, 50, 50, Color.BLACK, 1, Color.WHITE);
+        model.addShape(shape);
+        assertSame("Shape should be picked where it is", shape, pick(40, 40));
+        model.moveShape(shape, 150, 0);
+        invalidateAll();
+        assertNull("Moved shape should not be picked where it was", pick(40, 40));
+        assertSame("Moved shape should be picked where it is now", shape, pick(190, 40));
+        model.removeShape(shape);
+        invalidateAll();
+        assertNull("Removed shape should not be picked", pick(190, 40));
+    }
+
+    /**
+     * Tests that shown server shapes hide the local shapes beneath them, and
+     * that once they are hidden, and the buffer invalidated, they do not.
+     */
+    @Test
+    public void testPick_ServerShapesHide() {
+        Shape local = new Rectangle(0, 0, 100, 100, Color.BLACK, 1, Color.WHITE);
+        model.addShape(local);
+        model.addShapeFromServer(new Rectangle(0, 0, 50, 50, Color.BLACK, 1, Color.GREEN));
+        assertNull("Server shape should hide the local shape", pick(25, 25));
+        assertSame("Local shape should be picked beside the server shape", local, pick(75, 75));
+        invalidateAll();
+        assertSame("Hidden server shape should not hide the local shape", local,
+                buffer.pick(25, 25, SIZE, SIZE, VIEW, false));
+    }
+
+    /**
+     * Tests that the numbers given to removed shapes are reclaimed, so the
+     * buffer does not hold on to shapes removed long ago.
+     */
+    @Test
+    public void testPick_ReclaimsRemovedShapes() {
+        for (int i = 0; i < 5000; i++) {
+            Shape shape = new Rectangle(i % 250, 10, 20, 20, Color.BLACK, 1, Color.WHITE);
+            model.addShape(shape);
+            invalidateAll();
+            assertSame("New shape should be picked", shape, pick(i % 250 + 10, 20));
+            model.removeShape(shape);
+            invalidateAll();
+        }
+        assertTrue("Numbers of removed shapes should be reclaimed", buffer.idCount() <= 1100);
+    }
+}
@@ -0,0 +1,131 @@
+package myGUI;
+
+import java.awt.RenderingHints;
+
+/**
+ * Decides how the canvas trades quality for speed. While the user is dragging
+ * or scaling shapes the canvas renders with cheap interactive hints, and thin
+ * shapes smaller than a threshold are drawn with a hairline border. Once the
+ * gesture has been still for the settle delay, everything rendered at
+ * interactive quality is rendered again with the settled hints.
+ */
+public final class QualityPolicy {
+    /**
+     * The size, in pixels, of painted bounds below which shapes are simplified
+     * by default. Painted bounds include the border and a pixel of margin.
+     */
+    public static final double DEFAULT_SIMPLIFY_BELOW = 8;
+
+    /**
+     * The delay, in milliseconds, after a gesture before the high quality pass
+     * by default.
+     */
+    public static final int DEFAULT_SETTLE_DELAY = 250;
+
+    private final RenderingHints interactiveHints;
+    private final RenderingHints settledHints;
+    private final double simplifyBelow;
+    private final int settleDelay;
+
+    /**
+     * Constructs a QualityPolicy.
+     *
+     * @param interactiveHints The hints used while a gesture is in progress.
+     * @param settledHints     The hints used once the gesture has settled.
+     * @param simplifyBelow    The width and height, in pixels, of painted
+     *                         bounds below which a shape's border is drawn as
+     *                         a hairline during a gesture, or 0 to never
+     *                         simplify.
+     * @param settleDelay      The delay, in milliseconds, after the last
+     *                         interaction before the high quality pass.
+     */
+    public QualityPolicy(RenderingHints interactiveHints, RenderingHints settledHints, double simplifyBelow,
+            int settleDelay) {
+        if (simplifyBelow < 0 || settleDelay < 0) {
+            throw new IllegalArgumentException("Threshold and delay must not be negative");
+        }
+        this.interactiveHints = (RenderingHints) interactiveHints.clone();
+        this.settledHints = (RenderingHints) settledHints.clone();
+        this.simplifyBelow = simplifyBelow;
+        this.settleDelay = settleDelay;
+    }
+
+    /**
+     * Creates the default policy: no antialiasing and speed over quality
+     * during a gesture, then antialiased, quality rendering at rest.
+     *
+     * @return The default policy.
+     */
+    public static QualityPolicy createDefault() {
+        RenderingHints interactive = new RenderingHints(RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_OFF);
+        interactive.put(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+        interactive.put(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        interactive.put(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_NORMALIZE);
+
+        RenderingHints settled = new RenderingHints(RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_ON);
+        settled.put(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        settled.put(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        settled.put(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        return new QualityPolicy(interactive, settled, DEFAULT_SIMPLIFY_BELOW, DEFAULT_SETTLE_DELAY);
+    }
+
+    /**
+     * Creates a policy that always renders with the same hints and never
+     * simplifies shapes.
+     *
+     * @param hints The hints to render with.
+     * @return The policy.
+     */
+    public static QualityPolicy createFixed(RenderingHints hints) {
+        return new QualityPolicy(hints, hints, 0, 0);
+    }
+
+    /**
+     * Returns the hints used while a gesture is in progress.
+     *
+     * @return A copy of the interactive hints.
+     */
+    public RenderingHints getInteractiveHints() {
+        return (RenderingHints) interactiveHints.clone();
+    }
+
+    /**
+     * Returns the hints used once a gesture has settled.
+     *
+     * @return A copy of the settled hints.
+     */
+    public RenderingHints getSettledHints() {
+        return (RenderingHints) settledHints.clone();
+    }
+
+    /**
+     * Returns the size below which shapes are simplified during a gesture.
+     *
+     * @return The threshold, in pixels, or 0 if shapes are never simplified.
+     */
+    public double getSimplifyBelow() {
+        return simplifyBelow;
+    }
+
+    /**
+     * Returns the delay after the last interaction before the high quality
+     * pass.
+     *
+     * @return The delay, in milliseconds.
+     */
+    public int getSettleDelay() {
+        return settleDelay;
+    }
+
+    /**
+     * Returns whether rendering during a gesture differs from rendering at
+     * rest, so that a second pass is worth running after a gesture.
+     *
+     * @return true if a high quality pass is needed, false otherwise.
+     */
+    public boolean needsSettledPass() {
+        return simplifyBelow > 0 || !interactiveHints.equals(settledHints);
+    }
+}
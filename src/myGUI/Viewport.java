@@ -0,0 +1,153 @@
+package myGUI;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * The part of an unbounded drawing that the canvas shows. A viewport has a
+ * zoom factor and an origin, the point of the drawing shown at the top-left
+ * corner of the canvas, and converts between drawing coordinates and view
+ * coordinates, which are pixels of the canvas.
+ */
+public class Viewport {
+    /**
+     * The smallest zoom factor allowed.
+     */
+    public static final double MIN_ZOOM = 0.001;
+
+    /**
+     * The largest zoom factor allowed.
+     */
+    public static final double MAX_ZOOM = 1000;
+
+    private double zoom;
+    private double originX;
+    private double originY;
+
+    /**
+     * Constructs a Viewport showing the drawing at 1:1 from its origin.
+     */
+    public Viewport() {
+        reset();
+    }
+
+    /**
+     * Returns the zoom factor.
+     *
+     * @return The number of view pixels per drawing unit.
+     */
+    public double getZoom() {
+        return zoom;
+    }
+
+    /**
+     * Returns the x-coordinate of the drawing shown at the left of the view.
+     *
+     * @return The x-coordinate of the origin, in drawing coordinates.
+     */
+    public double getOriginX() {
+        return originX;
+    }
+
+    /**
+     * Returns the y-coordinate of the drawing shown at the top of the view.
+     *
+     * @return The y-coordinate of the origin, in drawing coordinates.
+     */
+    public double getOriginY() {
+        return originY;
+    }
+
+    /**
+     * Returns the transform from drawing coordinates to view coordinates.
+     *
+     * @return A new transform.
+     */
+    public AffineTransform getTransform() {
+        AffineTransform transform = AffineTransform.getScaleInstance(zoom, zoom);
+        transform.translate(-originX, -originY);
+        return transform;
+    }
+
+    /**
+     * Converts a point of the view to drawing coordinates.
+     *
+     * @param viewX The x-coordinate in the view.
+     * @param viewY The y-coordinate in the view.
+     * @return The point of the drawing shown there.
+     */
+    public Point2D toDrawing(double viewX, double viewY) {
+        return new Point2D.Double(originX + viewX / zoom, originY + viewY / zoom);
+    }
+
+    /**
+     * Converts a region of the view to drawing coordinates.
+     *
+     * @param viewRegion The region in view coordinates.
+     * @return The region of the drawing shown there.
+     */
+    public Rectangle2D toDrawing(Rectangle2D viewRegion) {
+        return new Rectangle2D.Double(originX + viewRegion.getX() / zoom, originY + viewRegion.getY() / zoom,
+                viewRegion.getWidth() / zoom, viewRegion.getHeight() / zoom);
+    }
+
+    /**
+     * Converts a region of the drawing to view coordinates.
+     *
+     * @param drawingRegion The region in drawing coordinates.
+     * @return The region of the view it is shown in.
+     */
+    public Rectangle2D toView(Rectangle2D drawingRegion) {
+        return new Rectangle2D.Double((drawingRegion.getX() - originX) * zoom, (drawingRegion.getY() - originY) * zoom,
+                drawingRegion.getWidth() * zoom, drawingRegion.getHeight() * zoom);
+    }
+
+    /**
+     * Zooms by a factor, keeping the point of the drawing under a point of the
+     * view in place. The zoom is kept between MIN_ZOOM and MAX_ZOOM.
+     *
+     * @param factor The factor to multiply the zoom by.
+     * @param viewX  The x-coordinate in the view to zoom about.
+     * @param viewY  The y-coordinate in the view to zoom about.
+     */
+    public void zoomAt(double factor, double viewX, double viewY) {
+        Point2D anchor = toDrawing(viewX, viewY);
+        zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+        originX = anchor.getX() - viewX / zoom;
+        originY = anchor.getY() - viewY / zoom;
+    }
+
+    /**
+     * Moves the view so that the drawing appears to move by a distance.
+     *
+     * @param viewDx The horizontal distance, in view pixels.
+     * @param viewDy The vertical distance, in view pixels.
+     */
+    public void panBy(double viewDx, double viewDy) {
+        originX -= viewDx / zoom;
+        originY -= viewDy / zoom;
+    }
+
+    /**
+     * Moves the view so that a point of the drawing is shown at its centre.
+     *
+     * @param x          The x-coordinate of the point, in drawing coordinates.
+     * @param y          The y-coordinate of the point, in drawing coordinates.
+     * @param viewWidth  The width of the view, in pixels.
+     * @param viewHeight The height of the view, in pixels.
+     */
+    public void centreOn(double x, double y, double viewWidth, double viewHeight) {
+        originX = x - viewWidth / 2 / zoom;
+        originY = y - viewHeight / 2 / zoom;
+    }
+
+    /**
+     * Returns to showing the drawing at 1:1 from its origin.
+     */
+    public void reset() {
+        zoom = 1;
+        originX = 0;
+        originY = 0;
+    }
+}
@@ -0,0 +1,108 @@
+package myGUI;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * This class contains unit tests for the Viewport class.
+ * It tests that converting between drawing and view coordinates round-trips,
+ * and that zooming keeps the point under the mouse in place.
+ */
+public class ViewportTest {
+
+    private static final double EPSILON = 1e-9;
+
+    private Viewport viewport;
+
+    /**
+     * Sets up a viewport that has been zoomed and panned away from 1:1.
+     */
+    @Before
+    public void setUp() {
+        viewport = new Viewport();
+        viewport.zoomAt(2.5, 100, 80);
+        viewport.panBy(-37, 12);
+    }
+
+    /**
+     * Tests that a point converted to drawing coordinates is mapped back to
+     * the same view point by the transform.
+     */
+    @Test
+    public void testToDrawing_RoundTripsThroughTransform() {
+        Point2D drawing = viewport.toDrawing(321.5, 47.25);
+        Point2D view = viewport.getTransform().transform(drawing, null);
+        assertEquals("View x should round-trip", 321.5, view.getX(), EPSILON);
+        assertEquals("View y should round-trip", 47.25, view.getY(), EPSILON);
+    }
+
+    /**
+     * Tests that a region converted to view coordinates and back is unchanged,
+     * and agrees with the transform.
+     */
+    @Test
+    public void testToView_RoundTripsRegion() {
+        Rectangle2D region = new Rectangle2D.Double(-40, 15.5, 120, 60.25);
+        Rectangle2D view = viewport.toView(region);
+        Rectangle2D back = viewport.toDrawing(view);
+        assertEquals("Region x should round-trip", region.getX(), back.getX(), EPSILON);
+        assertEquals("Region y should round-trip", region.getY(), back.getY(), EPSILON);
+        assertEquals("Region width should round-trip", region.getWidth(), back.getWidth(), EPSILON);
+        assertEquals("Region height should round-trip", region.getHeight(), back.getHeight(), EPSILON);
+        Rectangle2D transformed = viewport.getTransform().createTransformedShape(region).getBounds2D();
+        assertEquals("toView should agree with the transform", transformed.getX(), view.getX(), EPSILON);
+        assertEquals("toView should agree with the transform", transformed.getWidth(), view.getWidth(), EPSILON);
+    }
+
+    /**
+     * Tests that zooming about a point of the view keeps the point of the
+     * drawing under it in place, in and out.
+     */
+    @Test
+    public void testZoomAt_KeepsAnchorInPlace() {
+        Point2D anchor = viewport.toDrawing(250, 175);
+        viewport.zoomAt(3, 250, 175);
+        assertEquals("Zoom should be multiplied", 7.5, viewport.getZoom(), EPSILON);
+        Point2D after = viewport.toDrawing(250, 175);
+        assertEquals("Anchor x should stay under the point", anchor.getX(), after.getX(), EPSILON);
+        assertEquals("Anchor y should stay under the point", anchor.getY(), after.getY(), EPSILON);
+        viewport.zoomAt(1 / 3.0, 250, 175);
+        after = viewport.toDrawing(250, 175);
+        assertEquals("Anchor should stay when zooming out", anchor.getX(), after.getX(), EPSILON);
+    }
+
+    /**
+     * Tests that the zoom is kept within its limits, and that the anchor
+     * still stays in place when it is clamped.
+     */
+    @Test
+    public void testZoomAt_Clamped() {
+        Point2D anchor = viewport.toDrawing(10, 20);
+        viewport.zoomAt(1e9, 10, 20);
+        assertEquals("Zoom should stop at the maximum", Viewport.MAX_ZOOM, viewport.getZoom(), EPSILON);
+        Point2D after = viewport.toDrawing(10, 20);
+        assertEquals("Anchor should stay at the maximum zoom", anchor.getX(), after.getX(), 1e-6);
+        viewport.zoomAt(1e-12, 10, 20);
+        assertEquals("Zoom should stop at the minimum", Viewport.MIN_ZOOM, viewport.getZoom(), EPSILON);
+    }
+
+    /**
+     * Tests that centring on a point shows it in the middle of the view, and
+     * that resetting returns to 1:1 from the origin.
+     */
+    @Test
+    public void testCentreOnAndReset() {
+        viewport.centreOn(500, -300, 800, 600);
+        Point2D centre = viewport.toDrawing(400, 300);
+        assertEquals("Centre x should be the point", 500, centre.getX(), EPSILON);
+        assertEquals("Centre y should be the point", -300, centre.getY(), EPSILON);
+        viewport.reset();
+        assertEquals("Reset should return to 1:1", 1, viewport.getZoom(), EPSILON);
+        assertEquals("Reset should return to the origin", 0, viewport.getOriginX(), EPSILON);
+        assertEquals("Reset should return to the origin", 0, viewport.getOriginY(), EPSILON);
+    }
+}